@@ -1,6 +1,7 @@
 from email.mime import base
 from enum import auto
 from io import BytesIO
+import base64
 import math
 import time
 import itertools
@@ -12,6 +13,7 @@ from bpy.types import Mesh, Collection, Context, Material, Object, PoseBone, Edi
 from mathutils import Euler, Matrix, Quaternion, Vector
 
 from ..vcap.import_obj import load as load_obj
+from ..vcap.import_vmesh import load as load_vmesh
 from .. import data
 import xml.etree.ElementTree as ET
 import bpy  
@@ -35,9 +37,16 @@ class AnimChannel:
         self.datapath = datapath
         self.keyframes = {}
 
-def _simple_load_obj(context: Context, file_contents: str, unique_materials: dict[str, Material]):
-    obj = BytesIO(bytes(file_contents, 'utf-8'))
-    return load_obj(context, obj, use_split_objects=False, use_split_groups=False, use_groups_as_vgroups=True, unique_materials=unique_materials)
+def _simple_load_mesh(context: Context, mesh_tag: ET.Element, unique_materials: dict[str, Material]):
+    mesh_format = mesh_tag.get('format', 'obj')
+    if mesh_format == 'vmesh':
+        file = BytesIO(base64.b64decode(mesh_tag.text))
+        return load_vmesh(context, file, use_split_groups=False, use_groups_as_vgroups=True, unique_materials=unique_materials)
+    elif mesh_format == 'obj':
+        obj = BytesIO(bytes(mesh_tag.text, 'utf-8'))
+        return load_obj(context, obj, use_split_objects=False, use_split_groups=False, use_groups_as_vgroups=True, unique_materials=unique_materials)
+    else:
+        raise Exception(f"Unknown mesh format: {mesh_format}")
 
 def load_entity(file: IO[str], context: Context, collection: Collection, materials: dict[str, Material] = {}, separate_parts = False, autohide = True):
     """Load a replay entity into Blender
@@ -95,7 +104,7 @@ def load_entity(file: IO[str], context: Context, collection: Collection, materia
         armature_obj, bone_def, override_channels = parse_armature(model, context, collection, name=f'{name}.bones')
 
         if mesh_tag is not None:
-            meshes, mats, vertex_groups = _simple_load_obj(context, mesh_tag.text, materials)
+            meshes, mats, vertex_groups = _simple_load_mesh(context, mesh_tag, materials)
             
             for obj in meshes:
                 new_object = bpy.data.objects.new(f'{name}.mesh', obj)
@@ -532,7 +541,7 @@ def parse_multipart(model: ET.Element,
         # Not all model parts have meshes.
         mesh_tag = element.find('mesh')
         if (mesh_tag is not None) and (mesh_tag.text is not None):
-            n_meshes, mats, vertex_groups = _simple_load_obj(context, mesh_tag.text, materials)
+            n_meshes, mats, vertex_groups = _simple_load_mesh(context, mesh_tag, materials)
             for mesh in n_meshes:
                 meshes[mesh] = id
         
@@ -116,6 +116,7 @@ def load_replay(file: Union[str, IO[bytes]],
         # Metadata
         with archive.open('meta.json', 'r') as meta_file:
             meta = json.load(meta_file)
+            util.check_version(meta.get('version'), 'Replay')
             if settings.automatic_offset:
                 if 'offset' in meta:
                     offset = meta['offset']
@@ -1,10 +1,12 @@
-from typing import Any
+from typing import Any, Union
 
 from bpy.types import Object
 
 
 class TesselatedFrame:
     time: float = 0
+    end_time: Union[float, None] = None
+    """The time of the next keyframe, when this frame's objects are hidden."""
     objects: dict[Any, Object]
 
     def __init__(self) -> None:
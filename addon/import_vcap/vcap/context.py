@@ -1,6 +1,7 @@
 from zipfile import ZipFile
 
 import bmesh
+import bpy
 from bmesh.types import BMesh
 from bpy.types import Collection, Context, Image, Material, Mesh, NodeTree, Object
 
@@ -24,6 +25,12 @@ class VCAPContext:
     materials: dict[str, Material] = {}
     material_groups: dict[str, NodeTree] = {}
     models: dict[str, Mesh] = {}
+    face_models: dict[str, dict[str, Mesh]] = {}
+    """Models with split faces, with a mesh for each face group.
+    """
+    mesh_aliases: dict[str, str] = {}
+    """Model IDs that share the mesh of another model, and the ID of that model.
+    """
 
     textures: dict[str, Image]
 
@@ -43,6 +50,8 @@ class VCAPContext:
         self.context = context
         self.name = name
         self.models = {}
+        self.face_models = {}
+        self.mesh_aliases = {}
         self.materials = {}
         self.material_groups = {}
         self.textures = {}
@@ -51,6 +60,46 @@ class VCAPContext:
 
         self.target = bmesh.new()
 
+    def get_model(self, model_id: str, faces: int = -1) -> Mesh:
+        """Get the mesh of a block.
+
+        Args:
+            model_id (str): The block's model ID.
+            faces (int, optional): The block's visible faces, if its model has split faces.
+                Bits are in the order down, up, north, south, west, east. Defaults to -1,
+                for models that are drawn whole.
+
+        Returns:
+            Mesh: The mesh. Meshes assembled from split faces are cached in `models`.
+        """
+        model_id = self.mesh_aliases.get(model_id, model_id)
+        face_model = self.face_models.get(model_id)
+        if face_model is None:
+            return self.models[model_id]
+        if faces < 0:
+            faces = 0x3F
+
+        key = f'{model_id}|{faces:x}'
+        mesh = self.models.get(key)
+        if mesh is not None:
+            return mesh
+
+        bm = bmesh.new()
+        for i, face in enumerate(FACE_GROUPS):
+            if face in face_model and (face == FACE_GROUPS[6] or faces >> i & 1):
+                bm.from_mesh(face_model[face])
+        mesh = bpy.data.meshes.new(key)
+        bm.to_mesh(mesh)
+        bm.free()
+
+        self.models[key] = mesh
+        return mesh
+
+FACE_GROUPS = ('face_down', 'face_up', 'face_north', 'face_south', 'face_west', 'face_east', 'face_none')
+"""The face groups of split models, in the order of their bits in a face mask.
+The last group is never culled.
+"""
+
 class VCAPSettings:
     __slots__ = (
         'use_vertex_colors',
@@ -2,14 +2,51 @@ from typing import IO, List
 
 import bmesh
 from bmesh.types import BMFace, BMLayerCollection, BMLoop, BMVert
+from bpy.types import Mesh
 from .context import VCAPContext
-from . import import_obj, materials
+from . import import_obj, import_vmesh, materials
 
 
-def load(context: VCAPContext, name: str, file: IO[bytes]):
-    (meshes, mats, vgroups) = import_obj.load(context.context, file, name=name, unique_materials=context.materials, use_split_objects=False, use_split_groups=True)
+FACE_GROUP_PREFIX = 'face_'
+
+def load(context: VCAPContext, name: str, file: IO[bytes], binary=False) -> Mesh | dict[str, Mesh]:
+    """Load a vcap mesh.
+
+    Args:
+        binary (bool): Whether the mesh is in the binary mesh format rather than OBJ.
+
+    Returns:
+        Mesh | dict[str, Mesh]: The mesh, or if the mesh has split faces, a
+            mesh for each of its face groups.
+    """
+    if binary:
+        (meshes, mats, vgroups) = import_vmesh.load(context.context, file, name=name, unique_materials=context.materials, use_split_groups=True)
+    else:
+        (meshes, mats, vgroups) = import_obj.load(context.context, file, name=name, unique_materials=context.materials, use_split_objects=False, use_split_groups=True)
     context.materials = mats # Likely won't do anything.
 
+    # Split meshes name their groups '<face layer> <face group>'
+    faces: dict[str, list[tuple[int, Mesh]]] = {}
+    for mesh in meshes:
+        group_names = mesh.name.split(' ')
+        if len(group_names) < 2 or not group_names[1].startswith(FACE_GROUP_PREFIX):
+            faces = None
+            break
+        # Blender may have appended a number to make the name unique.
+        face = group_names[1].split('.')[0]
+        layer = int(''.join(c for c in group_names[0] if c.isdigit()) or 0)
+        faces.setdefault(face, []).append((layer, mesh))
+
+    if faces:
+        face_meshes: dict[str, Mesh] = {}
+        for face, layers in faces.items():
+            layers.sort(key=lambda layer: layer[0])
+            face_meshes[face] = _compile_layers(context, f'{name}.{face}', [mesh for layer, mesh in layers])
+        return face_meshes
+
+    return _compile_layers(context, name, meshes)
+
+def _compile_layers(context: VCAPContext, name: str, meshes: list[Mesh]) -> Mesh:
     if (len(meshes) > 1):
         # Compile face layers
         bm = bmesh.new()
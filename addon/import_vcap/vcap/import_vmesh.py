@@ -0,0 +1,192 @@
+"""Reader for the binary mesh format. See doc/mesh.md for the specification.
+
+Meshes are decoded into the same intermediate data the OBJ importer builds
+while parsing, so they come out identical to the OBJ equivalent.
+"""
+import struct
+from array import array
+import sys
+from typing import IO
+
+import bpy
+from bpy.types import Context
+
+from . import import_obj
+
+MAGIC = b'VMSH'
+VERSION = 1
+
+FACE_TEX_COORDS = 1
+FACE_NORMALS = 2
+
+
+class _Reader:
+    __slots__ = ('data', 'offset')
+
+    def __init__(self, data: bytes):
+        self.data = data
+        self.offset = 0
+
+    def unpack(self, fmt: str):
+        values = struct.unpack_from(fmt, self.data, self.offset)
+        self.offset += struct.calcsize(fmt)
+        return values
+
+    def u16(self) -> int:
+        return self.unpack('<H')[0]
+
+    def u32(self) -> int:
+        return self.unpack('<I')[0]
+
+    def read_bytes(self, length: int) -> bytes:
+        if self.offset + length > len(self.data):
+            raise ValueError("Binary mesh is truncated.")
+        value = self.data[self.offset:self.offset + length]
+        self.offset += length
+        return value
+
+    def typed(self, typecode: str, count: int) -> array:
+        values = array(typecode)
+        values.frombytes(self.read_bytes(count * values.itemsize))
+        if sys.byteorder != 'little':
+            values.byteswap()
+        return values
+
+
+def _group_vectors(values: array, size: int) -> list[list[float]]:
+    return [list(values[i:i + size]) for i in range(0, len(values), size)]
+
+
+def _is_invalid_blenpoly(indices: list[int]) -> bool:
+    # Same check as the OBJ importer: an ngon that uses an edge twice.
+    if len(set(indices)) == len(indices):
+        return False
+    edges = set()
+    prev = indices[-1]
+    for index in indices:
+        edge = (prev, index) if prev < index else (index, prev)
+        if edge in edges:
+            return True
+        edges.add(edge)
+        prev = index
+    return False
+
+
+def load(context: Context,
+         file: IO[bytes],
+         *,
+         use_split_groups=False,
+         use_groups_as_vgroups=False,
+         name: str = "block",
+         unique_materials={}):
+    """Load a binary mesh. Takes the same options as the OBJ importer's load
+    function, and returns the same values.
+
+    Returns:
+        tuple[list[Mesh], dict[str, Material], dict[bytes, list[int]]]: The
+            meshes, the unique materials, and the vertex groups.
+    """
+    reader = _Reader(file.read())
+    if reader.read_bytes(4) != MAGIC:
+        raise ValueError("Not a binary mesh.")
+    version = reader.u16()
+    if version > VERSION:
+        raise ValueError(f"Unsupported binary mesh version: {version}")
+    reader.u16()  # Flags
+
+    if use_split_groups:
+        use_groups_as_vgroups = False
+
+    verts_loc = _group_vectors(reader.typed('f', reader.u32() * 3), 3)
+    verts_tex = _group_vectors(reader.typed('f', reader.u32() * 2), 2)
+    verts_nor = _group_vectors(reader.typed('f', reader.u32() * 3), 3)
+
+    num_faces = reader.u32()
+    sizes = reader.read_bytes(num_faces)
+    attributes = reader.read_bytes(num_faces)
+    total = sum(sizes)
+    vertex_indices = reader.typed('I', total)
+    tex_indices = reader.typed('I', sum(size for size, attr in zip(sizes, attributes) if attr & FACE_TEX_COORDS))
+    normal_indices = reader.typed('I', sum(size for size, attr in zip(sizes, attributes) if attr & FACE_NORMALS))
+
+    strings = [reader.read_bytes(reader.u16()) for i in range(reader.u32())]
+    material_ranges = [reader.unpack('<II') for i in range(reader.u32())]
+    group_ranges = []
+    for i in range(reader.u32()):
+        first_face = reader.u32()
+        names = reader.typed('I', reader.u16())
+        group_ranges.append((first_face, b' '.join(strings[n] for n in names)))
+
+    faces = []
+    vertex_groups = {}
+    context_material = None
+    context_object_key = None
+    context_vgroup = None
+    next_material = next_group = 0
+    v = t = n = 0
+
+    for i in range(num_faces):
+        while next_material < len(material_ranges) and material_ranges[next_material][0] == i:
+            context_material = strings[material_ranges[next_material][1]].decode('ascii')
+            if context_material not in unique_materials:
+                unique_materials[context_material] = None
+            next_material += 1
+
+        while next_group < len(group_ranges) and group_ranges[next_group][0] == i:
+            group = group_ranges[next_group][1]
+            if use_split_groups:
+                context_object_key = group
+            elif use_groups_as_vgroups:
+                if group and group != b'(null)':
+                    context_vgroup = group
+                    vertex_groups.setdefault(group, [])
+                else:
+                    context_vgroup = None
+            next_group += 1
+
+        size = sizes[i]
+        face_vert_loc_indices = list(vertex_indices[v:v + size])
+        v += size
+
+        if attributes[i] & FACE_TEX_COORDS:
+            face_vert_tex_indices = list(tex_indices[t:t + size])
+            t += size
+        else:
+            face_vert_tex_indices = [0] * size
+
+        if attributes[i] & FACE_NORMALS:
+            face_vert_nor_indices = list(normal_indices[n:n + size])
+            n += size
+        else:
+            face_vert_nor_indices = [0] * size
+
+        if context_vgroup:
+            vertex_groups[context_vgroup].extend(face_vert_loc_indices)
+
+        faces.append((
+            face_vert_loc_indices,
+            face_vert_nor_indices,
+            face_vert_tex_indices,
+            context_material,
+            None,
+            context_object_key,
+            [True] if _is_invalid_blenpoly(face_vert_loc_indices) else [],
+        ))
+
+    if bpy.ops.object.select_all.poll():
+        bpy.ops.object.select_all(action='DESELECT')
+
+    meshes = []
+    for data in import_obj.split_mesh(verts_loc, faces, unique_materials, name, use_split_groups):
+        verts_loc_split, faces_split, unique_materials_split, dataname, use_vnor, use_vtex = data
+        meshes.append(import_obj.create_mesh(True,
+                                             verts_loc_split,
+                                             verts_nor if use_vnor else [],
+                                             verts_tex if use_vtex else [],
+                                             faces_split,
+                                             unique_materials_split,
+                                             {},
+                                             vertex_groups,
+                                             dataname))
+
+    return (meshes, unique_materials, vertex_groups)
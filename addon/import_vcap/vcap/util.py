@@ -1,4 +1,5 @@
-from typing import IO, Sequence
+import math
+from typing import IO, Callable, Optional, Sequence
 from bmesh.types import BMesh
 import bpy
 from bpy.types import Image, Mesh, MeshLoopColor
@@ -6,6 +7,33 @@ from mathutils import Matrix, Vector
 
 COLOR_LAYER = "tint"
 
+FORMAT_VERSION = (0, 4, 0)
+"""The newest Vcap and Replay format version this importer can read."""
+
+def check_version(version: Optional[str], file_type='Vcap'):
+    """Make sure a file's format version can be read by this importer. Files
+    without a version, or with a version that can't be parsed, are assumed to
+    be old enough.
+
+    Args:
+        version (Optional[str]): The version from the file's metadata.
+        file_type (str): The kind of file, for the error message.
+
+    Raises:
+        RuntimeError: If the file is from a newer version of the format.
+    """
+    if not version:
+        return
+    try:
+        parsed = tuple(int(part) for part in version.split('.'))
+    except ValueError:
+        return
+    # Patch versions don't change the format.
+    if parsed[:2] > FORMAT_VERSION[:2]:
+        supported = '.'.join(str(part) for part in FORMAT_VERSION)
+        raise RuntimeError(f"{file_type} format version {version} is newer than this importer supports ({supported}). "
+                           "Please update the addon.")
+
 def add_mesh(mesh1: BMesh, mesh2: Mesh, matrix: Matrix=Matrix.Identity(4), color: list[float]=[1,1,1,1]):
     """Add the contents of a mesh into another mesh.
 
@@ -27,6 +55,35 @@ def add_mesh(mesh1: BMesh, mesh2: Mesh, matrix: Matrix=Matrix.Identity(4), color
     mesh1.from_mesh(mesh2)
     mesh2.transform(matrix.inverted())
 
+def add_baked_mesh(mesh1: BMesh, mesh2: Mesh, matrix: Matrix, get_color: Callable[[int], list[float]]):
+    """Add a baked section mesh into another mesh, coloring each face after the
+    block it belongs to.
+
+    Args:
+        mesh1 (BMesh): The base mesh.
+        mesh2 (Mesh): The section mesh, with the section's origin at 0, 0, 0.
+        matrix (Matrix): Transform of the section.
+        get_color (Callable[[int], list[float]]): Gets the color of a block from
+            its index in the section.
+    """
+    if not COLOR_LAYER in mesh2.vertex_colors:
+        mesh2.vertex_colors.new(name=COLOR_LAYER)
+
+    vcolors = mesh2.vertex_colors[COLOR_LAYER]
+    for poly in mesh2.polygons.values():
+        # Step just inside the face to find the block it belongs to.
+        inside = poly.center - poly.normal * .01
+        x = min(max(math.floor(inside.x), 0), 15)
+        y = min(max(math.floor(inside.y), 0), 15)
+        z = min(max(math.floor(inside.z), 0), 15)
+        color = get_color((y * 16 + z) * 16 + x)
+        for idx in poly.loop_indices:
+            vcolors.data[idx].color = (color[0], color[1], color[2], color[3])
+
+    mesh2.transform(matrix)
+    mesh1.from_mesh(mesh2)
+    mesh2.transform(matrix.inverted())
+
 def import_image(file: IO[bytes], name: str, alpha=True, is_data=False) -> Image:
     """Pack an image from an IO stream into the current blend.
 
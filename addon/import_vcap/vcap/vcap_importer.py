@@ -20,7 +20,7 @@ from ..amulet_nbt import (TAG_Byte_Array, TAG_Compound, TAG_Int_Array,
 from . import import_mesh, materials, util
 from .anim import TesselatedFrame
 from .context import VCAPContext, VCAPSettings
-from .world import VcapFrame, load_frame
+from .world import IFrame, PartialIFrame, VcapFrame, load_frame
 
 def load(file: Union[str, IO[bytes]],
          collection: Collection,
@@ -48,6 +48,13 @@ def load(file: Union[str, IO[bytes]],
             obj.select_set(False)
 
         vcontext = VCAPContext(archive, collection, context, name)
+
+        # Metadata
+        if 'meta.json' in archive.namelist():
+            with archive.open('meta.json') as f:
+                meta = json.load(f)
+            util.check_version(meta.get('version'))
+            vcontext.mesh_aliases = meta.get('meshAliases', {})
         
         # Materials
         for entry in archive.filelist:
@@ -90,6 +97,9 @@ def load(file: Union[str, IO[bytes]],
         # Clean up
         for mesh in vcontext.models.values():
             context.blend_data.meshes.remove(mesh)
+        for face_model in vcontext.face_models.values():
+            for mesh in face_model.values():
+                context.blend_data.meshes.remove(mesh)
 
     if has_progress:
         wm.progress_end()
@@ -97,10 +107,14 @@ def load(file: Union[str, IO[bytes]],
 def loadMeshes(archive: ZipFile, context: VCAPContext):
     for file in archive.filelist:
         if file.filename.startswith('mesh/'):
-            model_id = os.path.splitext(os.path.basename(file.filename))[0]
+            model_id, ext = os.path.splitext(os.path.basename(file.filename))
 
             loaded_file = context.archive.open(file)
-            context.models[model_id] = import_mesh.load(context, model_id, loaded_file)
+            model = import_mesh.load(context, model_id, loaded_file, binary=(ext == '.vmesh'))
+            if isinstance(model, dict):
+                context.face_models[model_id] = model
+            else:
+                context.models[model_id] = model
             loaded_file.close()
 
 def readWorld(world_dat: IO[bytes], vcontext: VCAPContext, settings: VCAPSettings, progress_function: Callable[[float], None] = None):
@@ -116,6 +130,9 @@ def readWorld(world_dat: IO[bytes], vcontext: VCAPContext, settings: VCAPSetting
     overrides: dict[Any, set[Vector]] = dict()
     blame: dict[Any, TesselatedFrame] = dict()
     loaded_frames: list[TesselatedFrame] = []
+    # Time of the nearest keyframe after the current frame. Everything before a
+    # keyframe is hidden once it starts.
+    keyframe_time: Union[float, None] = None
 
     for i in reversed(range(0, len(frames))): # Go backward because overrides affect past frames.
 
@@ -139,6 +156,7 @@ def readWorld(world_dat: IO[bytes], vcontext: VCAPContext, settings: VCAPSetting
                 obj.data.materials.append(mat)
 
         final_frame.time = frame.time
+        final_frame.end_time = keyframe_time
         override_id = f'frame{i}'
         my_override = frame.get_declared_override()
         
@@ -151,6 +169,12 @@ def readWorld(world_dat: IO[bytes], vcontext: VCAPContext, settings: VCAPSetting
 
         loaded_frames.append(final_frame)
 
+        if isinstance(frame, IFrame) and not isinstance(frame, PartialIFrame) and i > 0:
+            # Earlier frames are hidden entirely at this keyframe, so they don't
+            # need to be split by the overrides of later frames.
+            keyframe_time = frame.time
+            overrides.clear()
+
     loaded_frames.reverse()
 
     def add_keyframe(obj: Object, value: bool, frame: float):
@@ -173,6 +197,8 @@ def readWorld(world_dat: IO[bytes], vcontext: VCAPContext, settings: VCAPSetting
             add_keyframe(obj, True, seconds_to_frames(frame.time))
             if (id in blame):
                 add_keyframe(obj, False, seconds_to_frames(blame[id].time))
+            elif frame.end_time is not None:
+                add_keyframe(obj, False, seconds_to_frames(frame.end_time))
 
             for kf in obj.animation_data.action.fcurves[0].keyframe_points:
                 kf.interpolation = 'CONSTANT'        
@@ -196,7 +222,7 @@ def _read_unsigned(array: ndarray, index: int, bit_depth: int=8):
         return item
 
 def place(model_id: str, pos: tuple[float, float, float], vcontext: VCAPContext, color: list[float]=[1, 1, 1, 1]):
-    mesh = vcontext.models[model_id]
+    mesh = vcontext.get_model(model_id)
     if (len(mesh.vertices) == 0): return
 
     util.add_mesh(vcontext.target, mesh, Matrix.Translation(pos), color)
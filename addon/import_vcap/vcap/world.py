@@ -20,6 +20,8 @@ def load_frame(nbt: TAG_Compound, index = 0, offset = Vector()):
         return IFrame(nbt, index, offset)
     elif t == 1:
         return PFrame(nbt, index, offset)
+    elif t == 2:
+        return PartialIFrame(nbt, index, offset)
     else: raise RuntimeError(f"Unknown frame type: {t}")
 
 
@@ -69,8 +71,48 @@ class PFrame(VcapFrame):
         self.overrides = dict()
         self.vcap_offset = vcap_offset
 
+    def _blocks(self):
+        """Iterate over the updated blocks in this frame.
+
+        Yields:
+            tuple[Vector, int, list[float] | None, int]: The block's position, its index in the palette, its color, if any,
+                and its visible faces, if its model has split faces (otherwise -1).
+        """
+        nbt = self.__nbt__
+        if 'positions' in nbt:
+            packed = nbt['positions'].value.astype('int64')
+            xs = packed >> 38
+            ys = (packed << 52) >> 52
+            zs = (packed << 26) >> 38
+            states = nbt['states'].value
+            colors = nbt['colors'].value if 'colors' in nbt else None
+            faces = nbt['faces'].value if 'faces' in nbt else None
+            for i in range(len(packed)):
+                position = Vector((int(xs[i]), int(ys[i]), int(zs[i])))
+                if colors is not None:
+                    c = int(colors[i])
+                    color = [(c >> 16 & 255) / 255, (c >> 8 & 255) / 255, (c & 255) / 255, 1]
+                else:
+                    color = None
+                yield position, int(states[i]), color, -1 if faces is None else int(faces[i])
+            return
+
+        # Legacy format: one compound per block.
+        block: TAG_Compound
+        for block in nbt['blocks']:
+            pos: TAG_List = block['pos']
+            position = Vector((pos[0].value, pos[1].value, pos[2].value))
+            if 'color' in block:
+                color_tag: TAG_List = block['color']
+                r = _make_unsigned(color_tag[0].value) / 255
+                g = _make_unsigned(color_tag[1].value) / 255
+                b = _make_unsigned(color_tag[2].value) / 255
+                color = [r, g, b, 1]
+            else:
+                color = None
+            yield position, block['state'].value, color, -1
+
     def get_meshes(self, vcontext: VCAPContext, settings: VCAPSettings, progress_function=None):
-        blocks: TAG_List = self.__nbt__['blocks']
         palette: TAG_List = self.__nbt__['palette']
 
         meshes: dict[any, BMesh] = {}
@@ -78,19 +120,12 @@ class PFrame(VcapFrame):
         for id in self.overrides:
             meshes[id] = bmesh.new()
 
-        block: TAG_Compound
-        for block in blocks:
-            state: int = block['state'].value
-            pos: TAG_List = block['pos']
-            x = pos[0].value
-            y = pos[1].value
-            z = pos[2].value
-            position: Vector = Vector((x, y, z))
+        for position, state, block_color, faces in self._blocks():
             position += self.vcap_offset
             position.freeze()
 
             model_id: TAG_String = palette[state]
-            block_mesh = vcontext.models[model_id.value]
+            block_mesh = vcontext.get_model(model_id.value, faces)
             if len(block_mesh.vertices) == 0:
                 continue
 
@@ -100,12 +135,8 @@ class PFrame(VcapFrame):
                     mesh_index = id
                     break
 
-            if settings.use_vertex_colors and 'color' in block:
-                color_tag: TAG_List = block['color']
-                r = _make_unsigned(color_tag[0].value) / 255
-                g = _make_unsigned(color_tag[1].value) / 255
-                b = _make_unsigned(color_tag[2].value) / 255
-                color = [r, g, b, 1]
+            if settings.use_vertex_colors and block_color is not None:
+                color = block_color
             else:
                 color = [1, 1, 1, 1]
 
@@ -124,14 +155,7 @@ class PFrame(VcapFrame):
 
     def get_declared_override(self) -> set[tuple[int, int, int]]:
         overrides = set()
-        blocks: TAG_List = self.__nbt__['blocks']
-        block: TAG_Compound
-        for block in blocks:
-            pos: TAG_List = block['pos']
-            x = pos[0].value
-            y = pos[1].value
-            z = pos[2].value
-            position = Vector((x, y, z))
+        for position, state, color, faces in self._blocks():
             position += self.vcap_offset
             position.freeze()
             overrides.add(position)
@@ -164,6 +188,9 @@ class IFrame(VcapFrame):
         for id in self.overrides:
             meshes[id] = bmesh.new()
 
+        # Baked sections can only be used if none of their blocks are overridden.
+        overridden_sections: set[tuple[int, int, int]] | None = None
+
         section: TAG_Compound
         num_sections = len(sections)
         for i in range(0, num_sections):
@@ -175,32 +202,55 @@ class IFrame(VcapFrame):
             section = sections[i]
             palette: TAG_List = section['palette']
             offset = (section['x'].value, section['y'].value, section['z'].value)
-            blocks: TAG_Int_Array = section['blocks']
-            bblocks = blocks.value
+            # Uniform sections store a single model and color instead of per-block data.
+            uniform = 'blocks' not in section
+            # Models with split faces store each block's visible faces separately.
+            bfaces = section['faces'].value if 'faces' in section else None
+            if uniform and len(vcontext.get_model(palette[0].value, -1 if bfaces is None else int(bfaces[0])).vertices) == 0:
+                continue
+
+            bblocks = None if uniform else section['blocks'].value
             use_colors = False
-            if settings.use_vertex_colors and ('colors' in section) and ('colorPalette' in section):
+            if settings.use_vertex_colors and ('colorPalette' in section) and (uniform or 'colors' in section):
                 color_palette_tag: TAG_Byte_Array = section['colorPalette']
                 color_palette = color_palette_tag.value
-                colors_tag: TAG_Byte_Array = section['colors']
-                colors = colors_tag.value
+                colors = None if uniform else section['colors'].value
                 use_colors = True
 
+            def get_color(block_index: int):
+                if not use_colors:
+                    return [1, 1, 1, 1]
+                i = 0 if uniform else colors.item(block_index)
+                r = _read_unsigned(color_palette, i, 8) / 255
+                g = _read_unsigned(color_palette, i + 1, 8) / 255
+                b = _read_unsigned(color_palette, i + 2, 8) / 255
+                return [r, g, b, 1]
+
+            baked_palette = None
+            if 'mesh' in section:
+                if overridden_sections is None:
+                    overridden_sections = self._get_overridden_sections()
+                if offset not in overridden_sections:
+                    baked_palette = section['bakedPalette'].value
+                    section_pos = Vector((offset[0] * 16, offset[1] * 16, offset[2] * 16)) + self.vcap_offset
+                    util.add_baked_mesh(meshes['base'], vcontext.get_model(section['mesh'].value),
+                                        Matrix.Translation(section_pos), get_color)
+
             for y in range(0, 16):
                 for z in range(0, 16):
                     for x in range(0, 16):
-                        index = bblocks.item((y * 16 + z) * 16 + x)
+                        index = 0 if uniform else bblocks.item((y * 16 + z) * 16 + x)
+                        if baked_palette is not None and baked_palette.item(index) != 0:
+                            continue
                         model_id: str = palette[index].value
-                        block_mesh = vcontext.models[model_id]
+                        if bfaces is None:
+                            faces = -1
+                        else:
+                            faces = bfaces.item(0 if uniform else (y * 16 + z) * 16 + x)
+                        block_mesh = vcontext.get_model(model_id, faces)
                         if len(block_mesh.vertices) == 0:
                             continue
-                        if use_colors:
-                            i = colors.item((y * 16 + z) * 16 + x)
-                            r = _read_unsigned(color_palette, i, 8) / 255
-                            g = _read_unsigned(color_palette, i + 1, 8) / 255
-                            b = _read_unsigned(color_palette, i + 2, 8) / 255
-                            color = [r, g, b, 1]
-                        else:
-                            color = [1, 1, 1, 1]
+                        color = get_color((y * 16 + z) * 16 + x)
 
                         world_pos = Vector((offset[0] * 16 + x, offset[1] * 16 + y, offset[2] * 16 + z))
                         world_pos += self.vcap_offset
@@ -227,6 +277,35 @@ class IFrame(VcapFrame):
     def get_declared_override(self) -> set[Vector]:
         return set()
 
+    def _get_overridden_sections(self) -> set[tuple[int, int, int]]:
+        sections = set()
+        for vals in self.overrides.values():
+            for position in vals:
+                local = position - self.vcap_offset
+                sections.add((int(local.x) >> 4, int(local.y) >> 4, int(local.z) >> 4))
+        return sections
+
+
+class PartialIFrame(IFrame):
+    """A frame that replaces entire sections of the world. Stored like an IFrame,
+    but everything outside of its sections is left as it was.
+    """
+
+    def get_declared_override(self) -> set[Vector]:
+        overrides = set()
+        section: TAG_Compound
+        for section in self.__nbt__['sections']:
+            offset = (section['x'].value * 16, section['y'].value * 16, section['z'].value * 16)
+            for y in range(0, 16):
+                for z in range(0, 16):
+                    for x in range(0, 16):
+                        position = Vector((offset[0] + x, offset[1] + y, offset[2] + z))
+                        position += self.vcap_offset
+                        position.freeze()
+                        overrides.add(position)
+
+        return overrides
+
 def _read_unsigned(array: ndarray, index: int, bit_depth: int = 8):
     item = array.item(index)
     if (item < 0):
@@ -0,0 +1,165 @@
+package org.scaffoldeditor.worldexport;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import it.unimi.dsi.fastutil.objects.Reference2ObjectOpenHashMap;
+import net.minecraft.block.BlockState;
+import net.minecraft.util.math.BlockBox;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+import net.minecraft.world.WorldAccess;
+
+/**
+ * Fans client block updates out to a set of listeners. Each listener may be
+ * restricted to a world and a region, and updates that no listener is
+ * interested in are rejected with a couple of comparisons.
+ * <p>
+ * Listeners are stored in an immutable index that's rebuilt whenever one is
+ * added or removed, so dispatching an update never takes a lock or allocates.
+ * Listeners may be added and removed from any thread.
+ */
+public class BlockUpdateDispatcher implements ClientBlockPlaceCallback {
+
+    private static record Listener(ClientBlockPlaceCallback callback, @Nullable WorldAccess world,
+            @Nullable BlockBox bounds) {
+
+        boolean accepts(int sectionX, int sectionY, int sectionZ) {
+            return bounds == null || contains(bounds, sectionX, sectionY, sectionZ);
+        }
+    }
+
+    /**
+     * The listeners of a single world (or of every world), with the union of their
+     * bounds.
+     */
+    private static record Group(Listener[] listeners, @Nullable BlockBox bounds) {
+
+        static Group of(List<Listener> listeners) {
+            BlockBox union = null;
+            for (Listener listener : listeners) {
+                if (listener.bounds() == null) {
+                    union = null;
+                    break;
+                }
+                union = union == null ? listener.bounds() : encompass(union, listener.bounds());
+            }
+            return new Group(listeners.toArray(Listener[]::new), union);
+        }
+
+        void dispatch(BlockPos pos, @Nullable BlockState oldState, BlockState state, World world,
+                int sectionX, int sectionY, int sectionZ) {
+            if (bounds != null && !contains(bounds, sectionX, sectionY, sectionZ)) return;
+            for (Listener listener : listeners) {
+                if (listener.accepts(sectionX, sectionY, sectionZ)) {
+                    listener.callback().place(pos, oldState, state, world);
+                }
+            }
+        }
+    }
+
+    private static record Index(@Nullable Group anyWorld, Map<WorldAccess, Group> byWorld) {
+        static final Index EMPTY = new Index(null, Map.of());
+    }
+
+    private final List<Listener> listeners = new ArrayList<>();
+    private volatile Index index = Index.EMPTY;
+
+    /**
+     * Register a listener for block updates in every world.
+     * @param listener The listener.
+     */
+    public void register(ClientBlockPlaceCallback listener) {
+        register(listener, null, null);
+    }
+
+    /**
+     * Register a listener for block updates.
+     *
+     * @param listener The listener.
+     * @param world    The world to listen to, or <code>null</code> for every
+     *                 world.
+     * @param bounds   The region to listen to, in section coordinates, or
+     *                 <code>null</code> for everywhere.
+     */
+    public synchronized void register(ClientBlockPlaceCallback listener, @Nullable WorldAccess world,
+            @Nullable BlockBox bounds) {
+        listeners.add(new Listener(listener, world, bounds));
+        rebuild();
+    }
+
+    /**
+     * Remove every registration of a listener.
+     * @param listener The listener.
+     * @return If it was registered.
+     */
+    public synchronized boolean unregister(ClientBlockPlaceCallback listener) {
+        if (listeners.removeIf(l -> l.callback() == listener)) {
+            rebuild();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Get the number of registered listeners.
+     * @return Listener count.
+     */
+    public synchronized int size() {
+        return listeners.size();
+    }
+
+    private void rebuild() {
+        if (listeners.isEmpty()) {
+            index = Index.EMPTY;
+            return;
+        }
+
+        List<Listener> anyWorld = new ArrayList<>();
+        Map<WorldAccess, List<Listener>> byWorld = new Reference2ObjectOpenHashMap<>();
+        for (Listener listener : listeners) {
+            if (listener.world() == null) {
+                anyWorld.add(listener);
+            } else {
+                byWorld.computeIfAbsent(listener.world(), w -> new ArrayList<>()).add(listener);
+            }
+        }
+
+        Map<WorldAccess, Group> groups = new Reference2ObjectOpenHashMap<>();
+        byWorld.forEach((world, worldListeners) -> groups.put(world, Group.of(worldListeners)));
+        index = new Index(anyWorld.isEmpty() ? null : Group.of(anyWorld), groups);
+    }
+
+    @Override
+    public void place(BlockPos pos, @Nullable BlockState oldState, BlockState state, World world) {
+        Index index = this.index;
+        if (index == Index.EMPTY) return;
+
+        int sectionX = pos.getX() >> 4;
+        int sectionY = pos.getY() >> 4;
+        int sectionZ = pos.getZ() >> 4;
+
+        if (index.anyWorld() != null) {
+            index.anyWorld().dispatch(pos, oldState, state, world, sectionX, sectionY, sectionZ);
+        }
+        Group group = index.byWorld().get(world);
+        if (group != null) {
+            group.dispatch(pos, oldState, state, world, sectionX, sectionY, sectionZ);
+        }
+    }
+
+    private static boolean contains(BlockBox box, int x, int y, int z) {
+        return x >= box.getMinX() && x <= box.getMaxX()
+                && y >= box.getMinY() && y <= box.getMaxY()
+                && z >= box.getMinZ() && z <= box.getMaxZ();
+    }
+
+    private static BlockBox encompass(BlockBox a, BlockBox b) {
+        return new BlockBox(Math.min(a.getMinX(), b.getMinX()), Math.min(a.getMinY(), b.getMinY()),
+                Math.min(a.getMinZ(), b.getMinZ()), Math.max(a.getMaxX(), b.getMaxX()),
+                Math.max(a.getMaxY(), b.getMaxY()), Math.max(a.getMaxZ(), b.getMaxZ()));
+    }
+}
@@ -1,7 +1,9 @@
 package org.scaffoldeditor.worldexport;
 
-import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+import javax.annotation.Nullable;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -16,6 +18,8 @@ import org.scaffoldeditor.worldexport.world_snapshot.WorldSnapshotManager;
 import com.replaymod.simplepathing.ReplayModSimplePathing;
 
 import net.fabricmc.api.ClientModInitializer;
+import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientChunkEvents;
+import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientTickEvents;
 import net.fabricmc.fabric.api.client.rendering.v1.EntityModelLayerRegistry;
 import net.fabricmc.fabric.api.client.rendering.v1.EntityRendererRegistry;
 import net.fabricmc.fabric.api.client.rendering.v1.WorldRenderEvents;
@@ -33,6 +37,8 @@ import net.minecraft.registry.Registry;
 import net.minecraft.util.Identifier;
 import net.minecraft.util.hit.EntityHitResult;
 import net.minecraft.util.hit.HitResult;
+import net.minecraft.util.math.BlockBox;
+import net.minecraft.world.WorldAccess;
 
 public class ReplayExportMod implements ClientModInitializer {
 
@@ -53,7 +59,9 @@ public class ReplayExportMod implements ClientModInitializer {
 
     private final MinecraftClient client = MinecraftClient.getInstance();
 
-    private Set<ClientBlockPlaceCallback> blockUpdateListeners = new HashSet<>();
+    private final BlockUpdateDispatcher blockUpdateDispatcher = new BlockUpdateDispatcher();
+    private final Set<Runnable> tickListeners = new CopyOnWriteArraySet<>();
+    private final Set<ClientChunkEvents.Load> chunkLoadListeners = new CopyOnWriteArraySet<>();
     private final CameraAnimationModule cameraAnimationsModule = new CameraAnimationModule();
     private CameraPathRenderer cameraPathRenderer;
 
@@ -66,11 +74,51 @@ public class ReplayExportMod implements ClientModInitializer {
     }
 
     public void onBlockUpdated(ClientBlockPlaceCallback listener) {
-        blockUpdateListeners.add(listener);
+        blockUpdateDispatcher.register(listener);
+    }
+
+    /**
+     * Register a listener for block updates in a specific region.
+     * @param listener The listener.
+     * @param world    The world to listen to, or <code>null</code> for every world.
+     * @param bounds   The region to listen to, in section coordinates.
+     */
+    public void onBlockUpdated(ClientBlockPlaceCallback listener, @Nullable WorldAccess world, BlockBox bounds) {
+        blockUpdateDispatcher.register(listener, world, bounds);
     }
 
     public boolean removeOnBlockUpdated(ClientBlockPlaceCallback listener) {
-        return blockUpdateListeners.remove(listener);
+        return blockUpdateDispatcher.unregister(listener);
+    }
+
+    public BlockUpdateDispatcher getBlockUpdateDispatcher() {
+        return blockUpdateDispatcher;
+    }
+
+    /**
+     * Register a listener to be called at the end of every client tick. Unlike
+     * Fabric's tick event, the listener can be removed again.
+     * @param listener The listener.
+     */
+    public void onClientTick(Runnable listener) {
+        tickListeners.add(listener);
+    }
+
+    public boolean removeOnClientTick(Runnable listener) {
+        return tickListeners.remove(listener);
+    }
+
+    /**
+     * Register a listener to be called whenever the client loads a chunk. Unlike
+     * Fabric's chunk event, the listener can be removed again.
+     * @param listener The listener.
+     */
+    public void onChunkLoaded(ClientChunkEvents.Load listener) {
+        chunkLoadListeners.add(listener);
+    }
+
+    public boolean removeOnChunkLoaded(ClientChunkEvents.Load listener) {
+        return chunkLoadListeners.remove(listener);
     }
 
     public WorldSnapshotManager getWorldSnapshotManager() {
@@ -85,11 +133,17 @@ public class ReplayExportMod implements ClientModInitializer {
         }
 
 
-        ClientBlockPlaceCallback.EVENT.register((pos, oldState, state, world) -> {
-            blockUpdateListeners.forEach(listener -> listener.place(pos, oldState, state, world));
+        ClientBlockPlaceCallback.EVENT.register(blockUpdateDispatcher);
+
+        ClientTickEvents.END_CLIENT_TICK.register(client -> {
+            tickListeners.forEach(Runnable::run);
+        });
+
+        ClientChunkEvents.CHUNK_LOAD.register((world, chunk) -> {
+            chunkLoadListeners.forEach(listener -> listener.onChunkLoad(world, chunk));
         });
 
-        worldSnapshotManager = new WorldSnapshotManager();
+        worldSnapshotManager = new WorldSnapshotManager(blockUpdateDispatcher);
 
         ReplayModels.registerDefaults();
         EntityRendererRegistry.register(ANIMATED_CAMERA, CameraEntityRenderer::new);
@@ -11,6 +11,7 @@ import org.apache.logging.log4j.LogManager;
 import org.scaffoldeditor.worldexport.gui.bounds_editor.GuiBoundsEditor;
 import org.scaffoldeditor.worldexport.replaymod.export.ReplayExportSettings;
 import org.scaffoldeditor.worldexport.replaymod.export.ReplayExporter;
+import org.scaffoldeditor.worldexport.util.MeshFormat;
 import org.scaffoldeditor.worldexport.vcap.VcapSettings.FluidMode;
 
 import com.mojang.blaze3d.systems.RenderSystem;
@@ -76,6 +77,7 @@ public class GuiExportSettings extends GuiScreen implements Closeable {
         return new ReplayExportSettings()
                 .setBounds(bounds)
                 .setFluidMode(getFluidMode())
+                .setMeshFormat(getMeshFormat())
                 .setOutputFile(outputFile);
     }
 
@@ -90,6 +92,10 @@ public class GuiExportSettings extends GuiScreen implements Closeable {
 
         }
 
+        if (settings.getMeshFormat() != null) {
+            setMeshFormat(settings.getMeshFormat());
+        }
+
         // So we don't crash opening the file select screen
         File outputFile = settings.getOutputFile();
         if (outputFile == null || !outputFile.getParentFile().isDirectory()) {
@@ -120,6 +126,9 @@ public class GuiExportSettings extends GuiScreen implements Closeable {
     private void handleChangeFluidMode(Integer ordinal) {
     }
 
+    public final GuiDropdownMenu<MeshFormat> meshFormatDropdown = new GuiDropdownMenu<MeshFormat>()
+            .setMinSize(new Dimension(192, 20)).setValues(MeshFormat.values()).setSelected(MeshFormat.OBJ);
+
     public final GuiButton exportButton = new GuiButton(buttonPanel)
             .setI18nLabel("worldexport.gui.export")
             .setSize(100, 20)
@@ -134,7 +143,8 @@ public class GuiExportSettings extends GuiScreen implements Closeable {
             .addElements(new GridLayout.Data(1, 0.5),
                     new GuiLabel().setI18nText("replaymod.gui.rendersettings.outputfile"), outputFileButton,
                     new GuiLabel().setI18nText("worldexport.gui.export.bounds"), boundsEditorButton,
-                    new GuiLabel().setI18nText("worldexport.gui.export.fluid_mode"), fluidModeDropdown)
+                    new GuiLabel().setI18nText("worldexport.gui.export.fluid_mode"), fluidModeDropdown,
+                    new GuiLabel().setI18nText("worldexport.gui.export.mesh_format"), meshFormatDropdown)
             .setLayout(new GridLayout().setCellsEqualSize(false).setColumns(2).setSpacingX(5).setSpacingY(5));
 
     {
@@ -161,6 +171,14 @@ public class GuiExportSettings extends GuiScreen implements Closeable {
         return fluidModeDropdown.getSelectedValue();
     }
 
+    public void setMeshFormat(MeshFormat meshFormat) {
+        meshFormatDropdown.setSelected(meshFormat);
+    }
+
+    public MeshFormat getMeshFormat() {
+        return meshFormatDropdown.getSelectedValue();
+    }
+
     public BlockBox getBounds() {
         return bounds;
     }
@@ -23,6 +23,7 @@ import org.scaffoldeditor.worldexport.Constants;
 import org.scaffoldeditor.worldexport.mat.Field;
 import org.scaffoldeditor.worldexport.mat.Field.FieldType;
 import org.scaffoldeditor.worldexport.replaymod.util.ExportPhase;
+import org.scaffoldeditor.worldexport.util.MeshFormat;
 import org.scaffoldeditor.worldexport.util.ZipEntryOutputStream;
 
 public abstract class BaseReplayFile<T extends BaseReplayEntity> {
@@ -39,6 +40,25 @@ public abstract class BaseReplayFile<T extends BaseReplayEntity> {
 
     private Logger LOGGER = LogManager.getLogger();
 
+    private MeshFormat meshFormat = MeshFormat.OBJ;
+
+    /**
+     * Get the format entity meshes are written in.
+     * @return Mesh format.
+     */
+    public MeshFormat getMeshFormat() {
+        return meshFormat;
+    }
+
+    /**
+     * Set the format to write entity meshes in. Doesn't affect the meshes of the
+     * world, which are set in its own settings.
+     * @param meshFormat Mesh format.
+     */
+    public void setMeshFormat(MeshFormat meshFormat) {
+        this.meshFormat = meshFormat;
+    }
+
     /**
      * <p>
      * Save this replay to a file.
@@ -90,7 +110,7 @@ public abstract class BaseReplayFile<T extends BaseReplayEntity> {
         for (T ent : getEntities()) {
             preserializeEntity(ent);
             out.putNextEntry(new ZipEntry("entities/"+ent.getName()+".xml"));
-            ReplayIO.serializeEntity(ent, new OutputStreamWriter(out));
+            ReplayIO.serializeEntity(ent, new OutputStreamWriter(out), meshFormat);
             out.closeEntry();
         }
 
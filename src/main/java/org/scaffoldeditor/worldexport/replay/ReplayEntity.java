@@ -18,6 +18,7 @@ import org.scaffoldeditor.worldexport.replay.models.Transform;
 import org.scaffoldeditor.worldexport.replay.models.OverrideChannel.OverrideChannelFrame;
 import org.scaffoldeditor.worldexport.replay.models.ReplayModel.Pose;
 import org.scaffoldeditor.worldexport.util.MathUtils;
+import org.scaffoldeditor.worldexport.util.MeshFormat;
 import org.scaffoldeditor.worldexport.util.UtilFunctions;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
@@ -190,6 +191,17 @@ public class ReplayEntity<T extends Entity> implements BaseReplayEntity {
      * @return The root <entity> tag of the XML.
      */
     public static Element writeToXML(BaseReplayEntity entity, Document doc) {
+        return writeToXML(entity, doc, MeshFormat.OBJ);
+    }
+
+    /**
+     * Save a replay entity out to XML.
+     * @param entity     Entity to save.
+     * @param doc        XML document.
+     * @param meshFormat The format to write the entity's meshes in.
+     * @return The root <entity> tag of the XML.
+     */
+    public static Element writeToXML(BaseReplayEntity entity, Document doc, MeshFormat meshFormat) {
         Element node = doc.createElement("entity");
         node.setAttribute("name", entity.getName());
         if (entity.getMinecraftID() != null) {
@@ -198,7 +210,7 @@ public class ReplayEntity<T extends Entity> implements BaseReplayEntity {
 
         ReplayModel<?> model = entity.getModel();
 
-        Element modelNode = model.serialize(doc);
+        Element modelNode = model.serialize(doc, meshFormat);
         node.appendChild(modelNode);
 
         Element animNode = doc.createElement("anim");
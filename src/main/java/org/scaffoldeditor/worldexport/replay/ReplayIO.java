@@ -11,6 +11,7 @@ import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
 
+import org.scaffoldeditor.worldexport.util.MeshFormat;
 import org.w3c.dom.Document;
 
 public final class ReplayIO {
@@ -22,6 +23,16 @@ public final class ReplayIO {
      * @param target Writer to write the XML into.
      */
     public static void serializeEntity(BaseReplayEntity entity, Writer target) {
+        serializeEntity(entity, target, MeshFormat.OBJ);
+    }
+
+    /**
+     * Serialize a replay entity into XML.
+     * @param entity     Entity to serialize.
+     * @param target     Writer to write the XML into.
+     * @param meshFormat The format to write the entity's meshes in.
+     */
+    public static void serializeEntity(BaseReplayEntity entity, Writer target, MeshFormat meshFormat) {
         DocumentBuilderFactory dFactory = DocumentBuilderFactory.newInstance();
         DocumentBuilder dBuilder;
         try {
@@ -31,7 +42,7 @@ public final class ReplayIO {
         }
 
         Document doc = dBuilder.newDocument();
-        doc.appendChild(ReplayEntity.writeToXML(entity, doc));
+        doc.appendChild(ReplayEntity.writeToXML(entity, doc, meshFormat));
 
         try {
             TransformerFactory tFactory = TransformerFactory.newInstance();
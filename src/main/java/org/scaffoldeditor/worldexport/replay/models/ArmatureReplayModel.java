@@ -1,8 +1,5 @@
 package org.scaffoldeditor.worldexport.replay.models;
 
-import java.io.IOException;
-import java.io.StringWriter;
-import java.io.Writer;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -10,12 +7,12 @@ import org.joml.Quaterniond;
 import org.joml.Quaterniondc;
 import org.joml.Vector3d;
 import org.joml.Vector3dc;
+import org.scaffoldeditor.worldexport.util.MeshFormat;
 import org.scaffoldeditor.worldexport.util.TreeIterator;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 
 import de.javagl.obj.Obj;
-import de.javagl.obj.ObjWriter;
 import de.javagl.obj.Objs;
 
 /**
@@ -61,22 +58,14 @@ public class ArmatureReplayModel implements ReplayModel<Bone> {
         this.mesh = Objs.create();
     }
 
-    public Element serialize(Document dom) {
+    @Override
+    public Element serialize(Document dom, MeshFormat meshFormat) {
         Element element = dom.createElement("model");
         element.setAttribute("rig-type", "armature");
         for (Bone bone : this.bones) {
             element.appendChild(serializeBone(bone, dom));
         }
-        Writer writer = new StringWriter();
-        try {
-            ObjWriter.write(this.mesh, writer);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
-
-        Element meshNode = dom.createElement("mesh");
-        meshNode.appendChild(dom.createTextNode(writer.toString()));
-        element.appendChild(meshNode);
+        element.appendChild(ReplayModel.serializeMesh(this.mesh, dom, meshFormat));
         for (OverrideChannel channel : overrideChannels) {
             element.appendChild(channel.serialize(dom));
         }
@@ -5,6 +5,7 @@ import java.util.List;
 
 import javax.management.modelmbean.XMLParseException;
 
+import org.scaffoldeditor.worldexport.util.MeshFormat;
 import org.scaffoldeditor.worldexport.util.TreeIterator;
 import org.scaffoldeditor.worldexport.util.XMLUtils;
 import org.scaffoldeditor.worldexport.util.XMLUtils.JavaNodeList;
@@ -43,11 +44,11 @@ public class MultipartReplayModel implements ReplayModel<ReplayModelPart> {
     }
 
     @Override
-    public Element serialize(Document dom) {
+    public Element serialize(Document dom, MeshFormat meshFormat) {
         Element element = dom.createElement("model");
         element.setAttribute("rig-type", "multipart");
         for (ReplayModelPart bone : bones) {
-            element.appendChild(bone.serialize(dom));
+            element.appendChild(bone.serialize(dom, meshFormat));
         }
         for (OverrideChannel channel : overrideChannels) {
             element.appendChild(channel.serialize(dom));
@@ -1,12 +1,24 @@
 package org.scaffoldeditor.worldexport.replay.models;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Base64;
 import java.util.HashMap;
 import java.util.Map;
 
 import org.scaffoldeditor.worldexport.replay.models.OverrideChannel.OverrideChannelFrame;
+import org.scaffoldeditor.worldexport.util.MeshFormat;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 
+import de.javagl.obj.Obj;
+import de.javagl.obj.ObjReader;
+import de.javagl.obj.ObjWriter;
+import de.javagl.obj.ReadableObj;
+
 /**
  * <p>
  * Unlike block models, Minecraft does not have a universal system for entity
@@ -77,10 +89,74 @@ public interface ReplayModel<T> {
 
     /**
      * Save this model into XML.
+     * @param dom        Document to write into.
+     * @param meshFormat The format to write the model's meshes in.
+     * @return The <code>&lt;model&gt;</code> element of the entity file.
+     */
+    public Element serialize(Document dom, MeshFormat meshFormat);
+
+    /**
+     * Save this model into XML, with its meshes in OBJ format.
      * @param dom Document to write into.
      * @return The <code>&lt;model&gt;</code> element of the entity file.
      */
-    public Element serialize(Document dom);
+    public default Element serialize(Document dom) {
+        return serialize(dom, MeshFormat.OBJ);
+    }
+
+    /**
+     * Create the <code>&lt;mesh&gt;</code> element of a model or model part. OBJ
+     * meshes are written as text; binary meshes are base64 encoded and marked with
+     * a <code>format</code> attribute.
+     * 
+     * @param mesh       The mesh.
+     * @param dom        Document to write into.
+     * @param meshFormat The format to write the mesh in.
+     * @return The mesh element.
+     */
+    public static Element serializeMesh(ReadableObj mesh, Document dom, MeshFormat meshFormat) {
+        Element meshNode = dom.createElement("mesh");
+        try {
+            if (meshFormat == MeshFormat.OBJ) {
+                StringWriter writer = new StringWriter();
+                ObjWriter.write(mesh, writer);
+                meshNode.appendChild(dom.createTextNode(writer.toString()));
+            } else {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                meshFormat.write(mesh, out);
+                meshNode.setAttribute("format", meshFormat.getExtension());
+                meshNode.appendChild(dom.createTextNode(Base64.getEncoder().encodeToString(out.toByteArray())));
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return meshNode;
+    }
+
+    /**
+     * Read a <code>&lt;mesh&gt;</code> element written by {@link #serializeMesh}.
+     * 
+     * @param meshNode The mesh element.
+     * @return The mesh.
+     * @throws IOException If the mesh is malformed or in an unknown format.
+     */
+    public static Obj parseMesh(Element meshNode) throws IOException {
+        String format = meshNode.getAttribute("format");
+        String text = meshNode.getTextContent();
+        if (format.isEmpty() || format.equals(MeshFormat.OBJ.getExtension())) {
+            return ObjReader.read(new StringReader(text));
+        }
+        for (MeshFormat meshFormat : MeshFormat.values()) {
+            if (meshFormat.getExtension().equals(format)) {
+                try {
+                    return meshFormat.read(new ByteArrayInputStream(Base64.getMimeDecoder().decode(text)));
+                } catch (IllegalArgumentException e) {
+                    throw new IOException("Mesh is not valid base64.", e);
+                }
+            }
+        }
+        throw new IOException("Unknown mesh format: " + format);
+    }
 
     /**
      * Determine whether this model type allows the toggling of visibility of bones.
@@ -1,9 +1,6 @@
 package org.scaffoldeditor.worldexport.replay.models;
 
 import java.io.IOException;
-import java.io.StringReader;
-import java.io.StringWriter;
-import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
@@ -11,14 +8,13 @@ import java.util.List;
 import javax.management.modelmbean.XMLParseException;
 
 import org.apache.logging.log4j.LogManager;
+import org.scaffoldeditor.worldexport.util.MeshFormat;
 import org.scaffoldeditor.worldexport.util.TreeNode;
 import org.scaffoldeditor.worldexport.util.XMLUtils;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 
 import de.javagl.obj.Obj;
-import de.javagl.obj.ObjReader;
-import de.javagl.obj.ObjWriter;
 import de.javagl.obj.Objs;
 
 public class ReplayModelPart implements TreeNode<ReplayModelPart> {
@@ -57,22 +53,17 @@ public class ReplayModelPart implements TreeNode<ReplayModelPart> {
     }
 
     public Element serialize(Document dom) {
+        return serialize(dom, MeshFormat.OBJ);
+    }
+
+    public Element serialize(Document dom, MeshFormat meshFormat) {
         Element element = dom.createElement("part");
 
         // Write mesh
-        Writer writer = new StringWriter();
-        try {
-            ObjWriter.write(mesh, writer);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
-
-        Element meshNode = dom.createElement("mesh");
-        meshNode.appendChild(dom.createTextNode(writer.toString()));
-        element.appendChild(meshNode);
+        element.appendChild(ReplayModel.serializeMesh(mesh, dom, meshFormat));
 
         for (ReplayModelPart child : children) {
-            element.appendChild(child.serialize(dom));
+            element.appendChild(child.serialize(dom, meshFormat));
         }
 
         element.setAttribute("name", getName());
@@ -93,11 +84,10 @@ public class ReplayModelPart implements TreeNode<ReplayModelPart> {
         ReplayModelPart part = new ReplayModelPart(name);
         List<Element> mesh = XMLUtils.getChildrenByTagName(xml, "mesh");
         if (mesh.size() == 1) {
-            String objString = mesh.get(0).getTextContent();
             try {
-                part.mesh = ObjReader.read(new StringReader(objString));
+                part.mesh = ReplayModel.parseMesh(mesh.get(0));
             } catch (IOException e) {
-                throw new XMLParseException(e, "Improperly formatted OBJ in part "+name);
+                throw new XMLParseException(e, "Improperly formatted mesh in part "+name);
             }
         } else {
             LogManager.getLogger().error("Model part {} has {} meshes!", name, mesh.size());
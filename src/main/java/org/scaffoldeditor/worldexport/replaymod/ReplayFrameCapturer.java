@@ -7,6 +7,7 @@ import java.nio.file.Path;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
@@ -32,15 +33,20 @@ import org.scaffoldeditor.worldexport.replay.ReplayEntity;
 import org.scaffoldeditor.worldexport.replay.ReplayFile;
 import org.scaffoldeditor.worldexport.replay.model_adapters.ReplayModelAdapter.ModelNotFoundException;
 import org.scaffoldeditor.worldexport.replaymod.export.ReplayExportSettings;
+import org.scaffoldeditor.worldexport.vcap.BlockUpdateBatcher;
 import org.scaffoldeditor.worldexport.vcap.IFrame;
+import org.scaffoldeditor.worldexport.vcap.SectionVisibility;
 import org.scaffoldeditor.worldexport.vcap.BlockExporter.CaptureCallback;
+import org.scaffoldeditor.worldexport.world_snapshot.ChunkView;
 
+import it.unimi.dsi.fastutil.longs.LongSet;
 import net.minecraft.block.BlockState;
 import net.minecraft.client.MinecraftClient;
 import net.minecraft.entity.Entity;
 import net.minecraft.entity.EntityType;
 import net.minecraft.util.Util;
 import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Vec3d;
 import net.minecraft.world.World;
 
 public class ReplayFrameCapturer implements FrameCapturer<BitmapFrame> {
@@ -52,12 +58,16 @@ public class ReplayFrameCapturer implements FrameCapturer<BitmapFrame> {
     protected ReplayExportSettings settings;
     protected ReplayFile exporter;
 
-    protected Map<BlockPos, BlockState> blockUpdateCache = new HashMap<>();
+    @Nullable
+    protected BlockUpdateBatcher blockUpdates;
     protected Map<Entity, ReplayEntity<?>> entityCache = new HashMap<>();
     protected Set<Entity> skippedEnts = new HashSet<>();
 
     protected CompletableFuture<IFrame> initialWorldCapture;
 
+    @Nullable
+    protected List<Vec3d> cameraSamples;
+
     private float tickDelta = 0;
     private MinecraftClient client = MinecraftClient.getInstance();
 
@@ -77,11 +87,20 @@ public class ReplayFrameCapturer implements FrameCapturer<BitmapFrame> {
 
         @Override
         public void place(BlockPos pos, @Nullable BlockState oldState, BlockState state, World world) {
-            blockUpdateCache.put(pos, state);
+            if (blockUpdates != null) blockUpdates.add(pos);
         }
         
     };
 
+    /**
+     * Set the positions the camera will pass through during the export. Used to
+     * cull hidden sections if enabled in the settings.
+     * @param cameraSamples The camera positions, or <code>null</code> if unknown.
+     */
+    public void setCameraSamples(@Nullable List<Vec3d> cameraSamples) {
+        this.cameraSamples = cameraSamples;
+    }
+
     public ReplayFile getExporter() {
         return exporter;
     }
@@ -124,15 +143,52 @@ public class ReplayFrameCapturer implements FrameCapturer<BitmapFrame> {
         }
         
         exporter.setFps(fps);
+        exporter.setMeshFormat(settings.getMeshFormat());
         exporter.getWorldExporter()
                 .getSettings()
-                .setFluidMode(settings.getFluidMode());
+                .setFluidMode(settings.getFluidMode())
+                .setKeyframeInterval(settings.getKeyframeInterval())
+                .setKeyframeBlockThreshold(settings.getKeyframeBlockThreshold())
+                .setBackfillWindow(settings.getBackfillWindow())
+                .setBakeSections(settings.bakeSections())
+                .setSplitFaces(settings.splitFaces())
+                .setMeshFormat(settings.getMeshFormat());
+
+        if (blockUpdates == null) {
+            blockUpdates = new BlockUpdateBatcher(settings.getBounds());
+        }
+
+        if (settings.cullHiddenSections()) {
+            cullHiddenSections();
+        }
 
         initialWorldCapture = exporter.getWorldExporter().captureIFrameAsync(0, Util.getMainWorkerExecutor(), callback);
-        ReplayExportMod.getInstance().onBlockUpdated(blockUpdateListener);
+        ReplayExportMod.getInstance().onBlockUpdated(blockUpdateListener, null, settings.getBounds());
         return initialWorldCapture;
     }
 
+    /**
+     * Restrict the world capture to the sections that can be seen from the camera
+     * samples.
+     */
+    private void cullHiddenSections() {
+        if (cameraSamples == null || cameraSamples.isEmpty()) {
+            LogManager.getLogger().warn("No camera positions were found on the timeline. Hidden sections won't be culled.");
+            return;
+        }
+
+        LongSet visible;
+        try {
+            visible = SectionVisibility.compute(new ChunkView.Wrapper(client.world), settings.getBounds(), cameraSamples);
+        } catch (IllegalArgumentException e) {
+            LogManager.getLogger().warn("Unable to cull hidden sections.", e);
+            return;
+        }
+
+        exporter.getWorldExporter().getSettings().setVisibleSections(visible);
+        LogManager.getLogger().info("{} section(s) are visible from the camera path.", visible.size());
+    }
+
     @Override
     public boolean isDone() {
         return framesDone >= renderInfo.getTotalFrames();
@@ -147,10 +203,7 @@ public class ReplayFrameCapturer implements FrameCapturer<BitmapFrame> {
         }
 
         double time = framesDone / (double) fps;
-        if (blockUpdateCache.size() > 0) {
-            exporter.getWorldExporter().capturePFrame(time, blockUpdateCache.keySet(), client.world);
-            blockUpdateCache.clear();
-        }
+        captureBlockUpdates(time);
 
         client.world.getEntities().forEach(this::captureEntity);
 
@@ -169,15 +222,23 @@ public class ReplayFrameCapturer implements FrameCapturer<BitmapFrame> {
         renderInfo.updateForNextFrame();
 
         double time = framesDone / (double) fps;
-        if (!blockUpdateCache.isEmpty()) {
-            exporter.getWorldExporter().capturePFrame(time, blockUpdateCache.keySet(), client.world);
-            blockUpdateCache.clear();
-        }
+        captureBlockUpdates(time);
         // TODO: Don't export camera.
         client.world.getEntities().forEach(this::captureEntity);
         framesDone++;
     }
 
+    /**
+     * Capture any chunks that have loaded and the block updates since the last
+     * frame, or a keyframe holding those updates if the keyframe policy calls for
+     * one. Called on every frame, whether or not there were any updates.
+     * @param time Timestamp of the frame.
+     */
+    protected void captureBlockUpdates(double time) {
+        Set<BlockPos> updates = blockUpdates != null ? blockUpdates.flush() : Set.of();
+        exporter.getWorldExporter().captureFrame(time, updates, client.world);
+    }
+
     protected void captureEntity(Entity ent) {
         if (skippedEnts.contains(ent)) {
             return;
@@ -208,10 +269,12 @@ public class ReplayFrameCapturer implements FrameCapturer<BitmapFrame> {
     }
 
     /**
-     * Close the resources associated with this capturer.
+     * Close the resources associated with this capturer, including any temporary
+     * files left by a capture that was never saved.
      */
     public void close() throws IOException {
         ReplayExportMod.getInstance().removeOnBlockUpdated(blockUpdateListener);
+        if (exporter != null) exporter.getWorldExporter().close();
         worldCaptureService.shutdown();
         worldCaptureService = null;
     }
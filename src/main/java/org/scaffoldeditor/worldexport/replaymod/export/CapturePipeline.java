@@ -70,11 +70,17 @@ public class CapturePipeline {
         return worldCapture.thenRunAsync(() ->{
             try {
                 frameCapture.save(info::setPhase);
-                frameCapture.close();
             } catch (IOException e) {
                 throw new CompletionException(e);
             }
-        }, frameCapture.getWorldCaptureService());
+        }, frameCapture.getWorldCaptureService()).whenComplete((v, e) -> {
+            // Close even if the capture or save failed, so temp files are deleted.
+            try {
+                frameCapture.close();
+            } catch (IOException ex) {
+                LogUtils.getLogger().error("Error closing frame capture", ex);
+            }
+        });
     }
 
     public ReplayFrameCapturer getFrameCapture() {
@@ -10,6 +10,7 @@ import java.nio.charset.StandardCharsets;
 
 import javax.annotation.Nullable;
 
+import org.scaffoldeditor.worldexport.util.MeshFormat;
 import org.scaffoldeditor.worldexport.vcap.VcapSettings.FluidMode;
 
 import com.google.gson.Gson;
@@ -36,6 +37,14 @@ public final class ReplayExportSettings {
 
     private FluidMode fluidMode = FluidMode.DYNAMIC;
 
+    private double keyframeInterval = 30;
+    private int keyframeBlockThreshold = 0;
+    private double backfillWindow = 10;
+    private boolean cullHiddenSections = false;
+    private boolean bakeSections = false;
+    private boolean splitFaces = false;
+    private MeshFormat meshFormat = MeshFormat.OBJ;
+
     @JsonAdapter(FileSerializer.class)
     private File outputFile = new File("output.replay");
 
@@ -57,6 +66,97 @@ public final class ReplayExportSettings {
         return this;
     }
 
+    /**
+     * Get the maximum time between world keyframes.
+     * @return Time in seconds. <code>0</code> to disable.
+     */
+    public double getKeyframeInterval() {
+        return keyframeInterval;
+    }
+
+    public ReplayExportSettings setKeyframeInterval(double keyframeInterval) {
+        this.keyframeInterval = keyframeInterval;
+        return this;
+    }
+
+    /**
+     * Get the number of changed blocks after which a world keyframe is captured.
+     * @return Block count. <code>0</code> to disable.
+     */
+    public int getKeyframeBlockThreshold() {
+        return keyframeBlockThreshold;
+    }
+
+    public ReplayExportSettings setKeyframeBlockThreshold(int keyframeBlockThreshold) {
+        this.keyframeBlockThreshold = keyframeBlockThreshold;
+        return this;
+    }
+
+    /**
+     * Get how long after the start of the export to keep capturing chunks that
+     * weren't loaded at the start.
+     * @return Time in seconds. <code>0</code> to disable.
+     */
+    public double getBackfillWindow() {
+        return backfillWindow;
+    }
+
+    public ReplayExportSettings setBackfillWindow(double backfillWindow) {
+        this.backfillWindow = backfillWindow;
+        return this;
+    }
+
+    /**
+     * Whether to leave out the sections of the world that can't be seen from
+     * anywhere along the camera path, such as caves and the far sides of hills.
+     */
+    public boolean cullHiddenSections() {
+        return cullHiddenSections;
+    }
+
+    public ReplayExportSettings setCullHiddenSections(boolean cullHiddenSections) {
+        this.cullHiddenSections = cullHiddenSections;
+        return this;
+    }
+
+    /**
+     * Whether to bake each section of the world into a single mesh rather than
+     * instancing every block in it when importing.
+     */
+    public boolean bakeSections() {
+        return bakeSections;
+    }
+
+    public ReplayExportSettings setBakeSections(boolean bakeSections) {
+        this.bakeSections = bakeSections;
+        return this;
+    }
+
+    /**
+     * Whether to write each block state's model once, with its faces split, rather
+     * than once for every combination of visible faces.
+     */
+    public boolean splitFaces() {
+        return splitFaces;
+    }
+
+    public ReplayExportSettings setSplitFaces(boolean splitFaces) {
+        this.splitFaces = splitFaces;
+        return this;
+    }
+
+    /**
+     * The format to write the meshes of the world and entities in.
+     */
+    public MeshFormat getMeshFormat() {
+        return meshFormat;
+    }
+
+    public ReplayExportSettings setMeshFormat(MeshFormat meshFormat) {
+        this.meshFormat = meshFormat;
+        return this;
+    }
+
     public File getOutputFile() {
         return outputFile;
     }
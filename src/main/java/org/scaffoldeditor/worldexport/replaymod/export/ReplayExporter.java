@@ -11,6 +11,7 @@ import org.lwjgl.glfw.GLFW;
 import org.lwjgl.opengl.GL11;
 import org.scaffoldeditor.worldexport.gui.GuiReplayExporter;
 import org.scaffoldeditor.worldexport.replaymod.ReplayFrameCapturer;
+import org.scaffoldeditor.worldexport.replaymod.util.CameraPathSampler;
 import org.scaffoldeditor.worldexport.replaymod.util.ExportInfo;
 import org.scaffoldeditor.worldexport.replaymod.util.ExportPhase;
 
@@ -58,6 +59,12 @@ public class ReplayExporter implements RenderInfo {
 
     private static final int FPS = 20;
 
+    /**
+     * The time between camera positions used to cull hidden sections, in
+     * milliseconds.
+     */
+    private static final long CAMERA_SAMPLE_INTERVAL = 250;
+
     private final ReplayExportSettings settings;
     private final ReplayHandler replayHandler;
     private final Timeline timeline;
@@ -203,6 +210,11 @@ public class ReplayExporter implements RenderInfo {
 
         totalFrames = (int) (duration * FPS / 1000);
 
+        if (settings.cullHiddenSections()) {
+            pipeline.getFrameCapture().setCameraSamples(
+                    CameraPathSampler.sample(timeline, duration, CAMERA_SAMPLE_INTERVAL));
+        }
+
         gui.toMinecraft().init(client, client.getWindow().getScaledWidth(), client.getWindow().getScaledHeight());
 
         // TODO: Do we need this if we're only exporting?
@@ -0,0 +1,48 @@
+package org.scaffoldeditor.worldexport.replaymod.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.replaymod.pathing.properties.CameraProperties;
+import com.replaymod.replaystudio.pathing.path.Timeline;
+
+import net.minecraft.util.math.Vec3d;
+
+/**
+ * Samples the camera positions of a ReplayMod timeline.
+ */
+public final class CameraPathSampler {
+    private CameraPathSampler() {}
+
+    /**
+     * Sample the camera's position at regular intervals along a timeline. Times
+     * where the timeline doesn't set a position (such as when it's following an
+     * entity) are skipped.
+     *
+     * @param timeline The timeline to sample.
+     * @param duration The length of the timeline in milliseconds.
+     * @param interval The time between samples in milliseconds.
+     * @return The sampled positions.
+     */
+    public static List<Vec3d> sample(Timeline timeline, long duration, long interval) {
+        if (interval <= 0) {
+            throw new IllegalArgumentException("Sample interval must be positive.");
+        }
+
+        List<Vec3d> samples = new ArrayList<>();
+        for (long time = 0; time <= duration; time += interval) {
+            addSample(timeline, time, samples);
+        }
+        // Make sure the last frame is covered.
+        if (duration % interval != 0) {
+            addSample(timeline, duration, samples);
+        }
+        return samples;
+    }
+
+    private static void addSample(Timeline timeline, long time, List<Vec3d> samples) {
+        timeline.getValue(CameraProperties.POSITION, time).ifPresent(pos -> {
+            samples.add(new Vec3d(pos.getLeft(), pos.getMiddle(), pos.getRight()));
+        });
+    }
+}
@@ -0,0 +1,311 @@
+package org.scaffoldeditor.worldexport.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import de.javagl.obj.FloatTuple;
+import de.javagl.obj.Obj;
+import de.javagl.obj.ObjFace;
+import de.javagl.obj.Objs;
+import de.javagl.obj.ReadableObj;
+import it.unimi.dsi.fastutil.objects.Object2IntLinkedOpenHashMap;
+
+/**
+ * Reads and writes meshes in the binary mesh format, a compact alternative to
+ * OBJ text. A mesh read back from this format has the same vertices, faces,
+ * groups and materials as the one that was written. See
+ * <code>doc/mesh.md</code> for the specification.
+ */
+public final class BinaryMesh {
+    private BinaryMesh() {}
+
+    /**
+     * The first four bytes of every binary mesh.
+     */
+    public static final byte[] MAGIC = { 'V', 'M', 'S', 'H' };
+
+    /**
+     * The version of the format this class writes.
+     */
+    public static final int VERSION = 1;
+
+    private static final int FACE_TEX_COORDS = 1;
+    private static final int FACE_NORMALS = 2;
+
+    private static record GroupRange(int firstFace, int[] names) {}
+    private static record MaterialRange(int firstFace, int name) {}
+
+    /**
+     * Write a mesh in the binary format.
+     *
+     * @param mesh Mesh to write.
+     * @param out  Output stream to write to. Will not be closed.
+     * @throws IOException If an IO exception occurs.
+     */
+    public static void write(ReadableObj mesh, OutputStream out) throws IOException {
+        Object2IntLinkedOpenHashMap<String> strings = new Object2IntLinkedOpenHashMap<>();
+        strings.defaultReturnValue(-1);
+        List<GroupRange> groupRanges = new ArrayList<>();
+        List<MaterialRange> materialRanges = new ArrayList<>();
+
+        int numFaces = mesh.getNumFaces();
+        int numIndices = 0;
+        int numTexIndices = 0;
+        int numNormalIndices = 0;
+
+        for (int i = 0; i < numFaces; i++) {
+            ObjFace face = mesh.getFace(i);
+            if (face.getNumVertices() > 255) {
+                throw new IOException("Face " + i + " has too many vertices: " + face.getNumVertices());
+            }
+            numIndices += face.getNumVertices();
+            if (face.containsTexCoordIndices()) numTexIndices += face.getNumVertices();
+            if (face.containsNormalIndices()) numNormalIndices += face.getNumVertices();
+
+            Collection<String> groups = mesh.getActivatedGroupNames(face);
+            if (groups != null) {
+                groupRanges.add(new GroupRange(i, groups.stream().mapToInt(name -> intern(strings, name)).toArray()));
+            }
+            String material = mesh.getActivatedMaterialGroupName(face);
+            if (material != null) {
+                materialRanges.add(new MaterialRange(i, intern(strings, material)));
+            }
+        }
+
+        byte[][] encodedStrings = new byte[strings.size()][];
+        int stringBytes = 0;
+        for (String string : strings.keySet()) {
+            byte[] encoded = string.getBytes(StandardCharsets.UTF_8);
+            if (encoded.length > 0xFFFF) {
+                throw new IOException("Name is too long: " + string);
+            }
+            encodedStrings[strings.getInt(string)] = encoded;
+            stringBytes += 2 + encoded.length;
+        }
+
+        int groupBytes = 0;
+        for (GroupRange range : groupRanges) {
+            groupBytes += 4 + 2 + 4 * range.names().length;
+        }
+
+        int size = MAGIC.length + 2 + 2
+                + 4 + 12 * mesh.getNumVertices()
+                + 4 + 8 * mesh.getNumTexCoords()
+                + 4 + 12 * mesh.getNumNormals()
+                + 4 + 2 * numFaces
+                + 4 * (numIndices + numTexIndices + numNormalIndices)
+                + 4 + stringBytes
+                + 4 + 8 * materialRanges.size()
+                + 4 + groupBytes;
+
+        ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put(MAGIC);
+        buffer.putShort((short) VERSION);
+        buffer.putShort((short) 0); // Flags
+
+        // Vertex data
+        buffer.putInt(mesh.getNumVertices());
+        for (int i = 0; i < mesh.getNumVertices(); i++) {
+            FloatTuple vertex = mesh.getVertex(i);
+            buffer.putFloat(vertex.getX()).putFloat(vertex.getY()).putFloat(vertex.getZ());
+        }
+        buffer.putInt(mesh.getNumTexCoords());
+        for (int i = 0; i < mesh.getNumTexCoords(); i++) {
+            FloatTuple texCoord = mesh.getTexCoord(i);
+            buffer.putFloat(texCoord.getX()).putFloat(texCoord.getY());
+        }
+        buffer.putInt(mesh.getNumNormals());
+        for (int i = 0; i < mesh.getNumNormals(); i++) {
+            FloatTuple normal = mesh.getNormal(i);
+            buffer.putFloat(normal.getX()).putFloat(normal.getY()).putFloat(normal.getZ());
+        }
+
+        // Faces
+        buffer.putInt(numFaces);
+        for (int i = 0; i < numFaces; i++) {
+            buffer.put((byte) mesh.getFace(i).getNumVertices());
+        }
+        for (int i = 0; i < numFaces; i++) {
+            ObjFace face = mesh.getFace(i);
+            int attributes = 0;
+            if (face.containsTexCoordIndices()) attributes |= FACE_TEX_COORDS;
+            if (face.containsNormalIndices()) attributes |= FACE_NORMALS;
+            buffer.put((byte) attributes);
+        }
+        for (int i = 0; i < numFaces; i++) {
+            ObjFace face = mesh.getFace(i);
+            for (int v = 0; v < face.getNumVertices(); v++) {
+                buffer.putInt(face.getVertexIndex(v));
+            }
+        }
+        for (int i = 0; i < numFaces; i++) {
+            ObjFace face = mesh.getFace(i);
+            if (!face.containsTexCoordIndices()) continue;
+            for (int v = 0; v < face.getNumVertices(); v++) {
+                buffer.putInt(face.getTexCoordIndex(v));
+            }
+        }
+        for (int i = 0; i < numFaces; i++) {
+            ObjFace face = mesh.getFace(i);
+            if (!face.containsNormalIndices()) continue;
+            for (int v = 0; v < face.getNumVertices(); v++) {
+                buffer.putInt(face.getNormalIndex(v));
+            }
+        }
+
+        // Names
+        buffer.putInt(encodedStrings.length);
+        for (byte[] string : encodedStrings) {
+            buffer.putShort((short) string.length);
+            buffer.put(string);
+        }
+
+        buffer.putInt(materialRanges.size());
+        for (MaterialRange range : materialRanges) {
+            buffer.putInt(range.firstFace());
+            buffer.putInt(range.name());
+        }
+
+        buffer.putInt(groupRanges.size());
+        for (GroupRange range : groupRanges) {
+            buffer.putInt(range.firstFace());
+            buffer.putShort((short) range.names().length);
+            for (int name : range.names()) {
+                buffer.putInt(name);
+            }
+        }
+
+        out.write(buffer.array());
+    }
+
+    private static int intern(Object2IntLinkedOpenHashMap<String> strings, String string) {
+        int index = strings.getInt(string);
+        if (index < 0) {
+            index = strings.size();
+            strings.put(string, index);
+        }
+        return index;
+    }
+
+    /**
+     * Read a mesh in the binary format.
+     *
+     * @param in Input stream to read from. Will be read to the end, but not
+     *           closed.
+     * @return The mesh.
+     * @throws IOException If an IO exception occurs or the mesh is malformed.
+     */
+    public static Obj read(InputStream in) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(in.readAllBytes()).order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            return read(buffer);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IOException("Binary mesh is truncated or malformed.", e);
+        }
+    }
+
+    private static Obj read(ByteBuffer buffer) throws IOException {
+        byte[] magic = new byte[MAGIC.length];
+        buffer.get(magic);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IOException("Not a binary mesh.");
+        }
+        int version = Short.toUnsignedInt(buffer.getShort());
+        if (version > VERSION) {
+            throw new IOException("Unsupported binary mesh version: " + version);
+        }
+        buffer.getShort(); // Flags
+
+        Obj mesh = Objs.create();
+
+        int numVertices = buffer.getInt();
+        for (int i = 0; i < numVertices; i++) {
+            mesh.addVertex(buffer.getFloat(), buffer.getFloat(), buffer.getFloat());
+        }
+        int numTexCoords = buffer.getInt();
+        for (int i = 0; i < numTexCoords; i++) {
+            mesh.addTexCoord(buffer.getFloat(), buffer.getFloat());
+        }
+        int numNormals = buffer.getInt();
+        for (int i = 0; i < numNormals; i++) {
+            mesh.addNormal(buffer.getFloat(), buffer.getFloat(), buffer.getFloat());
+        }
+
+        int numFaces = buffer.getInt();
+        int[][] vertexIndices = new int[numFaces][];
+        int[][] texIndices = new int[numFaces][];
+        int[][] normalIndices = new int[numFaces][];
+        byte[] attributes = new byte[numFaces];
+
+        for (int i = 0; i < numFaces; i++) {
+            vertexIndices[i] = new int[Byte.toUnsignedInt(buffer.get())];
+        }
+        buffer.get(attributes);
+        for (int i = 0; i < numFaces; i++) {
+            readIndices(buffer, vertexIndices[i]);
+        }
+        for (int i = 0; i < numFaces; i++) {
+            if ((attributes[i] & FACE_TEX_COORDS) == 0) continue;
+            texIndices[i] = readIndices(buffer, new int[vertexIndices[i].length]);
+        }
+        for (int i = 0; i < numFaces; i++) {
+            if ((attributes[i] & FACE_NORMALS) == 0) continue;
+            normalIndices[i] = readIndices(buffer, new int[vertexIndices[i].length]);
+        }
+
+        String[] strings = new String[buffer.getInt()];
+        for (int i = 0; i < strings.length; i++) {
+            byte[] string = new byte[Short.toUnsignedInt(buffer.getShort())];
+            buffer.get(string);
+            strings[i] = new String(string, StandardCharsets.UTF_8);
+        }
+
+        MaterialRange[] materialRanges = new MaterialRange[buffer.getInt()];
+        for (int i = 0; i < materialRanges.length; i++) {
+            materialRanges[i] = new MaterialRange(buffer.getInt(), buffer.getInt());
+        }
+
+        GroupRange[] groupRanges = new GroupRange[buffer.getInt()];
+        for (int i = 0; i < groupRanges.length; i++) {
+            int firstFace = buffer.getInt();
+            int[] names = new int[Short.toUnsignedInt(buffer.getShort())];
+            readIndices(buffer, names);
+            groupRanges[i] = new GroupRange(firstFace, names);
+        }
+
+        int nextMaterial = 0;
+        int nextGroup = 0;
+        for (int i = 0; i < numFaces; i++) {
+            while (nextMaterial < materialRanges.length && materialRanges[nextMaterial].firstFace() == i) {
+                mesh.setActiveMaterialGroupName(strings[materialRanges[nextMaterial++].name()]);
+            }
+            while (nextGroup < groupRanges.length && groupRanges[nextGroup].firstFace() == i) {
+                int[] names = groupRanges[nextGroup++].names();
+                List<String> groups = new ArrayList<>(names.length);
+                for (int name : names) {
+                    groups.add(strings[name]);
+                }
+                mesh.setActiveGroupNames(groups);
+            }
+            mesh.addFace(vertexIndices[i], texIndices[i], normalIndices[i]);
+        }
+
+        return mesh;
+    }
+
+    private static int[] readIndices(ByteBuffer buffer, int[] indices) {
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = buffer.getInt();
+        }
+        return indices;
+    }
+}
@@ -0,0 +1,143 @@
+package org.scaffoldeditor.worldexport.util;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collection;
+
+import de.javagl.obj.FloatTuple;
+import de.javagl.obj.ObjFace;
+import de.javagl.obj.ReadableObj;
+
+/**
+ * A hash of everything about a mesh that affects how it renders: its faces in
+ * order, their vertex positions, UVs and normals (rounded to a fine grid), and
+ * the material and groups (including face layers) of each face. Meshes with
+ * equal fingerprints can be used in place of each other.
+ */
+public final class MeshFingerprint {
+
+    /**
+     * The number of grid steps per unit that vertex positions and normals are
+     * rounded to.
+     */
+    private static final float POSITION_PRECISION = 4096;
+
+    /**
+     * The number of grid steps per unit that UVs are rounded to. Needs to be much
+     * finer than positions, as atlas UVs cover a tiny part of the 0-1 range.
+     */
+    private static final float UV_PRECISION = 1 << 20;
+
+    private final byte[] digest;
+    private final int hash;
+
+    private MeshFingerprint(byte[] digest) {
+        this.digest = digest;
+        this.hash = Arrays.hashCode(digest);
+    }
+
+    /**
+     * Compute the fingerprint of a mesh.
+     * @param mesh The mesh.
+     * @return The fingerprint.
+     */
+    public static MeshFingerprint of(ReadableObj mesh) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available.", e);
+        }
+
+        // Large enough for a face with a full set of attributes per vertex.
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+
+        for (int i = 0; i < mesh.getNumFaces(); i++) {
+            ObjFace face = mesh.getFace(i);
+
+            String material = mesh.getActivatedMaterialGroupName(face);
+            if (material != null) {
+                flush(buffer, digest);
+                digest.update((byte) 'm');
+                digest.update(material.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+
+            Collection<String> groups = mesh.getActivatedGroupNames(face);
+            if (groups != null) {
+                flush(buffer, digest);
+                digest.update((byte) 'g');
+                digest.update(ByteBuffer.allocate(4).putInt(groups.size()).array());
+                for (String group : groups) {
+                    digest.update(group.getBytes(StandardCharsets.UTF_8));
+                    digest.update((byte) 0);
+                }
+            }
+
+            int numVertices = face.getNumVertices();
+            if (buffer.remaining() < 8 + numVertices * 32) flush(buffer, digest);
+            if (buffer.remaining() < 8 + numVertices * 32) {
+                buffer = ByteBuffer.allocate(8 + numVertices * 32);
+            }
+
+            buffer.put((byte) 'f');
+            buffer.putInt(numVertices);
+            buffer.put((byte) ((face.containsTexCoordIndices() ? 1 : 0) | (face.containsNormalIndices() ? 2 : 0)));
+
+            for (int v = 0; v < numVertices; v++) {
+                FloatTuple pos = mesh.getVertex(face.getVertexIndex(v));
+                buffer.putInt(quantize(pos.getX(), POSITION_PRECISION));
+                buffer.putInt(quantize(pos.getY(), POSITION_PRECISION));
+                buffer.putInt(quantize(pos.getZ(), POSITION_PRECISION));
+
+                if (face.containsTexCoordIndices()) {
+                    FloatTuple uv = mesh.getTexCoord(face.getTexCoordIndex(v));
+                    buffer.putInt(quantize(uv.getX(), UV_PRECISION));
+                    buffer.putInt(quantize(uv.getY(), UV_PRECISION));
+                }
+
+                if (face.containsNormalIndices()) {
+                    FloatTuple normal = mesh.getNormal(face.getNormalIndex(v));
+                    buffer.putInt(quantize(normal.getX(), POSITION_PRECISION));
+                    buffer.putInt(quantize(normal.getY(), POSITION_PRECISION));
+                    buffer.putInt(quantize(normal.getZ(), POSITION_PRECISION));
+                }
+            }
+        }
+
+        flush(buffer, digest);
+        return new MeshFingerprint(digest.digest());
+    }
+
+    private static void flush(ByteBuffer buffer, MessageDigest digest) {
+        buffer.flip();
+        digest.update(buffer);
+        buffer.clear();
+    }
+
+    private static int quantize(float value, float precision) {
+        return Math.round(value * precision);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof MeshFingerprint other && Arrays.equals(digest, other.digest);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder(digest.length * 2);
+        for (byte b : digest) {
+            builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,85 @@
+package org.scaffoldeditor.worldexport.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import de.javagl.obj.Obj;
+import de.javagl.obj.ObjReader;
+import de.javagl.obj.ObjWriter;
+import de.javagl.obj.ReadableObj;
+
+/**
+ * The encodings meshes can be written in.
+ */
+public enum MeshFormat {
+    /**
+     * Wavefront OBJ text. Compatible with every version of the importer.
+     */
+    OBJ("OBJ", "obj") {
+        @Override
+        public void write(ReadableObj mesh, OutputStream out) throws IOException {
+            ObjWriter.write(mesh, out);
+        }
+
+        @Override
+        public Obj read(InputStream in) throws IOException {
+            return ObjReader.read(in);
+        }
+    },
+
+    /**
+     * The binary mesh format.
+     * @see BinaryMesh
+     */
+    BINARY("Binary", "vmesh") {
+        @Override
+        public void write(ReadableObj mesh, OutputStream out) throws IOException {
+            BinaryMesh.write(mesh, out);
+        }
+
+        @Override
+        public Obj read(InputStream in) throws IOException {
+            return BinaryMesh.read(in);
+        }
+    };
+
+    private final String name;
+    private final String extension;
+
+    MeshFormat(String name, String extension) {
+        this.name = name;
+        this.extension = extension;
+    }
+
+    /**
+     * Get the file extension of meshes in this format.
+     * @return The extension, without a dot.
+     */
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * Write a mesh in this format.
+     *
+     * @param mesh Mesh to write.
+     * @param out  Output stream to write to. Will not be closed.
+     * @throws IOException If an IO exception occurs.
+     */
+    public abstract void write(ReadableObj mesh, OutputStream out) throws IOException;
+
+    /**
+     * Read a mesh in this format.
+     *
+     * @param in Input stream to read from. Will not be closed.
+     * @return The mesh.
+     * @throws IOException If an IO exception occurs or the mesh is malformed.
+     */
+    public abstract Obj read(InputStream in) throws IOException;
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
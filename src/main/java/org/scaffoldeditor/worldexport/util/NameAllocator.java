@@ -0,0 +1,92 @@
+package org.scaffoldeditor.worldexport.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/**
+ * Generates unique names for entries in a concurrent map without locking it.
+ * <p>
+ * Conflicting names are resolved by incrementing the number at the end of the
+ * name (<code>fluid.0</code> becomes <code>fluid.1</code>), or appending one if
+ * there is none. Rather than re-checking every candidate from the start each
+ * time, an atomic counter is kept for every name prefix, so allocating the
+ * <i>n</i>th name with a given prefix doesn't cost <i>n</i> lookups.
+ */
+public class NameAllocator {
+
+    private final ConcurrentMap<String, AtomicInteger> counters = new ConcurrentHashMap<>();
+
+    /**
+     * Add a value to a map under a unique name.
+     *
+     * @param <V>   The map's value type.
+     * @param map   Map to add to.
+     * @param name  The desired name.
+     * @param value The value to add.
+     * @return The name the value was given after conflict resolution.
+     */
+    public <V> String put(ConcurrentMap<String, V> map, String name, V value) {
+        if (map.putIfAbsent(name, value) == null) return name;
+
+        int split = numberStart(name);
+        String prefix = name.substring(0, split);
+        int start = split < name.length() ? parseOrZero(name.substring(split)) : 0;
+
+        while (true) {
+            String candidate = prefix + next(prefix, start);
+            if (map.putIfAbsent(candidate, value) == null) return candidate;
+        }
+    }
+
+    /**
+     * Find a name that isn't taken. Unlike {@link #put}, the name isn't reserved,
+     * so it may be taken by another thread before it's used.
+     *
+     * @param name    The desired name.
+     * @param isTaken Checks whether a name is already in use.
+     * @return The unique name.
+     */
+    public String makeUnique(String name, Predicate<String> isTaken) {
+        if (!isTaken.test(name)) return name;
+
+        int split = numberStart(name);
+        String prefix = name.substring(0, split);
+        int start = split < name.length() ? parseOrZero(name.substring(split)) : 0;
+
+        while (true) {
+            String candidate = prefix + next(prefix, start);
+            if (!isTaken.test(candidate)) return candidate;
+        }
+    }
+
+    private int next(String prefix, int start) {
+        AtomicInteger counter = counters.computeIfAbsent(prefix, p -> new AtomicInteger());
+        int min = start + 1;
+        return Math.max(counter.getAndAccumulate(min, (current, m) -> Math.max(current, m) + 1), min);
+    }
+
+    /**
+     * Find where the trailing number of a name begins. A name made only of digits
+     * is treated as having no number.
+     *
+     * @return The index of the first digit, or the length of the name if it
+     *         doesn't end in a number.
+     */
+    private static int numberStart(String name) {
+        int i = name.length();
+        while (i > 0 && name.charAt(i - 1) >= '0' && name.charAt(i - 1) <= '9') {
+            i--;
+        }
+        return i == 0 ? name.length() : i;
+    }
+
+    private static int parseOrZero(String number) {
+        try {
+            return Integer.parseInt(number);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
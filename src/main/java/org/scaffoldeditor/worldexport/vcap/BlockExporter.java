@@ -3,38 +3,43 @@ package org.scaffoldeditor.worldexport.vcap;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
 
 import javax.annotation.Nullable;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.scaffoldeditor.worldexport.vcap.BlockModelEntry.Builder;
+import org.scaffoldeditor.worldexport.vcap.SectionMesher.BakedSection;
 import org.scaffoldeditor.worldexport.vcap.fluid.FluidBlockEntry;
 import org.scaffoldeditor.worldexport.vcap.fluid.FluidConsumer;
 import org.scaffoldeditor.worldexport.world_snapshot.ChunkView;
+import org.scaffoldeditor.worldexport.world_snapshot.PaddedSectionView;
 import org.scaffoldeditor.worldexport.world_snapshot.WorldSnapshot;
 import org.scaffoldeditor.worldexport.world_snapshot.WorldSnapshotManager;
 
+import it.unimi.dsi.fastutil.longs.LongCollection;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongSet;
 import net.minecraft.block.Block;
 import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
 import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.render.block.BlockRenderManager;
 import net.minecraft.fluid.FluidState;
-import net.minecraft.nbt.NbtByteArray;
 import net.minecraft.nbt.NbtCompound;
-import net.minecraft.nbt.NbtIntArray;
 import net.minecraft.nbt.NbtIo;
 import net.minecraft.nbt.NbtList;
-import net.minecraft.nbt.NbtString;
 import net.minecraft.util.math.BlockBox;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.ChunkSectionPos;
 import net.minecraft.util.math.Direction;
 import net.minecraft.world.BlockRenderView;
 
@@ -65,6 +70,8 @@ public final class BlockExporter {
     public static final int EMISSIVE_THRESHOLD = 4;
     
     private static final Logger LOGGER = LogManager.getLogger();
+
+    private static final Direction[] DIRECTIONS = Direction.values();
     
     public static void writeStill(ChunkView world, BlockBox bounds, ExportContext context,
             OutputStream os, @Nullable FluidConsumer fluidConsumer, @Nullable CaptureCallback callback) throws IOException {
@@ -114,13 +121,144 @@ public final class BlockExporter {
             ExportContext context,
             @Nullable FluidConsumer fluidConsumer, @Nullable CaptureCallback callback, Executor executor) {
         if (!(world instanceof WorldSnapshot)) {
-            world = WorldSnapshotManager.getInstance().snapshot(world);
+            // We took this snapshot, so it's ours to release.
+            WorldSnapshotManager snapshots = WorldSnapshotManager.getInstance();
+            WorldSnapshot snapshot = snapshots.snapshot(world);
+            return snapshots.releaseOnCompletion(snapshot,
+                    new StillExporterAsync(snapshot, bounds, context, fluidConsumer, callback, null).exportStill(executor));
         }
         
-        return new StillExporterAsync(world, bounds, context, fluidConsumer, callback)
+        return new StillExporterAsync(world, bounds, context, fluidConsumer, callback, null)
                 .exportStill(executor);
     }
+
+    /**
+     * Capture the entire block world, passing each section to a consumer as soon as
+     * its chunk is done rather than collecting them into a list. Sections arrive in
+     * no particular order.
+     * 
+     * @param world         World to capture.
+     * @param bounds        The region to export, in chunk section coordinates.
+     * @param context       The export context.
+     * @param fluidConsumer The fluid consumer to use. Must be thread-safe!
+     * @param callback      A capture callback to use. Must be thread-safe!.
+     * @param executor      The executor to export the chunks on.
+     * @param sink          Receives the exported sections. Called from the
+     *                      executor's threads, so must be thread-safe!
+     * @return A future that completes once every section has been passed to the
+     *         sink.
+     */
+    public static CompletableFuture<Void> exportStillAsync(ChunkView world, BlockBox bounds,
+            ExportContext context, @Nullable FluidConsumer fluidConsumer, @Nullable CaptureCallback callback,
+            Executor executor, Consumer<NbtCompound> sink) {
+        return exportStillAsync(world, bounds, context, fluidConsumer, callback, executor, sink, null);
+    }
+
+    /**
+     * Capture the entire block world, passing each section to a consumer as soon as
+     * its chunk is done rather than collecting them into a list. Sections arrive in
+     * no particular order.
+     * 
+     * @param world         World to capture.
+     * @param bounds        The region to export, in chunk section coordinates.
+     * @param context       The export context.
+     * @param fluidConsumer The fluid consumer to use. Must be thread-safe!
+     * @param callback      A capture callback to use. Must be thread-safe!.
+     * @param executor      The executor to export the chunks on.
+     * @param sink          Receives the exported sections. Called from the
+     *                      executor's threads, so must be thread-safe!
+     * @param emptySink     Receives the packed positions of sections that were
+     *                      skipped for being entirely air. Called from the
+     *                      executor's threads, so must be thread-safe!
+     * @return A future that completes once every section has been passed to the
+     *         sink.
+     */
+    public static CompletableFuture<Void> exportStillAsync(ChunkView world, BlockBox bounds,
+            ExportContext context, @Nullable FluidConsumer fluidConsumer, @Nullable CaptureCallback callback,
+            Executor executor, Consumer<NbtCompound> sink, @Nullable LongConsumer emptySink) {
+        if (!(world instanceof WorldSnapshot)) {
+            WorldSnapshotManager snapshots = WorldSnapshotManager.getInstance();
+            WorldSnapshot snapshot = snapshots.snapshot(world);
+            return snapshots.releaseOnCompletion(snapshot,
+                    new StillExporterAsync(snapshot, bounds, context, fluidConsumer, callback, emptySink)
+                            .exportStill(executor, sink));
+        }
+
+        return new StillExporterAsync(world, bounds, context, fluidConsumer, callback, emptySink)
+                .exportStill(executor, sink);
+    }
     
+    /**
+     * Capture a set of individual sections on the calling thread. Sections that
+     * aren't loaded, aren't in the export region or are entirely air are skipped.
+     * 
+     * @param world         World to capture.
+     * @param sections      Packed positions of the sections to capture, as
+     *                      returned by {@link ChunkSectionPos#asLong}.
+     * @param context       The export context.
+     * @param fluidConsumer The fluid consumer to use.
+     * @param sink          Receives the exported sections.
+     */
+    public static void exportSections(ChunkView world, LongCollection sections, ExportContext context,
+            @Nullable FluidConsumer fluidConsumer, Consumer<NbtCompound> sink) {
+        exportSections(world, sections, context, fluidConsumer, false, sink);
+    }
+
+    /**
+     * Capture a set of individual sections on the calling thread. Sections that
+     * aren't loaded or aren't in the export region are skipped.
+     * 
+     * @param world         World to capture.
+     * @param sections      Packed positions of the sections to capture, as
+     *                      returned by {@link ChunkSectionPos#asLong}.
+     * @param context       The export context.
+     * @param fluidConsumer The fluid consumer to use.
+     * @param includeEmpty  Whether to write sections that are entirely air.
+     * @param sink          Receives the exported sections.
+     */
+    public static void exportSections(ChunkView world, LongCollection sections, ExportContext context,
+            @Nullable FluidConsumer fluidConsumer, boolean includeEmpty, Consumer<NbtCompound> sink) {
+        exportSections(world, sections, context, fluidConsumer, includeEmpty, sink, null);
+    }
+
+    /**
+     * Capture a set of individual sections on the calling thread. Sections that
+     * aren't loaded or aren't in the export region are skipped.
+     * 
+     * @param world         World to capture.
+     * @param sections      Packed positions of the sections to capture, as
+     *                      returned by {@link ChunkSectionPos#asLong}.
+     * @param context       The export context.
+     * @param fluidConsumer The fluid consumer to use.
+     * @param includeEmpty  Whether to write sections that are entirely air.
+     * @param sink          Receives the exported sections.
+     * @param emptySink     Receives the packed positions of sections that were
+     *                      skipped for being entirely air.
+     */
+    public static void exportSections(ChunkView world, LongCollection sections, ExportContext context,
+            @Nullable FluidConsumer fluidConsumer, boolean includeEmpty, Consumer<NbtCompound> sink,
+            @Nullable LongConsumer emptySink) {
+        TintCache tints = new TintCache(client.getBlockColors(), context.getTintColors());
+        SectionMesher mesher = createMesher(context);
+        LongIterator iterator = sections.iterator();
+        while (iterator.hasNext()) {
+            long section = iterator.nextLong();
+            int x = ChunkSectionPos.unpackX(section);
+            int y = ChunkSectionPos.unpackY(section);
+            int z = ChunkSectionPos.unpackZ(section);
+            if (!world.isSectionLoaded(x, y, z)) continue;
+            if (!context.getSettings().isSectionInExport(x, y, z)) continue;
+
+            NbtCompound tag = writeSection(world, x, y, z, context, fluidConsumer, tints, mesher, !includeEmpty);
+            if (tag != null) {
+                sink.accept(tag);
+            } else if (emptySink != null) {
+                emptySink.accept(section);
+            }
+        }
+        tints.flush(context.getProfile());
+    }
+
     /**
      * Some values change during async world export. This class handles those values across threads.
      */
@@ -132,16 +270,20 @@ public final class BlockExporter {
         final FluidConsumer fluidConsumer;
         // @Nullable 
         final CaptureCallback callback;
+        @Nullable
+        final LongConsumer emptySink;
 
         private int totalChunks;
         private final AtomicInteger chunksExported = new AtomicInteger();
 
-        public StillExporterAsync(ChunkView world, BlockBox bounds, ExportContext context, @Nullable FluidConsumer fluidConsumer, @Nullable CaptureCallback callback) {
+        public StillExporterAsync(ChunkView world, BlockBox bounds, ExportContext context, @Nullable FluidConsumer fluidConsumer,
+                @Nullable CaptureCallback callback, @Nullable LongConsumer emptySink) {
             this.world = world;
             this.bounds = bounds;
             this.context = context;
             this.fluidConsumer = fluidConsumer;
             this.callback = callback;
+            this.emptySink = emptySink;
         }
 
         /**
@@ -153,7 +295,35 @@ public final class BlockExporter {
          * @return
          */
         public synchronized CompletableFuture<NbtList> exportStill(Executor executor) {
+            List<CompletableFuture<List<NbtCompound>>> futures = startChunks(executor);
+
+            return CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).thenApply(v -> {
+                NbtList list = new NbtList();
+                futures.forEach(future -> {
+                    future.join().forEach(list::add);
+                });
+
+                return list;
+            });
+        }
 
+        /**
+         * Export a block world asynchronously, streaming the sections to a sink.
+         * 
+         * @param executor Executor to use.
+         * @param sink     Receives each section. Must be thread-safe.
+         * @return A future that completes when all sections have been passed to the
+         *         sink.
+         */
+        public synchronized CompletableFuture<Void> exportStill(Executor executor, Consumer<NbtCompound> sink) {
+            List<CompletableFuture<Void>> futures = new ArrayList<>();
+            for (CompletableFuture<List<NbtCompound>> chunk : startChunks(executor)) {
+                futures.add(chunk.thenAccept(sections -> sections.forEach(sink)));
+            }
+            return CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new));
+        }
+
+        private List<CompletableFuture<List<NbtCompound>>> startChunks(Executor executor) {
             // Convert to chunk coordinates
             ChunkPos minChunk = new ChunkPos(bounds.getMinX(), bounds.getMinZ());
 
@@ -162,22 +332,14 @@ public final class BlockExporter {
             totalChunks = (maxChunk.x - minChunk.x + 1) * (maxChunk.z - minChunk.z + 1);
             chunksExported.set(0);
 
-            List<CompletableFuture<? extends Collection<NbtCompound>>> futures = new ArrayList<>();
+            List<CompletableFuture<List<NbtCompound>>> futures = new ArrayList<>();
             for (int x = minChunk.x; x <= maxChunk.x; x++) {
                 for (int z = minChunk.z; z <= maxChunk.z; z++) {
                     if (!world.isChunkLoaded(x, z)) continue;
                     futures.add(exportChunkAsync(x, z, executor));
                 }
             }
-
-            return CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).thenApply(v -> {
-                NbtList list = new NbtList();
-                futures.forEach(future -> {
-                    future.join().forEach(list::add);
-                });
-
-                return list;
-            });
+            return futures;
         }
 
         private CompletableFuture<List<NbtCompound>> exportChunkAsync(int x, int z, Executor executor) {
@@ -188,17 +350,27 @@ public final class BlockExporter {
             LOGGER.debug("Exporting chunk [{}, {}]", x, z);
             if (!world.isChunkLoaded(x, z)) return Collections.emptyList();
             List<NbtCompound> chunks = new ArrayList<>();
+            TintCache tints = new TintCache(client.getBlockColors(), context.getTintColors());
+            SectionMesher mesher = createMesher(context);
 
             // Convert to section coordinates
             int minHeight = bounds.getMinY();
             int maxHeight = bounds.getMaxY();
+            LongSet visibleSections = context.getSettings().getVisibleSections();
 
             for (int y = world.getBottomSectionCoord(); y < world.getTopSectionCoord(); y++) {
                 if (!world.isSectionLoaded(x, y, z)) continue;
                 if (y < minHeight || y > maxHeight) continue;
+                if (visibleSections != null && !visibleSections.contains(ChunkSectionPos.asLong(x, y, z))) continue;
 
-                chunks.add(writeSection(world, x, y, z, context, fluidConsumer));
+                NbtCompound section = writeSection(world, x, y, z, context, fluidConsumer, tints, mesher, true);
+                if (section != null) {
+                    chunks.add(section);
+                } else if (emptySink != null) {
+                    emptySink.accept(ChunkSectionPos.asLong(x, y, z));
+                }
             }
+            tints.flush(context.getProfile());
 
             int count = chunksExported.incrementAndGet();
 
@@ -218,122 +390,187 @@ public final class BlockExporter {
      * @return The mesh ID.
      */
     public static String exportBlock(BlockRenderView world, BlockPos pos, ExportContext context) {
-        BlockState state = world.getBlockState(pos);
-        String id;
-
-        BlockModelEntry.Builder builder = prepareEntry(state);
+        return exportBlock(world, pos, world.getBlockState(pos), context, new BlockPos.Mutable());
+    }
 
-        BlockPos.Mutable mutable = pos.mutableCopy();
-        for (Direction direction : Direction.values()) {
+    /**
+     * Generate a mesh ID from a block state in the world. If a model has already
+     * been generated for this state with the same visible faces, it's re-used
+     * without building a new model entry. If faces are being split, this is a
+     * block key rather than a model ID; see {@link SplitFaces}.
+     * 
+     * @param world   World to use.
+     * @param pos     Position of the block.
+     * @param state   The block's state.
+     * @param context Vcap export context.
+     * @param mutable A scratch block pos to use for neighbor lookups.
+     * @return The mesh ID.
+     */
+    private static String exportBlock(BlockRenderView world, BlockPos pos, BlockState state, ExportContext context,
+            BlockPos.Mutable mutable) {
+        int faces = 0;
+        for (Direction direction : DIRECTIONS) {
             mutable.set(pos, direction);
-            builder.face(direction, Block.shouldDrawSide(state, world, pos, direction, mutable));
+            if (Block.shouldDrawSide(state, world, pos, direction, mutable)) {
+                faces |= 1 << direction.getId();
+            }
         }
 
-        id = context.addBlock(builder.build());
+        return getModel(state, faces, context);
+    }
 
+    /**
+     * Get the mesh ID an air block would have in a section, for sections that were
+     * skipped for being entirely air.
+     * 
+     * @param context Vcap export context.
+     * @return The mesh ID.
+     */
+    public static String exportAir(ExportContext context) {
+        // Air never draws any of its sides.
+        return getModel(Blocks.AIR.getDefaultState(), 0, context);
+    }
+
+    private static String getModel(BlockState state, int faces, ExportContext context) {
+        int stateId = Block.getRawIdFromState(state);
+        BlockModelCache cache = context.getBlockModelCache();
+        String id = cache.get(stateId, faces);
+        if (id == null) {
+            if (context.getSettings().splitFaces()) {
+                id = SplitFaces.key(context.addSplitBlock(prepareEntry(state).faces((byte) 0x3F).build()), faces);
+            } else {
+                id = context.addBlock(prepareEntry(state).faces((byte) faces).build());
+            }
+            cache.put(stateId, faces, id);
+        }
         return id;
     }
 
+    /**
+     * Generate a mesh ID from a block in the world, taking static fluids into
+     * account.
+     * 
+     * @param world         World to use.
+     * @param pos           Position of the block.
+     * @param state         The block's state.
+     * @param context       Vcap export context.
+     * @param fluidConsumer The fluid consumer, if any.
+     * @param mutable       A scratch block pos to use for neighbor lookups.
+     * @return The mesh ID.
+     */
+    private static String exportBlockOrFluid(BlockRenderView world, BlockPos pos, BlockState state,
+            ExportContext context, @Nullable FluidConsumer fluidConsumer, BlockPos.Mutable mutable) {
+        FluidState fluid = state.getFluidState();
+        if (!fluid.isEmpty() && context.getSettings().exportStaticFluids() && fluidConsumer != null) {
+            FluidBlockEntry fluidMesh = MeshWriter.writeFluidMesh(pos.toImmutable(), world, state);
+            return context.addFluid(fluidMesh);
+        }
+        return exportBlock(world, pos, state, context, mutable);
+    }
+
+    /**
+     * Check if a block is in the interior of a section, where all of its
+     * neighbors are in the same section.
+     */
+    private static boolean isInterior(int x, int y, int z) {
+        return x > 0 && x < 15 && y > 0 && y < 15 && z > 0 && z < 15;
+    }
+
+    @Nullable
+    private static SectionMesher createMesher(ExportContext context) {
+        return context.getSettings().bakeSections() ? new SectionMesher(context) : null;
+    }
+
+    /**
+     * Capture a single section.
+     * 
+     * @param mesher    The mesher to bake the section's geometry with, if
+     *                  sections are being baked.
+     * @param skipEmpty Whether to skip sections that are entirely air.
+     * @return The section tag, or <code>null</code> if the section is entirely
+     *         air and can be skipped.
+     */
+    @Nullable
     private static NbtCompound writeSection(ChunkView world,
-            int sectionX, int sectionY, int sectionZ, ExportContext context, @Nullable FluidConsumer fluidConsumer) {
+            int sectionX, int sectionY, int sectionZ, ExportContext context, @Nullable FluidConsumer fluidConsumer,
+            TintCache tints, @Nullable SectionMesher mesher, boolean skipEmpty) {
+
+        // If the chunk's palette tells us the section only has one state, we only
+        // need to evaluate the boundary layers block-by-block.
+        BlockState uniformState = world.getUniformState(sectionX, sectionY, sectionZ);
+        if (skipEmpty && uniformState != null && uniformState.isAir()) {
+            LOGGER.debug("Skipping empty section [{}, {}, {}]", sectionX, sectionY, sectionZ);
+            return null;
+        }
 
-        LogManager.getLogger().debug("Exporting section [" + sectionX + ", " + sectionY + ", " + sectionZ + "]");
+        LOGGER.debug("Exporting section [{}, {}, {}]", sectionX, sectionY, sectionZ);
 
         NbtCompound tag = new NbtCompound();
         tag.putInt("x", sectionX);
         tag.putInt("y", sectionY);
         tag.putInt("z", sectionZ);
 
-        List<String> palette = new ArrayList<>();
+        SectionPalette palette = new SectionPalette();
         int[] blocks = new int[16 * 16 * 16];
-
-        List<Byte> colorPalette = new ArrayList<>();
         byte[] colors = new byte[16 * 16 * 16];
 
-        for (int y = 0; y < 16; y++) {
-            for (int z = 0; z < 16; z++) {
-                for (int x = 0; x < 16; x++) {
-                    BlockPos worldPos = new BlockPos(sectionX * 16 + x, sectionY * 16 + y, sectionZ * 16 + z);
-                    BlockState state = world.getBlockState(worldPos);
-                    String id;
-
-                    FluidState fluid = state.getFluidState();
-                    if (!fluid.isEmpty() && context.getSettings().exportStaticFluids() && fluidConsumer != null) {
-                        // genFluid(worldPos, world, context, fluidConsumer);
-
-                        // Optional<FluidDomain> thisDomain = fluidConsumer.fluidAt(worldPos);
-                        // if (!thisDomain.isPresent()) {
-                        //     throw new IllegalStateException("Block at "+worldPos+" is a fluid, but no fluid domain was generated!");
-                        // }
-
-                        // if (thisDomain.get().getRootPos().equals(worldPos)) {
-                        //     id = context.addFluid(thisDomain.get());
-                        // } else {
-                        //     id = MeshWriter.EMPTY_MESH;
-                        // }
-                        FluidBlockEntry fluidMesh = MeshWriter.writeFluidMesh(worldPos, world, state);
-                        id = context.addFluid(fluidMesh);
+        BlockPos.Mutable scratch = new BlockPos.Mutable();
 
-                    } else {
-                        BlockPos.Mutable mutable = worldPos.mutableCopy();
-                        BlockModelEntry.Builder builder = prepareEntry(state);
+        // Face culling looks at every block's neighbors, so read the section (and
+        // its border) out of the world once rather than seven times per block.
+        PaddedSectionView view = new PaddedSectionView(world, sectionX, sectionY, sectionZ, uniformState);
 
-                        for (Direction direction : Direction.values()) {
-                            mutable.set(worldPos, direction);
-                            builder.face(direction, Block.shouldDrawSide(state, world, worldPos, direction, mutable));
-                        }
+        // Interior blocks of a uniform section all have identical neighbors.
+        int interiorIndex = -1;
+        int interiorColorIndex = -1;
+        if (uniformState != null) {
+            BlockPos center = new BlockPos(sectionX * 16 + 8, sectionY * 16 + 8, sectionZ * 16 + 8);
+            interiorIndex = palette.model(exportBlockOrFluid(view, center, uniformState, context, fluidConsumer, scratch));
 
-                        id = context.addBlock(builder.build());
-                    }
-                    
-                    int color = client.getBlockColors().getColor(state, world, worldPos, 0);
-
-                    byte r = (byte)(color >> 16 & 255);
-                    byte g = (byte)(color >> 8 & 255);
-                    byte b = (byte)(color & 255);
-
-                    // We don't want threads overwriting each other in the palette
-                    int index;
-                    int colorIndex = -1;
-                    synchronized(palette) {
-                        index = palette.indexOf(id);
-                        if (index < 0) {
-                            index = palette.size();
-                            palette.add(id);
-                        }
+            // Tinted blocks still need to sample their color per-block.
+            if (!tints.isTinted(uniformState)) {
+                interiorColorIndex = palette.color(-1);
+            }
+        }
 
-                        // Look for color in color palette
-                        for (int i = 0; i < colorPalette.size(); i += 3) {
-                            if (colorPalette.get(i).equals(r) && colorPalette.get(i + 1).equals(g) && colorPalette.get(i + 2).equals(b)) {
-                                colorIndex = i;
-                                break;
-                            }
-                        }
-                        if (colorIndex < 0) {
-                            colorIndex = colorPalette.size();
-                            colorPalette.add(r);
-                            colorPalette.add(g);
-                            colorPalette.add(b);
+        BlockPos.Mutable worldPos = new BlockPos.Mutable();
+        for (int y = 0; y < 16; y++) {
+            for (int z = 0; z < 16; z++) {
+                for (int x = 0; x < 16; x++) {
+                    worldPos.set(sectionX * 16 + x, sectionY * 16 + y, sectionZ * 16 + z);
+                    int index = (y * 16 + z) * 16 + x;
+
+                    BlockState state;
+                    if (interiorIndex >= 0 && isInterior(x, y, z)) {
+                        state = uniformState;
+                        blocks[index] = interiorIndex;
+                        if (interiorColorIndex >= 0) {
+                            colors[index] = (byte) interiorColorIndex;
+                            continue;
                         }
+                    } else {
+                        state = view.getBlockState(worldPos);
+                        blocks[index] = palette.model(exportBlockOrFluid(view, worldPos, state, context, fluidConsumer, scratch));
                     }
 
-                    blocks[(y * 16 + z) * 16 + x] = index;
-                    colors[(y * 16 + z) * 16 + x] = (byte) colorIndex;
-                };
-            };
-        };
-        NbtList paletteTag = new NbtList();
-        for (String entry : palette) paletteTag.add(NbtString.of(entry));
-        tag.put("palette", paletteTag);
-
-        NbtIntArray blockTag = new NbtIntArray(blocks);
-        tag.put("blocks", blockTag);
-
-        NbtByteArray colorPaletteTag = new NbtByteArray(colorPalette);
-        tag.put("colorPalette", colorPaletteTag);
-
-        NbtByteArray colorsTag = new NbtByteArray(colors);
-        tag.put("colors", colorsTag);
+                    int color = tints.getColor(state, view, worldPos);
+                    colors[index] = (byte) palette.color(color);
+                }
+            }
+        }
+        palette.writeTo(tag, blocks, colors);
+
+        if (mesher != null) {
+            BakedSection baked = mesher.bake(palette, blocks, colors);
+            if (baked != null) {
+                byte[] bakedPalette = new byte[baked.baked().length];
+                for (int i = 0; i < bakedPalette.length; i++) {
+                    bakedPalette[i] = (byte) (baked.baked()[i] ? 1 : 0);
+                }
+                tag.putString("mesh", mesher.addModel(baked));
+                tag.putByteArray("bakedPalette", bakedPalette);
+            }
+        }
 
         return tag;
     }
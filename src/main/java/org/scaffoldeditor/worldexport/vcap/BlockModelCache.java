@@ -0,0 +1,73 @@
+package org.scaffoldeditor.worldexport.vcap;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.annotation.Nullable;
+
+/**
+ * A lock-free cache mapping a block state's raw ID and face visibility mask to
+ * the ID of the model that was generated for it. Lookups don't allocate, so
+ * this can be queried once per block during capture.
+ * <p>
+ * The cache is indexed directly by state ID. Each state gets a table of 64
+ * slots (one for every face mask) the first time a model is stored for it.
+ */
+public class BlockModelCache {
+
+    /**
+     * The number of distinct face masks: one bit for each of the six directions.
+     */
+    private static final int NUM_MASKS = 1 << 6;
+
+    private final AtomicReferenceArray<AtomicReferenceArray<String>> states;
+
+    /**
+     * Create a block model cache.
+     *
+     * @param numStates The number of block states in the registry. States with an
+     *                  ID outside of this range are never cached.
+     */
+    public BlockModelCache(int numStates) {
+        states = new AtomicReferenceArray<>(numStates);
+    }
+
+    /**
+     * Look up a cached model ID.
+     *
+     * @param stateId The block state's raw ID.
+     * @param faces   The face visibility mask, in the order of the
+     *                {@link net.minecraft.util.math.Direction} enum.
+     * @return The model ID, or <code>null</code> if it isn't cached.
+     */
+    @Nullable
+    public String get(int stateId, int faces) {
+        if (stateId < 0 || stateId >= states.length()) return null;
+        AtomicReferenceArray<String> models = states.get(stateId);
+        return models != null ? models.get(faces & (NUM_MASKS - 1)) : null;
+    }
+
+    /**
+     * Store a model ID in the cache. If another thread stored a model for the same
+     * key first, the existing entry is kept.
+     *
+     * @param stateId The block state's raw ID.
+     * @param faces   The face visibility mask.
+     * @param modelId The model ID.
+     * @return The model ID that ended up in the cache.
+     */
+    public String put(int stateId, int faces, String modelId) {
+        if (stateId < 0 || stateId >= states.length()) return modelId;
+
+        AtomicReferenceArray<String> models = states.get(stateId);
+        if (models == null) {
+            states.compareAndSet(stateId, null, new AtomicReferenceArray<>(NUM_MASKS));
+            models = states.get(stateId);
+        }
+
+        int slot = faces & (NUM_MASKS - 1);
+        if (models.compareAndSet(slot, null, modelId)) {
+            return modelId;
+        }
+        return models.get(slot);
+    }
+}
@@ -31,9 +31,18 @@ public record BlockModelEntry(BakedModel model, BlockState blockState, byte face
      * @return The model ID.
      */
     public String getID() {
+        return getStateID() + "." + Integer.toHexString(faces);
+    }
+
+    /**
+     * Get the model ID of this entry's block state, without its visible faces.
+     * Used for models that are written with every face.
+     * @return The model ID.
+     */
+    public String getStateID() {
         Identifier id = Registries.BLOCK.getId(blockState.getBlock());
         int stateId = Block.getRawIdFromState(blockState);
-        return id.toUnderscoreSeparatedString() + "#" + Integer.toHexString(stateId) + "." + Integer.toHexString(faces);
+        return id.toUnderscoreSeparatedString() + "#" + Integer.toHexString(stateId);
     }
 
     /**
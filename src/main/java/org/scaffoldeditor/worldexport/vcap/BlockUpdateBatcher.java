@@ -0,0 +1,147 @@
+package org.scaffoldeditor.worldexport.vcap;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongLinkedOpenHashSet;
+import net.minecraft.util.math.BlockBox;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkSectionPos;
+
+/**
+ * Collects the block updates that happen between two predicted frames.
+ * <p>
+ * Updates are stored as packed positions in a primitive set, so a block that's
+ * updated many times in one tick (or by a large edit like an explosion) only
+ * costs a single entry, and updates outside the export bounds are dropped as
+ * soon as they arrive. The owner is expected to call {@link #flush} once per
+ * tick or frame and capture one frame from the result.
+ * <p>
+ * Updates may be added from any thread.
+ */
+public class BlockUpdateBatcher {
+
+    /**
+     * The default maximum number of blocks in a batch.
+     */
+    public static final int DEFAULT_MAX_BATCH_SIZE = 1 << 16;
+
+    private final BlockBox bounds;
+    private final int maxBatchSize;
+
+    // Linked so that blocks held back by the batch size limit are flushed in the
+    // order they were updated.
+    private final LongLinkedOpenHashSet pending = new LongLinkedOpenHashSet();
+
+    /**
+     * Create a block update batcher.
+     *
+     * @param bounds       The export bounds, in section coordinates. Updates
+     *                     outside of these are ignored.
+     * @param maxBatchSize The maximum number of blocks to return from a single
+     *                     flush. Any more are held until the next flush.
+     */
+    public BlockUpdateBatcher(BlockBox bounds, int maxBatchSize) {
+        if (maxBatchSize <= 0) {
+            throw new IllegalArgumentException("Max batch size must be positive.");
+        }
+        this.bounds = bounds;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * Create a block update batcher with the default max batch size.
+     *
+     * @param bounds The export bounds, in section coordinates.
+     */
+    public BlockUpdateBatcher(BlockBox bounds) {
+        this(bounds, DEFAULT_MAX_BATCH_SIZE);
+    }
+
+    public BlockBox getBounds() {
+        return bounds;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /**
+     * Add a block update to the batch.
+     *
+     * @param pos The updated block. Only its coordinates are stored, so mutable
+     *            positions are safe to pass.
+     * @return If the block was in the export bounds and wasn't already in the
+     *         batch.
+     */
+    public boolean add(BlockPos pos) {
+        int x = pos.getX();
+        int y = pos.getY();
+        int z = pos.getZ();
+        if (!isInBounds(ChunkSectionPos.getSectionCoord(x), ChunkSectionPos.getSectionCoord(y),
+                ChunkSectionPos.getSectionCoord(z))) {
+            return false;
+        }
+
+        long packed = BlockPos.asLong(x, y, z);
+        synchronized (this) {
+            return pending.add(packed);
+        }
+    }
+
+    private boolean isInBounds(int sectionX, int sectionY, int sectionZ) {
+        return sectionX >= bounds.getMinX() && sectionX <= bounds.getMaxX()
+                && sectionY >= bounds.getMinY() && sectionY <= bounds.getMaxY()
+                && sectionZ >= bounds.getMinZ() && sectionZ <= bounds.getMaxZ();
+    }
+
+    /**
+     * Check whether there are any updates waiting to be flushed.
+     * @return If the batch is empty.
+     */
+    public synchronized boolean isEmpty() {
+        return pending.isEmpty();
+    }
+
+    /**
+     * Get the number of updates waiting to be flushed.
+     * @return Number of unique blocks.
+     */
+    public synchronized int size() {
+        return pending.size();
+    }
+
+    /**
+     * Remove up to {@link #getMaxBatchSize()} updates from the batch.
+     *
+     * @return The updated blocks, or an empty set if there were none. The
+     *         positions are immutable and owned by the caller.
+     */
+    public synchronized Set<BlockPos> flush() {
+        if (pending.isEmpty()) return Set.of();
+
+        int count = Math.min(pending.size(), maxBatchSize);
+        Set<BlockPos> batch = new HashSet<>(count * 4 / 3 + 1);
+
+        if (count == pending.size()) {
+            LongIterator iterator = pending.iterator();
+            while (iterator.hasNext()) {
+                batch.add(BlockPos.fromLong(iterator.nextLong()));
+            }
+            pending.clear();
+        } else {
+            for (int i = 0; i < count; i++) {
+                batch.add(BlockPos.fromLong(pending.removeFirstLong()));
+            }
+        }
+        return batch;
+    }
+
+    /**
+     * Discard all pending updates.
+     */
+    public synchronized void clear() {
+        pending.clear();
+    }
+}
@@ -0,0 +1,72 @@
+package org.scaffoldeditor.worldexport.vcap;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Accumulates timing information about the different phases of a capture.
+ * Samples may be recorded from any thread.
+ */
+public class CaptureProfile {
+
+    /**
+     * Sampling biome tints and other block colors.
+     */
+    public static final String TINT_SAMPLING = "Tint sampling";
+
+    /**
+     * Block colors requested from the tint cache, whether or not they had to be
+     * sampled.
+     */
+    public static final String TINT_LOOKUPS = "Tint lookups";
+
+    private static class Phase {
+        final LongAdder nanos = new LongAdder();
+        final LongAdder samples = new LongAdder();
+    }
+
+    private final Map<String, Phase> phases = new ConcurrentSkipListMap<>();
+    private final Map<String, LongAdder> counters = new ConcurrentSkipListMap<>();
+
+    /**
+     * Record time spent in a phase.
+     *
+     * @param phase   The phase name.
+     * @param nanos   Time spent, in nanoseconds.
+     * @param samples The number of operations that time covers.
+     */
+    public void record(String phase, long nanos, long samples) {
+        Phase entry = phases.computeIfAbsent(phase, p -> new Phase());
+        entry.nanos.add(nanos);
+        entry.samples.add(samples);
+    }
+
+    /**
+     * Count operations that aren't timed.
+     *
+     * @param counter The counter name.
+     * @param count   The number to add.
+     */
+    public void count(String counter, long count) {
+        counters.computeIfAbsent(counter, c -> new LongAdder()).add(count);
+    }
+
+    /**
+     * Write a line for each phase and counter to a logger.
+     * @param logger Logger to use.
+     */
+    public void log(Logger logger) {
+        if (phases.isEmpty() && counters.isEmpty()) return;
+        logger.info("Capture profile:");
+        phases.forEach((name, phase) -> {
+            long samples = phase.samples.sum();
+            logger.info(String.format("  %s: %.1f ms (%d samples)", name, phase.nanos.sum() / 1e6, samples));
+        });
+        counters.forEach((name, count) -> {
+            logger.info(String.format("  %s: %d", name, count.sum()));
+        });
+    }
+}
@@ -0,0 +1,138 @@
+package org.scaffoldeditor.worldexport.vcap;
+
+import org.scaffoldeditor.worldexport.world_snapshot.ChunkView;
+
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import net.minecraft.util.math.BlockBox;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.ChunkSectionPos;
+
+/**
+ * Keeps track of the chunks in the export bounds that weren't loaded when the
+ * initial intracoded frame was captured, so they can be captured as soon as
+ * they load instead of being left out of the vcap.
+ * <p>
+ * Chunks are only waited on for a limited window after the initial frame; any
+ * that still haven't loaded by then are given up on. Chunk loads may be
+ * reported from any thread.
+ */
+public class ChunkBackfill {
+
+    /**
+     * The largest area that will be scanned for missing chunks.
+     */
+    public static final long MAX_CHUNKS = 1 << 20;
+
+    private final BlockBox bounds;
+    private final double endTime;
+
+    private final LongSet missing = new LongOpenHashSet();
+    private final LongSet loaded = new LongOpenHashSet();
+
+    /**
+     * Check whether a region is small enough to be scanned for missing chunks.
+     * @param bounds The region, in section coordinates.
+     * @return If a backfill can be created for it.
+     */
+    public static boolean canTrack(BlockBox bounds) {
+        long width = (long) bounds.getMaxX() - bounds.getMinX() + 1;
+        long depth = (long) bounds.getMaxZ() - bounds.getMinZ() + 1;
+        return width * depth <= MAX_CHUNKS;
+    }
+
+    /**
+     * Find the chunks in the export bounds that aren't loaded. Must be called at
+     * the same moment the initial frame's snapshot is taken.
+     *
+     * @param world     The world being captured.
+     * @param bounds    The export bounds, in section coordinates.
+     * @param startTime The timestamp of the initial frame.
+     * @param window    How long to wait for missing chunks to load, in seconds.
+     * @throws IllegalArgumentException If the bounds are too large to track.
+     * @see #canTrack(BlockBox)
+     */
+    public ChunkBackfill(ChunkView world, BlockBox bounds, double startTime, double window) {
+        if (!canTrack(bounds)) {
+            throw new IllegalArgumentException("Export bounds are too large to track missing chunks.");
+        }
+        this.endTime = startTime + window;
+
+        // Clamp the vertical bounds so infinite boxes don't produce billions of sections.
+        int minY = Math.max(bounds.getMinY(), world.getBottomSectionCoord());
+        int maxY = Math.min(bounds.getMaxY(), world.getTopSectionCoord() - 1);
+        this.bounds = new BlockBox(bounds.getMinX(), minY, bounds.getMinZ(),
+                bounds.getMaxX(), maxY, bounds.getMaxZ());
+
+        for (int x = bounds.getMinX(); x <= bounds.getMaxX(); x++) {
+            for (int z = bounds.getMinZ(); z <= bounds.getMaxZ(); z++) {
+                if (!world.isChunkLoaded(x, z)) missing.add(ChunkPos.toLong(x, z));
+            }
+        }
+    }
+
+    /**
+     * Report that a chunk has loaded.
+     *
+     * @param pos The chunk.
+     * @return If the chunk was one being waited on.
+     */
+    public synchronized boolean onChunkLoaded(ChunkPos pos) {
+        long packed = pos.toLong();
+        if (!missing.remove(packed)) return false;
+        loaded.add(packed);
+        return true;
+    }
+
+    /**
+     * Remove the chunks that have loaded since the last call.
+     *
+     * @return Packed positions of every section in those chunks that's within the
+     *         export bounds, or an empty set if none have loaded.
+     */
+    public synchronized LongSet flush() {
+        LongSet sections = new LongOpenHashSet();
+        if (loaded.isEmpty()) return sections;
+
+        LongIterator iterator = loaded.iterator();
+        while (iterator.hasNext()) {
+            long chunk = iterator.nextLong();
+            int x = ChunkPos.getPackedX(chunk);
+            int z = ChunkPos.getPackedZ(chunk);
+            for (int y = bounds.getMinY(); y <= bounds.getMaxY(); y++) {
+                sections.add(ChunkSectionPos.asLong(x, y, z));
+            }
+        }
+        loaded.clear();
+        return sections;
+    }
+
+    /**
+     * Check whether there are loaded chunks waiting to be flushed.
+     * @return If any chunks have loaded since the last flush.
+     */
+    public synchronized boolean hasLoaded() {
+        return !loaded.isEmpty();
+    }
+
+    /**
+     * Get the number of chunks that still haven't loaded.
+     * @return Missing chunk count.
+     */
+    public synchronized int getMissingChunks() {
+        return missing.size();
+    }
+
+    /**
+     * Check whether there's nothing left to wait for, either because every
+     * missing chunk has loaded or because the window has passed.
+     *
+     * @param time The current time, in seconds since the beginning of the
+     *             animation.
+     * @return If the backfill can be stopped.
+     */
+    public synchronized boolean isFinished(double time) {
+        return loaded.isEmpty() && (missing.isEmpty() || time >= endTime);
+    }
+}
@@ -4,14 +4,15 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.scaffoldeditor.worldexport.mat.Material;
 import org.scaffoldeditor.worldexport.mat.MaterialConsumer;
 import org.scaffoldeditor.worldexport.mat.ReplayTexture;
 import org.scaffoldeditor.worldexport.util.FloodFill;
 import org.scaffoldeditor.worldexport.util.MeshComparator;
+import org.scaffoldeditor.worldexport.util.NameAllocator;
 import org.scaffoldeditor.worldexport.vcap.fluid.FluidBlockEntry;
 import org.scaffoldeditor.worldexport.vcap.fluid.FluidDomain;
 import org.scaffoldeditor.worldexport.vcap.model.BlockModelProvider;
@@ -24,6 +25,7 @@ import com.google.common.collect.HashBiMap;
 
 import de.javagl.obj.Obj;
 import de.javagl.obj.ReadableObj;
+import net.minecraft.block.Block;
 import net.minecraft.block.BlockState;
 import net.minecraft.fluid.Fluid;
 import net.minecraft.registry.Registries;
@@ -36,12 +38,24 @@ public class ExportContext implements MaterialConsumer {
     /**
      * The models used in this vcap.
      */
-    public final Map<String, ModelProvider> models = new HashMap<>();
+    public final ConcurrentMap<String, ModelProvider> models = new ConcurrentHashMap<>();
 
     /**
      * A cache of model entries so they can be re-used.
      */
-    private final Map<BlockModelEntry, String> modelCache = new HashMap<>();
+    private final ConcurrentMap<BlockModelEntry, String> modelCache = new ConcurrentHashMap<>();
+
+    /**
+     * A cache of the models of block states whose faces are split.
+     */
+    private final ConcurrentMap<BlockState, String> splitModelCache = new ConcurrentHashMap<>();
+
+    private final NameAllocator names = new NameAllocator();
+
+    /**
+     * A lock-free cache of block model IDs, checked before building a model entry.
+     */
+    private final BlockModelCache blockModelCache = new BlockModelCache(Block.STATE_IDS.size());
 
     private static record FluidCacheEntry(ReadableObj obj, Fluid fluid) {};
 
@@ -49,16 +63,24 @@ public class ExportContext implements MaterialConsumer {
     private final BiMap<FluidBlockEntry, String> newFluidCache = HashBiMap.create();
 
     /**
-     * The materials used in this vcap.
+     * Guards the fluid caches, which are searched by mesh comparison rather than
+     * hashed. Block capture never takes this lock.
+     */
+    private final Object fluidLock = new Object();
+
+    /**
+     * The materials used in this vcap. May be added to by capture workers.
      */
-    public final Map<String, MaterialProvider> materials = new HashMap<>();
+    public final ConcurrentMap<String, MaterialProvider> materials = new ConcurrentHashMap<>();
 
     /**
-     * The textures to write to the vcap file.
+     * The textures to write to the vcap file. May be added to by capture workers.
      */
-    public final Map<String, ReplayTexture> textures = new HashMap<>();
+    public final ConcurrentMap<String, ReplayTexture> textures = new ConcurrentHashMap<>();
 
     private VcapSettings settings = new VcapSettings();
+    private final CaptureProfile profile = new CaptureProfile();
+    private final TintCache.Shared tintColors = new TintCache.Shared();
     private MeshComparator meshComparator = new MeshComparator();
 
     private FloodFill.Builder<?> floodFill = FloodFill.recursive();
@@ -71,6 +93,23 @@ public class ExportContext implements MaterialConsumer {
         this.settings = settings;
     }
 
+    /**
+     * Get the profile that capture timings are recorded to.
+     * @return The capture profile.
+     */
+    public CaptureProfile getProfile() {
+        return profile;
+    }
+
+    /**
+     * Get the block colors sampled so far, which every tint cache of the capture
+     * shares.
+     * @return The shared tint colors.
+     */
+    public TintCache.Shared getTintColors() {
+        return tintColors;
+    }
+
     public MeshComparator getMeshComparator() {
         return meshComparator;
     }
@@ -94,11 +133,20 @@ public class ExportContext implements MaterialConsumer {
      * @return The name the model was given after name conflict resolution.
      */
     @Deprecated
-    public synchronized String addExtraModel(String desiredName, Obj model) {
-        String name = makeNameUnique(desiredName);
+    public String addExtraModel(String desiredName, Obj model) {
         ModelInfo info = new ModelInfo(model, 0, Collections.emptyMap());
-        models.put(name, () -> info);
-        return name;
+        return names.put(models, desiredName, () -> info);
+    }
+
+    /**
+     * Get the cache used to look up block model IDs without locking this context.
+     * Entries should only be added after the model has been added with
+     * {@link #addBlock}.
+     * 
+     * @return The block model cache.
+     */
+    public BlockModelCache getBlockModelCache() {
+        return blockModelCache;
     }
 
     /**
@@ -107,10 +155,8 @@ public class ExportContext implements MaterialConsumer {
      * @param model The model to add.
      * @return The name the model was given after name conflict resolution.
      */
-    public synchronized String addModel(String name, ModelInfo model) {
-        name = makeNameUnique(name);
-        models.put(name, () -> model);
-        return name;
+    public String addModel(String name, ModelInfo model) {
+        return names.put(models, name, () -> model);
     }
 
     /**
@@ -118,12 +164,25 @@ public class ExportContext implements MaterialConsumer {
      * @param model Block model entry.
      * @return The name that was generated.
      */
-    public synchronized String addBlock(BlockModelEntry model) {
-        if (modelCache.containsKey(model)) return modelCache.get(model);
-        String name = makeNameUnique(model.getID());
-        models.put(name, new BlockModelProvider(model));
-        modelCache.put(model, name);
-        return name;
+    public String addBlock(BlockModelEntry model) {
+        String name = modelCache.get(model);
+        if (name != null) return name;
+        return modelCache.computeIfAbsent(model, m -> names.put(models, m.getID(), new BlockModelProvider(m)));
+    }
+
+    /**
+     * Add a block model to the vcap with every face, split into face groups. Each
+     * block state only gets one such model.
+     * 
+     * @param model Block model entry. Its visible faces are ignored.
+     * @return The name that was generated.
+     * @see SplitFaces
+     */
+    public String addSplitBlock(BlockModelEntry model) {
+        String name = splitModelCache.get(model.blockState());
+        if (name != null) return name;
+        return splitModelCache.computeIfAbsent(model.blockState(),
+                state -> names.put(models, model.getStateID(), new BlockModelProvider(model, true)));
     }
 
     private MeshComparator comparator = new MeshComparator();
@@ -137,41 +196,49 @@ public class ExportContext implements MaterialConsumer {
      * @return The name that was generated.
      */
     @Deprecated
-    public synchronized String addFluid(FluidDomain fluid) {
+    public String addFluid(FluidDomain fluid) {
         ModelInfo model = fluid.getModel();
-        Optional<FluidCacheEntry> existing = fluidCache.keySet().stream().filter(entry -> {
-            return entry.fluid().equals(fluid.getFluid())
-            && comparator.meshEquals(entry.obj(), model.mesh(), .001f, 0);
-        }).findAny();
+        synchronized (fluidLock) {
+            Optional<FluidCacheEntry> existing = fluidCache.keySet().stream().filter(entry -> {
+                return entry.fluid().equals(fluid.getFluid())
+                && comparator.meshEquals(entry.obj(), model.mesh(), .001f, 0);
+            }).findAny();
+
+            if (existing.isPresent()) {
+                return fluidCache.get(existing.get());
+            }
 
-        if (existing.isPresent()) {
-            return fluidCache.get(existing.get());
+            String modelID = addModel("fluid.0", model); // Name conflict resolution will handle this.
+            fluidCache.put(new FluidCacheEntry(model.mesh(), fluid.getFluid()), modelID);
+            return modelID;
         }
-
-        String modelID = addModel("fluid.0", model); // Name conflict resolution will handle this.
-        fluidCache.put(new FluidCacheEntry(model.mesh(), fluid.getFluid()), modelID);
-        return modelID;
     }
 
-    public synchronized String addFluid(FluidBlockEntry fluid) {
-        var existing = newFluidCache.entrySet().stream().filter(entry -> {
-            return entry.getKey().equals(fluid, comparator, .001f);
-        }).findAny();
+    public String addFluid(FluidBlockEntry fluid) {
+        synchronized (fluidLock) {
+            var existing = newFluidCache.entrySet().stream().filter(entry -> {
+                return entry.getKey().equals(fluid, comparator, .001f);
+            }).findAny();
 
-        if (existing.isPresent()) {
-            return existing.get().getValue();
-        }
+            if (existing.isPresent()) {
+                return existing.get().getValue();
+            }
 
-        String modelID = addModel("fluid.0", fluid.getModel());
-        newFluidCache.put(fluid, modelID);
-        return modelID;
+            String modelID = addModel("fluid.0", fluid.getModel());
+            newFluidCache.put(fluid, modelID);
+            return modelID;
+        }
     }
 
-    public synchronized String makeNameUnique(String name) {
-        while (models.containsKey(name)) {
-            name = iterateName(name);
-        }
-        return name;
+    /**
+     * Find a model name that isn't in use yet. The name isn't reserved, so
+     * prefer {@link #addModel} when adding models from multiple threads.
+     * 
+     * @param name The desired name.
+     * @return The unique name.
+     */
+    public String makeNameUnique(String name) {
+        return names.makeUnique(name, models::containsKey);
     }
 
     /**
@@ -203,23 +270,16 @@ public class ExportContext implements MaterialConsumer {
         return map;
     }
 
-    private static Pattern lastIntPattern = Pattern.compile("[^0-9]+([0-9]+)$");
-
-    private String iterateName(String name) {
-        Matcher matcher = lastIntPattern.matcher(name);
-        if (matcher.find()) {
-            String intStr = matcher.group(1);
-            return name.replace(intStr, String.valueOf(Integer.parseInt(intStr) + 1));
-        } else {
-            return name+'1';
-        }
-    }
-
     @Override
     public void putMaterial(String name, Material mat) {
         materials.put(name, (textures) -> mat);
     }
 
+    @Override
+    public void addMaterial(String name, Material mat) {
+        materials.putIfAbsent(name, (textures) -> mat);
+    }
+
     @Override
     public boolean hasMaterial(String name) {
         return materials.containsKey(name);
@@ -235,6 +295,11 @@ public class ExportContext implements MaterialConsumer {
         textures.put(name, texture);
     }
 
+    @Override
+    public void addTexture(String name, ReplayTexture texture) {
+        textures.putIfAbsent(name, texture);
+    }
+
     @Override
     public boolean hasTexture(String name) {
         return textures.containsKey(name);
@@ -0,0 +1,98 @@
+package org.scaffoldeditor.worldexport.vcap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Assigns the quads of a model to face layers. A quad goes in the first layer
+ * that doesn't already have a quad in the same place, so quads that are drawn
+ * on top of each other (such as grass block overlays) end up in successive
+ * layers.
+ * <p>
+ * Quads are compared by their vertex positions, rounded to a fine grid and
+ * sorted so the order they're listed in doesn't matter. Each layer is a hash
+ * set of these keys, so finding a quad's layer takes one lookup per layer.
+ */
+public class FaceLayerIndex {
+
+    /**
+     * The number of grid steps per block that vertex positions are rounded to.
+     */
+    private static final float PRECISION = 4096;
+    private static final int COORD_BITS = 21;
+    private static final long COORD_MASK = (1L << COORD_BITS) - 1;
+
+    private static final class QuadKey {
+        final long[] vertices;
+        final int hash;
+
+        QuadKey(long[] vertices) {
+            this.vertices = vertices;
+            this.hash = Arrays.hashCode(vertices);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof QuadKey other && Arrays.equals(vertices, other.vertices);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private final List<Set<QuadKey>> layers = new ArrayList<>();
+
+    /**
+     * Find the layer a quad belongs in and add it there.
+     *
+     * @param vertexData  The quad's vertex data. The first three ints of each
+     *                    vertex must be its position, as float bits.
+     * @param stride      The number of ints per vertex.
+     * @param numVertices The number of vertices in the quad.
+     * @return The index of the quad's layer.
+     */
+    public int add(int[] vertexData, int stride, int numVertices) {
+        long[] vertices = new long[numVertices];
+        for (int i = 0; i < numVertices; i++) {
+            int offset = i * stride;
+            vertices[i] = pack(Float.intBitsToFloat(vertexData[offset]),
+                    Float.intBitsToFloat(vertexData[offset + 1]),
+                    Float.intBitsToFloat(vertexData[offset + 2]));
+        }
+        Arrays.sort(vertices);
+        QuadKey key = new QuadKey(vertices);
+
+        int layer = 0;
+        while (layer < layers.size() && layers.get(layer).contains(key)) {
+            layer++;
+        }
+        if (layer == layers.size()) {
+            layers.add(new HashSet<>());
+        }
+        layers.get(layer).add(key);
+        return layer;
+    }
+
+    /**
+     * Get the number of layers that have quads in them.
+     * @return Layer count.
+     */
+    public int numLayers() {
+        return layers.size();
+    }
+
+    private static long pack(float x, float y, float z) {
+        return (quantize(x) & COORD_MASK) << (COORD_BITS * 2)
+                | (quantize(y) & COORD_MASK) << COORD_BITS
+                | (quantize(z) & COORD_MASK);
+    }
+
+    private static long quantize(float value) {
+        return Math.round(value * PRECISION);
+    }
+}
@@ -1,5 +1,7 @@
 package org.scaffoldeditor.worldexport.vcap;
 
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.Optional;
 
 import org.scaffoldeditor.worldexport.vcap.fluid.FluidDomain;
@@ -11,9 +13,10 @@ import net.minecraft.util.math.BlockPos;
 /**
  * Represents a single Vcap frame.
  */
-public interface Frame {
+public interface Frame extends ModelLookup {
     public static final byte INTRACODED_TYPE = 0;
     public static final byte PREDICTED_TYPE = 1;
+    public static final byte PARTIAL_INTRACODED_TYPE = 2;
 
     /**
      * A frame with no blocks in it.
@@ -22,7 +25,8 @@ public interface Frame {
 
     /**
      * Get the type of frame this is.
-     * @return <code>0</code> for Intracoded and <code>1</code> for Predicted.
+     * @return <code>0</code> for Intracoded, <code>1</code> for Predicted and
+     *         <code>2</code> for Partial Intracoded.
      */
     public byte getFrameType();
 
@@ -38,6 +42,18 @@ public interface Frame {
      */
     public NbtCompound getFrameData();
 
+    /**
+     * Write this frame's NBT data to an output, as the payload of a compound tag.
+     * Frames that keep their data outside the heap can override this to stream it
+     * rather than building the whole tag first.
+     * 
+     * @param out Output to write to.
+     * @throws IOException If an IO exception occurs.
+     */
+    public default void writeFrameData(DataOutput out) throws IOException {
+        getFrameData().write(out);
+    }
+
     /**
      * Get the Vcap model of a block at this frame.
      * May be dependant on prior frames.
@@ -45,6 +61,7 @@ public interface Frame {
      * @return Vcap model ID.
      * @throws IndexOutOfBoundsException If the queried block is not within the bounds of the Vcap.
      */
+    @Override
     public String modelAt(BlockPos pos) throws IndexOutOfBoundsException;
 
     /**
@@ -52,6 +69,7 @@ public interface Frame {
      * @param pos The position to test.
      * @return The optional fluid frame.
      */
+    @Override
     public default Optional<FluidDomain> fluidAt(BlockPos pos) {
         return Optional.empty();
     }
@@ -0,0 +1,151 @@
+package org.scaffoldeditor.worldexport.vcap;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import javax.annotation.Nullable;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtElement;
+import net.minecraft.nbt.NbtIo;
+
+/**
+ * An append-only temporary file that captured frames are serialized into, so a
+ * long recording doesn't have to keep every frame on the heap until it's saved.
+ * Each frame is replaced in the vcap by a small {@link JournaledFrame} handle
+ * that knows where its data lives in the journal.
+ * <p>
+ * Frames may be appended from multiple threads.
+ */
+public class FrameJournal implements Closeable {
+
+    /**
+     * The length of the root tag header written before each frame: a type byte
+     * and an empty name.
+     */
+    private static final int HEADER_LENGTH = 3;
+
+    private final Path file;
+    private final DataOutputStream out;
+
+    private final LongArrayList offsets = new LongArrayList();
+    private final IntArrayList lengths = new IntArrayList();
+    private long size;
+
+    @Nullable
+    private RandomAccessFile reader;
+    private boolean closed;
+
+    /**
+     * Create a new journal in the system's temp directory.
+     * @throws IOException If the file can't be created.
+     */
+    public FrameJournal() throws IOException {
+        file = Files.createTempFile("vcap-frames", ".dat");
+        out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)));
+    }
+
+    /**
+     * Serialize a frame into the journal.
+     *
+     * @param frame The frame to write.
+     * @return A handle to the journaled frame, which may be used in its place.
+     * @throws IOException If an IO exception occurs.
+     */
+    public JournaledFrame append(Frame frame) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(1024);
+        DataOutputStream data = new DataOutputStream(buffer);
+        data.writeByte(NbtElement.COMPOUND_TYPE);
+        data.writeUTF("");
+        frame.writeFrameData(data);
+
+        int index;
+        synchronized (this) {
+            if (closed) throw new IOException("This journal has been closed.");
+            buffer.writeTo(out);
+            index = offsets.size();
+            offsets.add(size);
+            lengths.add(buffer.size());
+            size += buffer.size();
+        }
+        return new JournaledFrame(this, index, frame.getFrameType(), frame.getTimestamp());
+    }
+
+    /**
+     * Get the number of frames in the journal.
+     * @return Frame count.
+     */
+    public synchronized int size() {
+        return offsets.size();
+    }
+
+    /**
+     * Get the total size of the journal.
+     * @return Size in bytes.
+     */
+    public synchronized long getByteSize() {
+        return size;
+    }
+
+    /**
+     * Read a frame's data back from the journal.
+     *
+     * @param index The frame's index in the journal.
+     * @return The frame's NBT data.
+     * @throws IOException If an IO exception occurs.
+     */
+    public NbtCompound read(int index) throws IOException {
+        return NbtIo.read(new DataInputStream(new ByteArrayInputStream(readBytes(index))));
+    }
+
+    /**
+     * Copy a frame's data into an output as the payload of a compound tag, without
+     * parsing it.
+     *
+     * @param index  The frame's index in the journal.
+     * @param output Output to write to.
+     * @throws IOException If an IO exception occurs.
+     */
+    public void transferTo(int index, DataOutput output) throws IOException {
+        byte[] bytes = readBytes(index);
+        output.write(bytes, HEADER_LENGTH, bytes.length - HEADER_LENGTH);
+    }
+
+    private synchronized byte[] readBytes(int index) throws IOException {
+        if (closed) throw new IOException("This journal has been closed.");
+        out.flush();
+        if (reader == null) {
+            reader = new RandomAccessFile(file.toFile(), "r");
+        }
+
+        byte[] bytes = new byte[lengths.getInt(index)];
+        reader.seek(offsets.getLong(index));
+        reader.readFully(bytes);
+        return bytes;
+    }
+
+    /**
+     * Close the journal and delete its file. Any frames still referring to it can
+     * no longer be read. Must be called once the journal is no longer needed, as
+     * the file is not deleted otherwise.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        out.close();
+        if (reader != null) reader.close();
+        Files.deleteIfExists(file);
+    }
+}
@@ -1,14 +1,19 @@
 package org.scaffoldeditor.worldexport.vcap;
 
-import java.util.HashMap;
+import java.io.Closeable;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
+import java.util.function.LongPredicate;
 
 import javax.annotation.Nullable;
 
+import org.apache.logging.log4j.LogManager;
 import org.scaffoldeditor.worldexport.vcap.BlockExporter.CaptureCallback;
 import org.scaffoldeditor.worldexport.vcap.fluid.FluidConsumer;
 import org.scaffoldeditor.worldexport.vcap.fluid.FluidDomain;
@@ -16,21 +21,63 @@ import org.scaffoldeditor.worldexport.world_snapshot.ChunkView;
 import org.scaffoldeditor.worldexport.world_snapshot.WorldSnapshot;
 import org.scaffoldeditor.worldexport.world_snapshot.WorldSnapshotManager;
 
+import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
 import net.minecraft.nbt.NbtCompound;
 import net.minecraft.nbt.NbtElement;
+import net.minecraft.nbt.NbtList;
 import net.minecraft.util.math.BlockBox;
 import net.minecraft.util.math.BlockPos;
-import net.minecraft.util.math.Vec3i;
+import net.minecraft.util.math.ChunkSectionPos;
 
-public class IFrame implements Frame, FluidConsumer {
+public class IFrame implements Frame, FluidConsumer, Closeable {
+
+    /**
+     * The number of decoded sections to keep for block lookups. Lookups cluster
+     * around recent block updates, so this only needs to cover a few chunks.
+     */
+    private static final int SECTION_CACHE_SIZE = 64;
 
-    private NbtCompound data;
     /**
-     * Used when retrieving data from the frame so we don't have to keep locating
-     * the section.
+     * The frame data, if this frame wraps existing data rather than having been
+     * captured.
      */
+    @Nullable
+    private NbtCompound data;
 
-    private Map<Vec3i, NbtCompound> sectionCache = new HashMap<>();
+    /**
+     * Where the sections of a captured frame are kept until the vcap is saved.
+     */
+    @Nullable
+    private SectionSpill spill;
+    private double time;
+    /**
+     * The most recently queried sections, decoded and keyed by packed section
+     * position, so block lookups don't have to locate and decode the section each
+     * time. Least recently used sections are evicted past
+     * {@link #SECTION_CACHE_SIZE}.
+     */
+    private final Long2ObjectLinkedOpenHashMap<IndexedSection> sectionIndex = new Long2ObjectLinkedOpenHashMap<>();
+    /**
+     * The section tags of a wrapped frame, keyed by packed section position.
+     * Built the first time a section is queried.
+     */
+    @Nullable
+    private Long2ObjectMap<NbtCompound> sectionTags;
+    /**
+     * Packed positions of the sections inside the bounds that were left out of a
+     * captured frame for being entirely air.
+     */
+    private final LongSet emptySections = new LongOpenHashSet();
+    /**
+     * The model ID of air, if any sections were left out for being empty.
+     */
+    @Nullable
+    private String airModel;
     private Map<BlockPos, FluidDomain> fluids = new ConcurrentHashMap<>();
 
     /**
@@ -56,7 +103,8 @@ public class IFrame implements Frame, FluidConsumer {
     }
 
     /**
-     * Asynchronously capture an intracoded frame.
+     * Asynchronously capture an intracoded frame. Must be called on the thread
+     * that owns the world, as the world is snapshotted before returning.
      * 
      * @param world    World to capture.
      * @param minChunk Bounding box min.
@@ -70,34 +118,182 @@ public class IFrame implements Frame, FluidConsumer {
     public static CompletableFuture<IFrame> captureAsync(ChunkView world, BlockBox bounds,
             ExportContext context, double time, Executor executor, @Nullable CaptureCallback callback) {
 
-        WorldSnapshot snapshot = WorldSnapshotManager.getInstance().snapshot(world);
+        WorldSnapshotManager snapshots = WorldSnapshotManager.getInstance();
+        WorldSnapshot snapshot = context.getSettings().copySnapshots()
+                ? snapshots.copy(world, bounds)
+                : snapshots.snapshot(world);
         IFrame iFrame = new IFrame();
-        return iFrame.captureDataAsync(snapshot, bounds, context, time, callback, executor)
-                .thenApply(data -> iFrame);
+        // Stop tracking block updates as soon as the capture is done with the snapshot.
+        return snapshots.releaseOnCompletion(snapshot,
+                iFrame.captureDataAsync(snapshot, bounds, context, time, callback, executor))
+                .thenApply(v -> iFrame);
+    }
+
+    /**
+     * Capture an intracoded frame based on an earlier one. Sections that haven't
+     * changed since the base frame are shared with it; only the changed sections
+     * are read from the world and added to the spill file. Changed sections that
+     * have since been unloaded are written from the world state instead. Must be
+     * called on the thread that owns the world.
+     * 
+     * @param world         World to capture.
+     * @param state         The state of the world as of the last frame. Must be
+     *                      based on an intracoded frame.
+     * @param dirtySections Packed positions of the sections that have changed
+     *                      since the base frame.
+     * @param context       The export context.
+     * @param time          Time stamp of the frame, in seconds since the
+     *                      beginning of the animation.
+     * @return Captured frame.
+     * @throws IllegalArgumentException If the state isn't based on an intracoded
+     *                                  frame.
+     * @throws IOException              If an IO exception occurs copying the base
+     *                                  frame.
+     * @see WorldStateOverlay#writeSection
+     */
+    public static IFrame captureKeyframe(ChunkView world, WorldStateOverlay state, LongSet dirtySections,
+            ExportContext context, double time) throws IOException {
+        if (!(state.getBase() instanceof IFrame base)) {
+            throw new IllegalArgumentException("The world state isn't based on an intracoded frame.");
+        }
+
+        LongSet toCapture = new LongOpenHashSet(dirtySections.size());
+        LongSet unloaded = new LongOpenHashSet();
+        LongIterator iterator = dirtySections.iterator();
+        while (iterator.hasNext()) {
+            long section = iterator.nextLong();
+            int x = ChunkSectionPos.unpackX(section);
+            int y = ChunkSectionPos.unpackY(section);
+            int z = ChunkSectionPos.unpackZ(section);
+            if (!context.getSettings().isSectionInExport(x, y, z)) continue;
+
+            if (world.isSectionLoaded(x, y, z)) {
+                toCapture.add(section);
+            } else {
+                unloaded.add(section);
+            }
+        }
+
+        SectionSpill spill = base.deriveSpill(pos -> !dirtySections.contains(pos));
+        IFrame iFrame = new IFrame();
+
+        try {
+            for (Map.Entry<BlockPos, FluidDomain> entry : base.fluids.entrySet()) {
+                long section = ChunkSectionPos.toLong(entry.getKey());
+                if (!dirtySections.contains(section) || unloaded.contains(section)) {
+                    iFrame.fluids.put(entry.getKey(), entry.getValue());
+                }
+            }
+            synchronized (base) {
+                LongIterator empty = base.emptySections.iterator();
+                while (empty.hasNext()) {
+                    long section = empty.nextLong();
+                    if (!dirtySections.contains(section)) iFrame.emptySections.add(section);
+                }
+                iFrame.airModel = base.airModel;
+            }
+
+            BlockExporter.exportSections(world, toCapture, context, iFrame, false, section -> {
+                try {
+                    spill.write(section);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, section -> iFrame.markEmpty(section, context));
+
+            // The world no longer has these, but the frames since the base do.
+            iterator = unloaded.iterator();
+            while (iterator.hasNext()) {
+                spill.write(state.writeSection(iterator.nextLong(), () -> BlockExporter.exportAir(context)));
+            }
+        } catch (IOException | RuntimeException e) {
+            closeQuietly(spill);
+            throw e;
+        }
+
+        iFrame.time = time;
+        iFrame.spill = spill;
+        return iFrame;
+    }
+
+    /**
+     * Create a spill holding some of this frame's sections. If this frame was
+     * captured, the new spill shares its file, so no section data is copied.
+     *
+     * @param include Decides which sections to include, by packed section
+     *                position.
+     * @return The new spill.
+     */
+    private synchronized SectionSpill deriveSpill(LongPredicate include) throws IOException {
+        if (spill != null) return spill.derive(include);
+
+        SectionSpill target = new SectionSpill();
+        if (data != null) {
+            try {
+                for (NbtElement element : data.getList("sections", NbtElement.COMPOUND_TYPE)) {
+                    NbtCompound tag = (NbtCompound) element;
+                    if (include.test(ChunkSectionPos.asLong(tag.getInt("x"), tag.getInt("y"), tag.getInt("z")))) {
+                        target.write(tag);
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                closeQuietly(target);
+                throw e;
+            }
+        }
+        return target;
     }
 
     protected void captureData(ChunkView world, BlockBox bounds, ExportContext context,
             double time, @Nullable CaptureCallback callback) {
-        NbtCompound frame = new NbtCompound();
-        frame.put("sections", BlockExporter.exportStillAsync(world, bounds, context, this, callback, Runnable::run).join());
-        frame.putByte("type", INTRACODED_TYPE);
-        frame.putDouble("time", time);
-        this.data = frame;
+        captureDataAsync(world, bounds, context, time, callback, Runnable::run).join();
     }
     
-    protected CompletableFuture<NbtCompound> captureDataAsync(ChunkView world, BlockBox bounds,
+    /**
+     * Capture this frame's sections into a spill file as they're exported, so the
+     * whole frame is never held in memory.
+     */
+    protected CompletableFuture<Void> captureDataAsync(ChunkView world, BlockBox bounds,
             ExportContext context, double time, @Nullable CaptureCallback callback, Executor executor) {
-        return BlockExporter.exportStillAsync(world, bounds, context, this, callback, executor)
-        .thenApply(sections -> {
-            NbtCompound frame = new NbtCompound();
-            frame.put("sections", sections);
-            frame.putByte("type", INTRACODED_TYPE);
-            frame.putDouble("time", time);
-            this.data = frame;
-            return frame;
+        SectionSpill spill;
+        try {
+            spill = new SectionSpill();
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        return BlockExporter.exportStillAsync(world, bounds, context, this, callback, executor, section -> {
+            try {
+                spill.write(section);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, section -> markEmpty(section, context)).whenComplete((v, e) -> {
+            // A failed capture never gets a chance to be saved or closed.
+            if (e != null) closeQuietly(spill);
+        }).thenRun(() -> {
+            this.time = time;
+            this.spill = spill;
         });
     }
 
+    /**
+     * Remember that a section inside the bounds was left out for being entirely
+     * air, so lookups there return air rather than failing.
+     */
+    private synchronized void markEmpty(long sectionPos, ExportContext context) {
+        emptySections.add(sectionPos);
+        if (airModel == null) airModel = BlockExporter.exportAir(context);
+    }
+
+    private static void closeQuietly(SectionSpill spill) {
+        try {
+            spill.close();
+        } catch (IOException e) {
+            LogManager.getLogger().warn("Unable to delete section spill.", e);
+        }
+    }
+
     /**
      * Create a wrapper around an existing IFrame.
      * @param data Properly formatted IFrame data.
@@ -115,45 +311,202 @@ public class IFrame implements Frame, FluidConsumer {
 
     @Override
     public double getTimestamp() {
-        return data.getDouble("time");
+        return data != null ? data.getDouble("time") : time;
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * If this frame was captured, this reads every section back from disk. Prefer
+     * {@link #writeFrameData} where possible.
+     */
     @Override
     public NbtCompound getFrameData() {
-        return data;
+        if (data != null) return data;
+
+        NbtCompound frame = new NbtCompound();
+        frame.putByte("type", INTRACODED_TYPE);
+        frame.putDouble("time", time);
+        NbtList sections = new NbtList();
+        if (spill != null) {
+            try {
+                spill.readAll(sections::add);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        frame.put("sections", sections);
+        return frame;
+    }
+
+    @Override
+    public void writeFrameData(DataOutput out) throws IOException {
+        if (spill == null) {
+            Frame.super.writeFrameData(out);
+            return;
+        }
+
+        out.writeByte(NbtElement.BYTE_TYPE);
+        out.writeUTF("type");
+        out.writeByte(INTRACODED_TYPE);
+
+        out.writeByte(NbtElement.DOUBLE_TYPE);
+        out.writeUTF("time");
+        out.writeDouble(time);
+
+        out.writeByte(NbtElement.LIST_TYPE);
+        out.writeUTF("sections");
+        out.writeByte(NbtElement.COMPOUND_TYPE);
+        out.writeInt(spill.size());
+        spill.transferTo(out);
+
+        out.writeByte(NbtElement.END_TYPE);
+    }
+
+    /**
+     * Delete the temporary file this frame's sections were captured into. Once
+     * closed, the sections of a captured frame can no longer be read or written.
+     * Does nothing for frames that wrap existing data.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (spill != null) spill.close();
+        clearSectionCache();
     }
 
     @Override
     public String modelAt(BlockPos pos) throws IndexOutOfBoundsException {
-        Vec3i sectionCoord = new Vec3i((int) Math.floor(pos.getX() / 16), (int) Math.floor(pos.getY() / 16),
-                (int) Math.floor(pos.getZ() / 16));
-        
-        NbtCompound section = sectionCache.get(sectionCoord);
+        long sectionPos = ChunkSectionPos.asLong(pos.getX() >> 4, pos.getY() >> 4, pos.getZ() >> 4);
+        IndexedSection section = getSection(sectionPos);
 
         if (section == null) {
-            for (NbtElement n : data.getList("sections", 10)) {
-                NbtCompound current = (NbtCompound) n;
-                if (current.getInt("x") == sectionCoord.getX()
-                        && current.getInt("y") == sectionCoord.getY()
-                        && current.getInt("z") == sectionCoord.getZ()) {
-                    section = current;
-                    sectionCache.put(sectionCoord, section);
-                    break;
-                }
+            // Sections inside the bounds that are entirely air aren't stored.
+            String air = getEmptySectionModel(sectionPos);
+            if (air != null) return air;
+            throw new IndexOutOfBoundsException("Block pos: "+pos+" is not within the Vcap bounds.");
+        }
+        return section.modelAt(pos.getX() & 15, pos.getY() & 15, pos.getZ() & 15);
+    }
+
+    /**
+     * Read the tag of one of this frame's sections.
+     * 
+     * @param sectionPos The packed section position.
+     * @return The section, or <code>null</code> if it isn't in this frame.
+     * @throws IOException If an IO exception occurs reading a captured frame's
+     *                     sections.
+     */
+    @Nullable
+    synchronized NbtCompound readSection(long sectionPos) throws IOException {
+        if (spill != null) return spill.read(sectionPos);
+        if (data == null) return null;
+
+        if (sectionTags == null) {
+            // Wrapped frames are already in memory; index them all in one pass.
+            NbtList sections = data.getList("sections", NbtElement.COMPOUND_TYPE);
+            sectionTags = new Long2ObjectOpenHashMap<>(sections.size());
+            for (NbtElement element : sections) {
+                NbtCompound tag = (NbtCompound) element;
+                sectionTags.put(ChunkSectionPos.asLong(tag.getInt("x"), tag.getInt("y"), tag.getInt("z")), tag);
             }
         }
+        return sectionTags.get(sectionPos);
+    }
 
-        if (section == null) {
-            throw new IndexOutOfBoundsException("Block pos: "+pos+" is not within the Vcap bounds.");
+    /**
+     * Discard the sections decoded for block lookups. Called once this frame is no
+     * longer the base of the world state, as it's unlikely to be queried again.
+     */
+    public synchronized void clearSectionCache() {
+        sectionIndex.clear();
+        sectionTags = null;
+    }
+
+    /**
+     * Get the model of a section that was left out of this frame for being
+     * entirely air.
+     * 
+     * @param sectionPos The packed section position.
+     * @return The air model ID, or <code>null</code> if the section wasn't
+     *         left out for being empty.
+     */
+    @Nullable
+    private synchronized String getEmptySectionModel(long sectionPos) {
+        return emptySections.contains(sectionPos) ? airModel : null;
+    }
+
+    /**
+     * Get the decoded data of a section, decoding it if this is the first time it's
+     * been requested.
+     * 
+     * @param sectionPos The packed section position.
+     * @return The section, or <code>null</code> if it isn't in this frame.
+     */
+    @Nullable
+    private synchronized IndexedSection getSection(long sectionPos) {
+        IndexedSection section = sectionIndex.getAndMoveToLast(sectionPos);
+        if (section != null) {
+            return section != IndexedSection.MISSING ? section : null;
         }
 
-        Vec3i relativePos = new Vec3i(Math.floorMod(pos.getX(), 16), Math.floorMod(pos.getY(), 16),
-                Math.floorMod(pos.getZ(), 16));
+        NbtCompound tag;
+        try {
+            tag = readSection(sectionPos);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        section = tag != null ? IndexedSection.decode(tag) : null;
 
-        int index = section.getIntArray("blocks")[(relativePos.getY() * 16 + relativePos.getZ()) * 16
-                + relativePos.getZ()];
+        sectionIndex.putAndMoveToLast(sectionPos, section != null ? section : IndexedSection.MISSING);
+        if (sectionIndex.size() > SECTION_CACHE_SIZE) {
+            sectionIndex.removeFirst();
+        }
+        return section;
+    }
+
+    /**
+     * The block data of a single section, decoded for constant-time lookups.
+     * 
+     * @param blocks  Palette index of every block, or <code>null</code> if the
+     *                section is uniform.
+     * @param palette The section's model palette.
+     */
+    static record IndexedSection(@Nullable int[] blocks, String[] palette) {
+        static final IndexedSection MISSING = new IndexedSection(null, new String[0]);
+
+        static IndexedSection decode(NbtCompound section) {
+            NbtList paletteTag = section.getList("palette", NbtElement.STRING_TYPE);
+            String[] palette = new String[paletteTag.size()];
+            for (int i = 0; i < palette.length; i++) {
+                palette[i] = paletteTag.getString(i);
+            }
 
-        return section.getList("palette", 8).getString(index);
+            // Uniform sections don't store block data.
+            int[] blocks = section.contains("blocks", NbtElement.INT_ARRAY_TYPE) ? section.getIntArray("blocks") : null;
+            if (!section.contains("faces", NbtElement.BYTE_ARRAY_TYPE)) {
+                return new IndexedSection(blocks, palette);
+            }
+
+            // Recombine split meshes with their face masks.
+            byte[] faces = section.getByteArray("faces");
+            if (blocks == null) {
+                return new IndexedSection(null, new String[] { SplitFaces.key(palette[0], faces[0]) });
+            }
+            SectionPalette keys = new SectionPalette();
+            int[] keyed = new int[blocks.length];
+            for (int i = 0; i < blocks.length; i++) {
+                keyed[i] = keys.model(SplitFaces.key(palette[blocks[i]], faces[i]));
+            }
+            String[] keyPalette = new String[keys.numModels()];
+            for (int i = 0; i < keyPalette.length; i++) {
+                keyPalette[i] = keys.getModel(i);
+            }
+            return new IndexedSection(keyed, keyPalette);
+        }
+
+        String modelAt(int x, int y, int z) {
+            return palette[blocks != null ? blocks[(y * 16 + z) * 16 + x] : 0];
+        }
     }
 
     public Map<BlockPos, FluidDomain> getFluids() {
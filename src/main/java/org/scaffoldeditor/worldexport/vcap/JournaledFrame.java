@@ -0,0 +1,124 @@
+package org.scaffoldeditor.worldexport.vcap;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Optional;
+
+import org.scaffoldeditor.worldexport.vcap.IFrame.IndexedSection;
+import org.scaffoldeditor.worldexport.vcap.fluid.FluidDomain;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtElement;
+import net.minecraft.nbt.NbtList;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkSectionPos;
+
+/**
+ * A frame whose data has been moved into a {@link FrameJournal}. Only the
+ * frame's type, timestamp and location in the journal are kept on the heap.
+ * <p>
+ * Querying the frame reads it back from the journal, so it's slow; use a
+ * {@link WorldStateOverlay} to look up the current state of the world instead.
+ * Fluid domains aren't journaled, so {@link #fluidAt} only consults the
+ * previous frame.
+ */
+public class JournaledFrame implements Frame {
+
+    private final FrameJournal journal;
+    private final int index;
+    private final byte type;
+    private final double timestamp;
+
+    private Optional<Frame> previous = Optional.empty();
+
+    JournaledFrame(FrameJournal journal, int index, byte type, double timestamp) {
+        this.journal = journal;
+        this.index = index;
+        this.type = type;
+        this.timestamp = timestamp;
+    }
+
+    public FrameJournal getJournal() {
+        return journal;
+    }
+
+    @Override
+    public byte getFrameType() {
+        return type;
+    }
+
+    @Override
+    public double getTimestamp() {
+        return timestamp;
+    }
+
+    @Override
+    public NbtCompound getFrameData() {
+        try {
+            return journal.read(index);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void writeFrameData(DataOutput out) throws IOException {
+        journal.transferTo(index, out);
+    }
+
+    /**
+     * Read the blocks this frame updated back from the journal. Only valid for
+     * predicted frames; partial intracoded frames can be read with
+     * {@link #getFrameData()}.
+     *
+     * @return A map of packed block positions and model IDs (or block keys, if
+     *         faces are split).
+     */
+    public Long2ObjectMap<String> readUpdates() {
+        NbtCompound data = getFrameData();
+        long[] positions = data.getLongArray("positions");
+        int[] states = data.getIntArray("states");
+        NbtList palette = data.getList("palette", NbtElement.STRING_TYPE);
+        byte[] faces = data.contains("faces", NbtElement.BYTE_ARRAY_TYPE) ? data.getByteArray("faces") : null;
+
+        Long2ObjectMap<String> updates = new Long2ObjectOpenHashMap<>(positions.length);
+        for (int i = 0; i < positions.length; i++) {
+            String model = palette.getString(states[i]);
+            updates.put(positions[i], faces != null ? SplitFaces.key(model, faces[i]) : model);
+        }
+        return updates;
+    }
+
+    @Override
+    public String modelAt(BlockPos pos) throws IndexOutOfBoundsException {
+        if (type == PREDICTED_TYPE) {
+            String model = readUpdates().get(pos.asLong());
+            if (model != null) return model;
+        } else if (type == PARTIAL_INTRACODED_TYPE) {
+            IndexedSection section = PartialIFrame.decodeSections(
+                    getFrameData().getList("sections", NbtElement.COMPOUND_TYPE)).get(ChunkSectionPos.toLong(pos));
+            if (section != null) return section.modelAt(pos.getX() & 15, pos.getY() & 15, pos.getZ() & 15);
+        }
+        return getPrevious().modelAt(pos);
+    }
+
+    @Override
+    public Optional<FluidDomain> fluidAt(BlockPos pos) {
+        return getPrevious().fluidAt(pos);
+    }
+
+    /**
+     * Get the previous frame, or an empty frame if no previous was set.
+     * @return The previous frame.
+     */
+    public Frame getPrevious() {
+        return previous.orElse(Frame.EMPTY);
+    }
+
+    public void setPrevious(Optional<Frame> previous) {
+        this.previous = previous;
+    }
+}
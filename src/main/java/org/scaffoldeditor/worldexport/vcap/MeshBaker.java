@@ -0,0 +1,146 @@
+package org.scaffoldeditor.worldexport.vcap;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nullable;
+
+import org.scaffoldeditor.worldexport.util.MeshFingerprint;
+import org.scaffoldeditor.worldexport.util.MeshFormat;
+import org.scaffoldeditor.worldexport.vcap.model.ModelProvider;
+import org.scaffoldeditor.worldexport.vcap.model.ModelProvider.ModelInfo;
+
+
+/**
+ * Writes the meshes of a vcap's models. Generating a model's mesh and encoding
+ * it happen on a pool of worker threads, each into its own buffer, and
+ * the calling thread hands the finished buffers to a consumer in the order the
+ * models were given. The result is the same as writing them one at a time.
+ */
+final class MeshBaker {
+    private MeshBaker() {}
+
+    /**
+     * Receives finished meshes, in order.
+     */
+    @FunctionalInterface
+    interface MeshConsumer {
+        /**
+         * Called once for every model.
+         *
+         * @param id          The model ID.
+         * @param model       The model's info.
+         * @param fingerprint The mesh's fingerprint, if fingerprints were
+         *                    requested.
+         * @param data        Writes the encoded mesh to a stream. Only valid for
+         *                    the duration of this call.
+         * @throws IOException If an IO exception occurs.
+         */
+        void accept(String id, ModelInfo model, @Nullable MeshFingerprint fingerprint, MeshData data)
+                throws IOException;
+    }
+
+    @FunctionalInterface
+    interface MeshData {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    private static record BakedMesh(String id, ModelInfo model, @Nullable MeshFingerprint fingerprint,
+            ByteArrayOutputStream buffer) {}
+
+    /**
+     * The number of meshes each worker may have finished or in progress at once,
+     * waiting on the writer. Bounds how much memory the buffers use.
+     */
+    private static final int BUFFERS_PER_THREAD = 4;
+
+    private static final AtomicInteger POOL_INDEX = new AtomicInteger();
+
+    /**
+     * Write the meshes of a set of models.
+     *
+     * @param models   The models to write, in the order to write them.
+     * @param format   The format to encode the meshes in.
+     * @param threads  The number of worker threads to use. If <code>1</code> or
+     *                 less, every mesh is written on the calling thread, and only
+     *                 once the consumer asks for it.
+     * @param fingerprint Whether to compute the fingerprint of each mesh.
+     * @param consumer Receives each mesh once it's written, on the calling thread.
+     * @throws IOException If an IO exception occurs in the consumer, or a model
+     *                     fails to write.
+     */
+    public static void bake(List<Map.Entry<String, ModelProvider>> models, MeshFormat format, int threads,
+            boolean fingerprint, MeshConsumer consumer) throws IOException {
+        if (threads <= 1 || models.size() <= 1) {
+            for (Map.Entry<String, ModelProvider> entry : models) {
+                ModelInfo model = entry.getValue().writeMesh();
+                consumer.accept(entry.getKey(), model, fingerprint ? MeshFingerprint.of(model.mesh()) : null,
+                        out -> format.write(model.mesh(), out));
+            }
+            return;
+        }
+
+        int pool = POOL_INDEX.getAndIncrement();
+        AtomicInteger threadIndex = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "Mesh Baker " + pool + "-" + threadIndex.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        int window = threads * BUFFERS_PER_THREAD;
+        Deque<ByteArrayOutputStream> buffers = new ArrayDeque<>(window);
+        Deque<Future<BakedMesh>> pending = new ArrayDeque<>(window);
+
+        try {
+            int next = 0;
+            while (next < models.size() || !pending.isEmpty()) {
+                while (next < models.size() && pending.size() < window) {
+                    Map.Entry<String, ModelProvider> entry = models.get(next++);
+                    ByteArrayOutputStream buffer = buffers.isEmpty() ? new ByteArrayOutputStream() : buffers.pop();
+                    pending.add(executor.submit(() -> bakeMesh(entry.getKey(), entry.getValue(), format, fingerprint, buffer)));
+                }
+
+                BakedMesh mesh = await(pending.poll());
+                consumer.accept(mesh.id(), mesh.model(), mesh.fingerprint(), mesh.buffer()::writeTo);
+                mesh.buffer().reset();
+                buffers.push(mesh.buffer());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static BakedMesh bakeMesh(String id, ModelProvider provider, MeshFormat format, boolean fingerprint,
+            ByteArrayOutputStream buffer) throws IOException {
+        ModelInfo model = provider.writeMesh();
+        format.write(model.mesh(), buffer);
+        return new BakedMesh(id, model, fingerprint ? MeshFingerprint.of(model.mesh()) : null, buffer);
+    }
+
+    private static BakedMesh await(Future<BakedMesh> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for meshes.");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException ex) throw ex;
+            if (cause instanceof RuntimeException ex) throw ex;
+            if (cause instanceof Error ex) throw ex;
+            throw new IOException(cause);
+        }
+    }
+}
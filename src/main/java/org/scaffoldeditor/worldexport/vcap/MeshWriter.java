@@ -1,8 +1,5 @@
 package org.scaffoldeditor.worldexport.vcap;
 
-import java.nio.ByteBuffer;
-import java.nio.IntBuffer;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
@@ -27,7 +24,6 @@ import de.javagl.obj.ObjFace;
 import de.javagl.obj.Objs;
 import net.minecraft.block.BlockState;
 import net.minecraft.client.MinecraftClient;
-import net.minecraft.client.render.VertexFormats;
 import net.minecraft.client.render.model.BakedModel;
 import net.minecraft.client.render.model.BakedQuad;
 import net.minecraft.client.texture.Sprite;
@@ -43,32 +39,73 @@ public final class MeshWriter {
 
     public static final String EMPTY_MESH = "empty";
 
+    /**
+     * The number of ints per vertex in a baked quad's vertex data, in the
+     * <code>POSITION_COLOR_TEXTURE_LIGHT_NORMAL</code> format. Position is at
+     * offset 0 and UV at offset 4.
+     */
+    private static final int VERTEX_STRIDE = 8;
+
     public static ModelInfo writeBlockMesh(BlockModelEntry entry, Random random) {
+        return writeBlockMesh(entry, random, false);
+    }
+
+    /**
+     * Write the mesh of a block model.
+     * 
+     * @param entry      The model entry.
+     * @param random     Random to pick the model's quads with.
+     * @param splitFaces If set, every face of the model is written regardless of
+     *                   the entry's visible faces, and each direction's quads are
+     *                   put in their own face group. See {@link SplitFaces}.
+     * @return The mesh.
+     */
+    public static ModelInfo writeBlockMesh(BlockModelEntry entry, Random random, boolean splitFaces) {
         Obj obj = Objs.create();
         BakedModel model = entry.model();
         BlockState blockState = entry.blockState();
         boolean transparent = entry.transparent();
         boolean emissive = entry.emissive();
 
-        List<Set<float[]>> fLayers = new ArrayList<>();
+        FaceLayerIndex fLayers = new FaceLayerIndex();
         Map<String, MaterialProvider> materials = new HashMap<>();
 
         for (Direction direction : Direction.values()) {
-            if (!entry.isFaceVisible(direction)) continue;
+            if (!splitFaces && !entry.isFaceVisible(direction)) continue;
+            String faceGroup = splitFaces ? SplitFaces.getGroupName(direction) : null;
             List<BakedQuad> quads = model.getQuads(blockState, direction, random);
             for (BakedQuad quad : quads) {
-                addFace(quad, obj, transparent, emissive, fLayers, materials::put);
+                addFace(quad, obj, 0, 0, 0, transparent, emissive, fLayers, faceGroup, materials::put);
             }
         }
         {
             // Quads that aren't assigned to a direction.
+            String faceGroup = splitFaces ? SplitFaces.getGroupName(null) : null;
             List<BakedQuad> quads = model.getQuads(blockState, null, random);
             for (BakedQuad quad : quads) {
-                addFace(quad, obj, transparent, emissive, fLayers, materials::put);
+                addFace(quad, obj, 0, 0, 0, transparent, emissive, fLayers, faceGroup, materials::put);
             }
         }
         
-        return new ModelInfo(obj, fLayers.size(), materials);
+        return new ModelInfo(obj, fLayers.numLayers(), materials);
+    }
+
+    /**
+     * Add a baked quad to the first face layer of a 3d mesh, moving it by an
+     * offset. Used to bake block models into a larger mesh.
+     * 
+     * @param quad             Quad to add.
+     * @param obj              Mesh to add to.
+     * @param offsetX          X offset.
+     * @param offsetY          Y offset.
+     * @param offsetZ          Z offset.
+     * @param transparent      Assign transparent material.
+     * @param emissive         Assign emissive material.
+     * @param materialConsumer For all the generated vcap world materials.
+     */
+    static void addQuad(BakedQuad quad, Obj obj, float offsetX, float offsetY, float offsetZ,
+            boolean transparent, boolean emissive, BiConsumer<String, MaterialProvider> materialConsumer) {
+        addFace(quad, obj, offsetX, offsetY, offsetZ, transparent, emissive, null, null, materialConsumer);
     }
 
     /**
@@ -76,14 +113,20 @@ public final class MeshWriter {
      * 
      * @param quad             Quad to add.
      * @param obj              Mesh to add to.
+     * @param offsetX          X offset.
+     * @param offsetY          Y offset.
+     * @param offsetZ          Z offset.
      * @param transparent      Assign transparent material.
-     * @param fLayers          A list of sets of 12-float arrays indicating what
-     *                         quads already exist. Used for material stacking.
+     * @param fLayers          Keeps track of what quads already exist. Used for
+     *                         material stacking.
+     * @param faceGroup        An additional group to put the face in, if any.
      * @param materialConsumer For all the generated vcap world materials.
      * @return The face layer index this face was added to.
      */
-    private static int addFace(BakedQuad quad, Obj obj, boolean transparent, boolean emissive,
-            @Nullable List<Set<float[]>> fLayers, BiConsumer<String, MaterialProvider> materialConsumer) {
+    private static int addFace(BakedQuad quad, Obj obj, float offsetX, float offsetY, float offsetZ,
+            boolean transparent, boolean emissive,
+            @Nullable FaceLayerIndex fLayers, @Nullable String faceGroup,
+            BiConsumer<String, MaterialProvider> materialConsumer) {
 
         Sprite sprite = quad.getSprite();
 
@@ -105,26 +148,19 @@ public final class MeshWriter {
         obj.setActiveMaterialGroupName(matName);
 
         int[] vertData = quad.getVertexData();
-
-        int len = vertData.length / 8;
-        ByteBuffer buffer = ByteBuffer.allocate(VertexFormats.POSITION_COLOR_TEXTURE_LIGHT_NORMAL.getVertexSizeByte());
-        IntBuffer intBuffer = buffer.asIntBuffer();
-
+        int len = vertData.length / VERTEX_STRIDE;
         int[] indices = new int[len];
-        float[] vertices = new float[len * 4];
 
         for (int i = 0; i < len; i++) {
             indices[i] = obj.getNumVertices();
+            int offset = i * VERTEX_STRIDE;
 
-            intBuffer.clear();
-            intBuffer.put(vertData, i * 8, 8);
-
-            float x = buffer.getFloat(0);
-            float y = buffer.getFloat(4);
-            float z = buffer.getFloat(8);
+            float x = Float.intBitsToFloat(vertData[offset]);
+            float y = Float.intBitsToFloat(vertData[offset + 1]);
+            float z = Float.intBitsToFloat(vertData[offset + 2]);
 
-            float u = buffer.getFloat(16);
-            float v = buffer.getFloat(20);
+            float u = Float.intBitsToFloat(vertData[offset + 4]);
+            float v = Float.intBitsToFloat(vertData[offset + 5]);
 
             // Convert to sprite coordinates
             if (useAnimation) {
@@ -133,35 +169,17 @@ public final class MeshWriter {
             }
 
             obj.addTexCoord(u, 1 - v);
-            obj.addVertex(x, y, z);
-
-            vertices[i * 3] = x;
-            vertices[i * 3 + 1] = y;
-            vertices[i * 3 + 1] = z;
+            obj.addVertex(x + offsetX, y + offsetY, z + offsetZ);
         }
 
         // Identify the first layer without this face.
-        int layerIndex = 0;
+        int layerIndex = fLayers != null ? fLayers.add(vertData, VERTEX_STRIDE, len) : 0;
 
-        if (fLayers != null) {
-            if (fLayers.isEmpty()) {
-                fLayers.add(new HashSet<>());
-            }
-
-            int i = 0;
-            Set<float[]> layer = fLayers.get(i);
-            while (contains(layer, vertices)) {
-                i++;
-                if (fLayers.size() >= i) {
-                    fLayers.add(new HashSet<>());
-                }
-                layer = fLayers.get(i);
-            }
-            layerIndex = i;
-            layer.add(vertices);
+        if (faceGroup != null) {
+            obj.setActiveGroupNames(Arrays.asList(genGroupName(layerIndex), faceGroup));
+        } else {
+            obj.setActiveGroupNames(Arrays.asList(genGroupName(layerIndex)));
         }
-
-        obj.setActiveGroupNames(Arrays.asList(genGroupName(layerIndex)));
         obj.addFace(indices, indices, null);
 
         return layerIndex;
@@ -191,13 +209,6 @@ public final class MeshWriter {
         return (globalVal - globalMin) / (globalMax - globalMin);
     }
 
-    private static boolean contains(Collection<float[]> collection, float[] array) {
-        for (float[] val : collection) {
-            if (Arrays.equals(val, array)) return true;
-        }
-        return false;
-    }
-    
     public static String genGroupName(int index) {
         return "fLayer"+index;
     }
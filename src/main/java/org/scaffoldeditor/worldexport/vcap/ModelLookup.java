@@ -0,0 +1,30 @@
+package org.scaffoldeditor.worldexport.vcap;
+
+import java.util.Optional;
+
+import org.scaffoldeditor.worldexport.vcap.fluid.FluidDomain;
+
+import net.minecraft.util.math.BlockPos;
+
+/**
+ * Something that can report which Vcap model is at a given block.
+ */
+public interface ModelLookup {
+
+    /**
+     * Get the Vcap model of a block.
+     * @param pos Block to query.
+     * @return Vcap model ID.
+     * @throws IndexOutOfBoundsException If the queried block is not within the bounds of the Vcap.
+     */
+    public String modelAt(BlockPos pos) throws IndexOutOfBoundsException;
+
+    /**
+     * Get the fluid domain at a particular position.
+     * @param pos The position to test.
+     * @return The optional fluid frame.
+     */
+    public default Optional<FluidDomain> fluidAt(BlockPos pos) {
+        return Optional.empty();
+    }
+}
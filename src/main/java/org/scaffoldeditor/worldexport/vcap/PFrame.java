@@ -1,28 +1,36 @@
 package org.scaffoldeditor.worldexport.vcap;
 
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 
+import javax.annotation.Nullable;
+
 import org.scaffoldeditor.worldexport.vcap.fluid.FluidDomain;
 import org.scaffoldeditor.worldexport.world_snapshot.ChunkView;
+import org.scaffoldeditor.worldexport.world_snapshot.PaddedSectionView;
+
+import it.unimi.dsi.fastutil.longs.Long2IntMap;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
 
 import net.minecraft.block.BlockState;
 import net.minecraft.client.MinecraftClient;
 import net.minecraft.fluid.Fluid;
 import net.minecraft.fluid.FluidState;
-import net.minecraft.nbt.NbtByte;
+import net.minecraft.nbt.NbtByteArray;
 import net.minecraft.nbt.NbtCompound;
-import net.minecraft.nbt.NbtInt;
-import net.minecraft.nbt.NbtList;
-import net.minecraft.nbt.NbtString;
+import net.minecraft.nbt.NbtIntArray;
+import net.minecraft.nbt.NbtLongArray;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.ChunkSectionPos;
 import net.minecraft.util.math.Direction;
+import net.minecraft.world.BlockRenderView;
 
 public class PFrame implements Frame {
 
@@ -50,10 +58,44 @@ public class PFrame implements Frame {
             ExportContext context) {
 
         PFrame frame = new PFrame(world, previous, timestamp);
-        frame.capture(blocks, context);
+        frame.capture(blocks, context, frame.getPrevious());
+        return frame;
+    }
+
+    /**
+     * Capture a predicted frame, comparing against a materialized world state
+     * rather than walking back through the previous frames.
+     * 
+     * @param world     World to capture.
+     * @param blocks    A set of blocks to include data for in the frame.
+     * @param timestamp Time stamp of the frame, in seconds since the beginning
+     *                  of the animation.
+     * @param previous  The previous frame in the file.
+     * @param current   The state of the world as of the previous frame.
+     * @param context   The export context.
+     * @return The captured frame.
+     * @see WorldStateOverlay
+     */
+    public static PFrame capture(ChunkView world,
+            Set<BlockPos> blocks,
+            double timestamp,
+            Optional<Frame> previous,
+            ModelLookup current,
+            ExportContext context) {
+
+        PFrame frame = new PFrame(world, previous, timestamp);
+        frame.capture(blocks, context, current);
         return frame;
     }
 
+    /**
+     * The number of updated blocks a section needs before it's read into a
+     * {@link PaddedSectionView}. Each updated block costs about 49 world lookups
+     * (itself and its six neighbors, each with six neighbors of their own), while
+     * filling a padded view costs 18^3.
+     */
+    private static final int PADDED_VIEW_THRESHOLD = 128;
+
     private Map<BlockPos, String> updated = new HashMap<>();
     private Map<BlockPos, BlockState> states = new HashMap<>();
     private static MinecraftClient client = MinecraftClient.getInstance();
@@ -62,6 +104,11 @@ public class PFrame implements Frame {
     private Set<BlockPos> handledFluids = new HashSet<>();
 
     protected Optional<Frame> previous;
+
+    @Nullable
+    private CaptureProfile profile;
+    @Nullable
+    private TintCache.Shared tintColors;
     public final double timestamp;
     public final ChunkView world;
 
@@ -80,53 +127,92 @@ public class PFrame implements Frame {
         this.world = world;
     }
 
-    protected void capture(Set<BlockPos> blocks, ExportContext context) {
+    /**
+     * Capture the frame.
+     * 
+     * @param blocks  The updated blocks.
+     * @param context The export context.
+     * @param current The state of the world as of the previous frame.
+     */
+    protected void capture(Set<BlockPos> blocks, ExportContext context, ModelLookup current) {
+        profile = context.getProfile();
+        tintColors = context.getTintColors();
         Set<BlockPos> fluidPositions = new HashSet<>();
+        Long2ObjectMap<BlockRenderView> views = makeSectionViews(blocks);
 
         for (BlockPos pos : blocks) {
             if (!context.getSettings().isInExport(pos)) continue;
-            if (context.getSettings().exportDynamicFluids() && !world.getBlockState(pos).getFluidState().isEmpty()) {
+            BlockRenderView view = views.getOrDefault(ChunkSectionPos.toLong(pos), world);
+            BlockState state = view.getBlockState(pos);
+
+            if (context.getSettings().exportDynamicFluids() && !state.getFluidState().isEmpty()) {
                 fluidPositions.add(pos);
             } else {
-                putBlock(pos, BlockExporter.exportBlock(world, pos, context), world.getBlockState(pos));
+                putBlock(pos, BlockExporter.exportBlock(view, pos, context), state);
             }
 
-            states.put(pos, world.getBlockState(pos));
+            states.put(pos, state);
             // Check adjacent blocks.
             for (Direction dir : Direction.values()) {
                 BlockPos adjacent = pos.offset(dir);
-                if (!context.getSettings().isInExport(pos)) continue;
+                if (!context.getSettings().isInExport(adjacent)) continue;
                 if (updated.containsKey(adjacent)) continue;
                 
-                if (getPrevious().fluidAt(adjacent).isPresent()) {
+                if (current.fluidAt(adjacent).isPresent()) {
                     fluidPositions.add(adjacent);
                 }
 
                 String old;
                 try {
-                    old = getPrevious().modelAt(adjacent);
+                    old = current.modelAt(adjacent);
                 } catch (IndexOutOfBoundsException e) {
                     continue;
                 }
-                String newId = BlockExporter.exportBlock(world, adjacent, context);
+                String newId = BlockExporter.exportBlock(view, adjacent, context);
                 if (!old.equals(newId)) {
-                    putBlock(adjacent, newId, world.getBlockState(adjacent));
+                    putBlock(adjacent, newId, view.getBlockState(adjacent));
                 }
             }
         }
         
         for (BlockPos pos : fluidPositions) {
-            genFluid(pos, world, context);
+            genFluid(pos, world, context, current);
+        }
+    }
+
+    /**
+     * Create padded views of the sections with enough updated blocks in them that
+     * reading the whole section up front is cheaper than querying the world for
+     * every block and its neighbors.
+     * 
+     * @param blocks The updated blocks.
+     * @return The views, keyed by section position.
+     */
+    private Long2ObjectMap<BlockRenderView> makeSectionViews(Set<BlockPos> blocks) {
+        Long2ObjectMap<BlockRenderView> views = new Long2ObjectOpenHashMap<>();
+        if (blocks.size() < PADDED_VIEW_THRESHOLD) return views;
+
+        Long2IntOpenHashMap counts = new Long2IntOpenHashMap();
+        for (BlockPos pos : blocks) {
+            counts.addTo(ChunkSectionPos.toLong(pos), 1);
         }
+
+        for (Long2IntMap.Entry entry : counts.long2IntEntrySet()) {
+            if (entry.getIntValue() < PADDED_VIEW_THRESHOLD) continue;
+            long section = entry.getLongKey();
+            views.put(section, new PaddedSectionView(world, ChunkSectionPos.unpackX(section),
+                    ChunkSectionPos.unpackY(section), ChunkSectionPos.unpackZ(section)));
+        }
+        return views;
     }
 
     @Deprecated
-    private void genFluid(BlockPos pos, ChunkView world, ExportContext context) {
+    private void genFluid(BlockPos pos, ChunkView world, ExportContext context, ModelLookup current) {
         if (!context.getSettings().exportDynamicFluids()) return;
         // We've already exported this fluid.
         if (handledFluids.contains(pos)) return;
         FluidState fluidState = world.getBlockState(pos).getFluidState();
-        Optional<FluidDomain> lastFrame = getPrevious().fluidAt(pos);
+        Optional<FluidDomain> lastFrame = current.fluidAt(pos);
         
         if (fluidState.isEmpty()) {
             // Clean up last frame
@@ -166,6 +252,22 @@ public class PFrame implements Frame {
         putBlock(fluid.getRootPos(), meshId, world.getBlockState(fluid.getRootPos()));
     }
 
+    /**
+     * Get the model of every block that was updated in this frame.
+     * @return An unmodifiable map of block positions and model IDs.
+     */
+    public Map<BlockPos, String> getUpdated() {
+        return Collections.unmodifiableMap(updated);
+    }
+
+    /**
+     * Get the fluid domains that were captured in this frame.
+     * @return An unmodifiable map of block positions and fluid domains.
+     */
+    public Map<BlockPos, FluidDomain> getFluids() {
+        return Collections.unmodifiableMap(fluids);
+    }
+
     protected void putBlock(BlockPos pos, String meshName, BlockState state) {
         updated.put(pos, meshName);
         states.put(pos, state);
@@ -187,46 +289,42 @@ public class PFrame implements Frame {
         NbtCompound frame = new NbtCompound();
         frame.putByte("type", PREDICTED_TYPE);
         frame.putDouble("time", timestamp);
-        
-        NbtList updates = new NbtList();
-        List<String> palette = new ArrayList<>();
-        for (BlockPos pos : updated.keySet()) {
-            String id = updated.get(pos);
-
-            NbtCompound entry = new NbtCompound();
-            int index = palette.indexOf(id);
-            if (index < 0) {
-                index = palette.size();
-                palette.add(id);
-            }
 
-            entry.putInt("state", index);
-            NbtList posTag = new NbtList();
-            List.of(pos.getX(), pos.getY(), pos.getZ()).forEach(val -> posTag.add(NbtInt.of(val)));
-            entry.put("pos", posTag);
+        int size = updated.size();
+        long[] positions = new long[size];
+        int[] blockStates = new int[size];
+        int[] colors = new int[size];
+        byte[] faces = new byte[size];
+        boolean splitFaces = false;
+
+        SectionPalette palette = new SectionPalette();
+        TintCache tints = new TintCache(client.getBlockColors(),
+                tintColors != null ? tintColors : new TintCache.Shared());
 
+        int i = 0;
+        for (Map.Entry<BlockPos, String> entry : updated.entrySet()) {
+            BlockPos pos = entry.getKey();
             BlockState state = states.get(pos);
             if (state == null) {
                 throw new IllegalStateException("Vcap: Block at "+pos+" is missing a blockstate entry!");
             }
 
-            int color = client.getBlockColors().getColor(state, world, pos, 0);
-
-            byte r = (byte)(color >> 16 & 255);
-            byte g = (byte)(color >> 8 & 255);
-            byte b = (byte)(color & 255);
-
-            NbtList colorTag = new NbtList();
-            List.of(r, g, b).forEach(val -> colorTag.add(NbtByte.of(val)));
-            entry.put("color", colorTag);
-
-            updates.add(entry);
+            positions[i] = pos.asLong();
+            blockStates[i] = palette.model(SplitFaces.getMesh(entry.getValue()));
+            faces[i] = SplitFaces.getFaces(entry.getValue());
+            splitFaces |= faces[i] != SplitFaces.UNSPLIT;
+            colors[i] = tints.getColor(state, world, pos) & 0xFFFFFF;
+            i++;
         }
 
-        frame.put("blocks", updates);
-        NbtList paletteTag = new NbtList();
-        palette.forEach(val -> paletteTag.add(NbtString.of(val)));
-        frame.put("palette", paletteTag);
+        frame.put("positions", new NbtLongArray(positions));
+        frame.put("states", new NbtIntArray(blockStates));
+        frame.put("colors", new NbtIntArray(colors));
+        frame.put("palette", palette.writePalette());
+        if (splitFaces) {
+            frame.put("faces", new NbtByteArray(faces));
+        }
+        if (profile != null) tints.flush(profile);
 
         return frame;
     }
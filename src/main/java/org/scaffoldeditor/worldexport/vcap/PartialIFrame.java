@@ -0,0 +1,164 @@
+package org.scaffoldeditor.worldexport.vcap;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.scaffoldeditor.worldexport.vcap.IFrame.IndexedSection;
+import org.scaffoldeditor.worldexport.vcap.fluid.FluidConsumer;
+import org.scaffoldeditor.worldexport.vcap.fluid.FluidDomain;
+import org.scaffoldeditor.worldexport.world_snapshot.ChunkView;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtElement;
+import net.minecraft.nbt.NbtList;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkSectionPos;
+
+/**
+ * A frame that replaces a handful of entire sections, stored in the same format
+ * as an intracoded frame. When a large part of a section changes at once
+ * (explosions, pastes, chunk loads), re-capturing the whole section is both
+ * faster and smaller than a predicted frame listing every block.
+ * <p>
+ * Every block of the listed sections is replaced, including sections that are
+ * entirely air. The rest of the world is unchanged from the previous frame.
+ */
+public class PartialIFrame implements Frame, FluidConsumer {
+
+    private final NbtList sections = new NbtList();
+    private final Map<BlockPos, FluidDomain> fluids = new ConcurrentHashMap<>();
+    private final Long2ObjectMap<IndexedSection> sectionIndex = new Long2ObjectOpenHashMap<>();
+    private final double time;
+
+    private Optional<Frame> previous;
+
+    /**
+     * Capture a partial intracoded frame.
+     *
+     * @param world     World to capture.
+     * @param sections  Packed positions of the sections to re-capture.
+     * @param timestamp Time stamp of the frame, in seconds since the beginning of
+     *                  the animation.
+     * @param previous  The previous frame in the file.
+     * @param context   The export context.
+     * @return The captured frame.
+     */
+    public static PartialIFrame capture(ChunkView world, LongSet sections, double timestamp,
+            Optional<Frame> previous, ExportContext context) {
+        return capture(world, sections, timestamp, previous, context, true);
+    }
+
+    /**
+     * Capture a partial intracoded frame.
+     *
+     * @param world        World to capture.
+     * @param sections     Packed positions of the sections to re-capture.
+     * @param timestamp    Time stamp of the frame, in seconds since the beginning
+     *                     of the animation.
+     * @param previous     The previous frame in the file.
+     * @param context      The export context.
+     * @param includeEmpty Whether to include sections that are entirely air. Only
+     *                     safe to disable if those sections are already air in
+     *                     the previous frame.
+     * @return The captured frame.
+     */
+    public static PartialIFrame capture(ChunkView world, LongSet sections, double timestamp,
+            Optional<Frame> previous, ExportContext context, boolean includeEmpty) {
+        PartialIFrame frame = new PartialIFrame(previous, timestamp);
+        BlockExporter.exportSections(world, sections, context, frame, includeEmpty, frame.sections::add);
+        frame.sectionIndex.putAll(decodeSections(frame.sections));
+        return frame;
+    }
+
+    protected PartialIFrame(Optional<Frame> previous, double time) {
+        this.previous = previous;
+        this.time = time;
+    }
+
+    /**
+     * Decode the sections of a partial intracoded frame for lookups.
+     *
+     * @param sections The frame's <code>sections</code> list.
+     * @return The decoded sections, keyed by packed section position.
+     */
+    static Long2ObjectMap<IndexedSection> decodeSections(NbtList sections) {
+        Long2ObjectMap<IndexedSection> decoded = new Long2ObjectOpenHashMap<>(sections.size());
+        for (NbtElement element : sections) {
+            NbtCompound tag = (NbtCompound) element;
+            decoded.put(ChunkSectionPos.asLong(tag.getInt("x"), tag.getInt("y"), tag.getInt("z")),
+                    IndexedSection.decode(tag));
+        }
+        return decoded;
+    }
+
+    /**
+     * Get the sections this frame replaces.
+     * @return The decoded sections, keyed by packed section position.
+     */
+    Long2ObjectMap<IndexedSection> getSections() {
+        return sectionIndex;
+    }
+
+    @Override
+    public byte getFrameType() {
+        return PARTIAL_INTRACODED_TYPE;
+    }
+
+    @Override
+    public double getTimestamp() {
+        return time;
+    }
+
+    @Override
+    public NbtCompound getFrameData() {
+        NbtCompound frame = new NbtCompound();
+        frame.putByte("type", PARTIAL_INTRACODED_TYPE);
+        frame.putDouble("time", time);
+        frame.put("sections", sections);
+        return frame;
+    }
+
+    @Override
+    public String modelAt(BlockPos pos) throws IndexOutOfBoundsException {
+        IndexedSection section = sectionIndex.get(ChunkSectionPos.toLong(pos));
+        if (section != null) {
+            return section.modelAt(pos.getX() & 15, pos.getY() & 15, pos.getZ() & 15);
+        }
+        return getPrevious().modelAt(pos);
+    }
+
+    public Map<BlockPos, FluidDomain> getFluids() {
+        return fluids;
+    }
+
+    @Override
+    public Optional<FluidDomain> fluidAt(BlockPos pos) {
+        if (sectionIndex.containsKey(ChunkSectionPos.toLong(pos))) {
+            return Optional.ofNullable(fluids.get(pos));
+        }
+        return getPrevious().fluidAt(pos);
+    }
+
+    @Override
+    public synchronized void putFluid(FluidDomain fluid) {
+        for (BlockPos pos : fluid.getPositions()) {
+            fluids.put(pos, fluid);
+        }
+    }
+
+    /**
+     * Get the previous frame, or an empty frame if no previous was set.
+     * @return The previous frame.
+     */
+    public Frame getPrevious() {
+        return previous.orElse(Frame.EMPTY);
+    }
+
+    public void setPrevious(Optional<Frame> previous) {
+        this.previous = previous;
+    }
+}
@@ -0,0 +1,423 @@
+package org.scaffoldeditor.worldexport.vcap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import org.scaffoldeditor.worldexport.vcap.model.BlockModelProvider;
+import org.scaffoldeditor.worldexport.vcap.model.MaterialProvider;
+import org.scaffoldeditor.worldexport.vcap.model.ModelProvider;
+import org.scaffoldeditor.worldexport.vcap.model.ModelProvider.ModelInfo;
+import org.scaffoldeditor.worldexport.vcap.model.TiledSpriteMaterialProvider;
+
+import de.javagl.obj.Obj;
+import de.javagl.obj.Objs;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import net.minecraft.client.render.model.BakedModel;
+import net.minecraft.client.render.model.BakedQuad;
+import net.minecraft.client.texture.Sprite;
+import net.minecraft.util.math.Direction;
+import net.minecraft.util.math.random.Random;
+
+/**
+ * Bakes the static geometry of a section into a single mesh, so importers can
+ * add the whole section at once instead of instancing a model for every block.
+ * <p>
+ * Block faces that cover an entire side of their block with one full,
+ * non-animated sprite are greedy meshed: coplanar faces with the same sprite,
+ * UV orientation, tint and material flags are merged into the largest
+ * rectangles possible. Merged faces use a {@link TiledSpriteMaterialProvider}
+ * so the sprite still repeats once per block. All other quads are copied into
+ * the mesh block-by-block.
+ * <p>
+ * Models with more than one face layer and fluids can't be baked, and are left
+ * to be instanced from the section's palette as usual. Instances are <b>not</b>
+ * thread-safe.
+ */
+public class SectionMesher {
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+    private static final float EPSILON = 1e-4f;
+
+    /**
+     * How a full face maps its sprite. Local UVs are <code>c + a * A + b * B</code>,
+     * where <code>A</code> and <code>B</code> are the vertex's position along the
+     * face's first and second in-plane axes.
+     */
+    private static record UvMapping(int cu, int au, int bu, int cv, int av, int bv) {}
+
+    private static record MergeKey(Sprite sprite, UvMapping mapping, int color, boolean transparent,
+            boolean tinted, boolean emissive) {}
+
+    /**
+     * The geometry of a palette entry that can be baked.
+     *
+     * @param fullFaces The mergeable faces, indexed by direction. Entries are
+     *                  <code>null</code> if that side isn't a full face.
+     * @param quads     Quads that are copied into the mesh as-is.
+     */
+    private static record BakedEntry(BlockModelEntry entry, FullFace[] fullFaces, List<BakedQuad> quads) {}
+
+    private static record FullFace(Sprite sprite, UvMapping mapping, boolean tinted) {}
+
+    private final ExportContext context;
+    private final Random random = Random.create();
+    private final Map<String, BakedEntry> cache = new HashMap<>();
+
+    public SectionMesher(ExportContext context) {
+        this.context = context;
+    }
+
+    /**
+     * The result of baking a section.
+     *
+     * @param model  The section's mesh.
+     * @param baked  Flags for every entry in the section's palette as it's
+     *               written, marking the ones that are included in the mesh.
+     */
+    public static record BakedSection(ModelInfo model, boolean[] baked) {}
+
+    /**
+     * Bake a section.
+     *
+     * @param palette The section's palette.
+     * @param blocks  Palette indices of each block in the section.
+     * @param colors  Color palette indices of each block in the section.
+     * @return The baked section, or <code>null</code> if none of its blocks have
+     *         geometry that could be baked.
+     */
+    @Nullable
+    public BakedSection bake(SectionPalette palette, int[] blocks, byte[] colors) {
+        // With split faces, the palette is written with one entry per mesh, so a
+        // mesh's blocks can only be baked if they all can be.
+        int[] written;
+        int numWritten;
+        if (palette.hasSplitFaces()) {
+            SectionPalette meshes = new SectionPalette();
+            written = palette.splitInto(meshes);
+            numWritten = meshes.numModels();
+        } else {
+            written = new int[palette.numModels()];
+            Arrays.setAll(written, i -> i);
+            numWritten = written.length;
+        }
+
+        BakedEntry[] entries = new BakedEntry[palette.numModels()];
+        boolean[] baked = new boolean[numWritten];
+        Arrays.fill(baked, true);
+        for (int i = 0; i < entries.length; i++) {
+            entries[i] = prepare(palette.getModel(i));
+            if (entries[i] == null) baked[written[i]] = false;
+        }
+
+        boolean any = false;
+        for (int i = 0; i < entries.length; i++) {
+            if (!baked[written[i]]) {
+                entries[i] = null;
+            } else {
+                any = true;
+            }
+        }
+        if (!any) return null;
+
+        byte[] colorPalette = palette.getColorPalette();
+        Obj obj = Objs.create();
+        obj.setActiveGroupNames(Arrays.asList(MeshWriter.genGroupName(0)));
+        Map<String, MaterialProvider> materials = new HashMap<>();
+
+        // Loose quads.
+        for (int y = 0; y < 16; y++) {
+            for (int z = 0; z < 16; z++) {
+                for (int x = 0; x < 16; x++) {
+                    BakedEntry entry = entries[blocks[(y * 16 + z) * 16 + x]];
+                    if (entry == null) continue;
+                    for (BakedQuad quad : entry.quads()) {
+                        MeshWriter.addQuad(quad, obj, x, y, z, entry.entry().transparent(),
+                                entry.entry().emissive(), materials::put);
+                    }
+                }
+            }
+        }
+
+        // Full faces.
+        Object2IntOpenHashMap<MergeKey> keyIndices = new Object2IntOpenHashMap<>();
+        keyIndices.defaultReturnValue(-1);
+        List<MergeKey> keys = new ArrayList<>();
+        int[] mask = new int[16 * 16];
+        int[] pos = new int[3];
+
+        for (Direction direction : DIRECTIONS) {
+            int normalAxis = direction.getAxis().ordinal();
+            int axisA = normalAxis == 0 ? 1 : 0;
+            int axisB = normalAxis == 2 ? 1 : 2;
+
+            for (int slice = 0; slice < 16; slice++) {
+                boolean empty = true;
+                for (int b = 0; b < 16; b++) {
+                    for (int a = 0; a < 16; a++) {
+                        pos[normalAxis] = slice;
+                        pos[axisA] = a;
+                        pos[axisB] = b;
+                        int index = (pos[1] * 16 + pos[2]) * 16 + pos[0];
+
+                        int key = -1;
+                        BakedEntry entry = entries[blocks[index]];
+                        FullFace face = entry != null ? entry.fullFaces()[direction.getId()] : null;
+                        if (face != null) {
+                            int color = face.tinted() ? readColor(colorPalette, colors[index]) : 0;
+                            MergeKey mergeKey = new MergeKey(face.sprite(), face.mapping(), color,
+                                    entry.entry().transparent(), face.tinted(), entry.entry().emissive());
+                            key = keyIndices.getInt(mergeKey);
+                            if (key < 0) {
+                                key = keys.size();
+                                keys.add(mergeKey);
+                                keyIndices.put(mergeKey, key);
+                            }
+                            empty = false;
+                        }
+                        mask[b * 16 + a] = key;
+                    }
+                }
+                if (empty) continue;
+
+                for (int b = 0; b < 16; b++) {
+                    for (int a = 0; a < 16;) {
+                        int key = mask[b * 16 + a];
+                        if (key < 0) {
+                            a++;
+                            continue;
+                        }
+
+                        int width = 1;
+                        while (a + width < 16 && mask[b * 16 + a + width] == key) {
+                            width++;
+                        }
+
+                        int height = 1;
+                        grow: while (b + height < 16) {
+                            for (int i = 0; i < width; i++) {
+                                if (mask[(b + height) * 16 + a + i] != key) break grow;
+                            }
+                            height++;
+                        }
+
+                        for (int j = 0; j < height; j++) {
+                            Arrays.fill(mask, (b + j) * 16 + a, (b + j) * 16 + a + width, -1);
+                        }
+
+                        addMergedFace(obj, keys.get(key), direction, slice, a, b, width, height, materials);
+                        a += width;
+                    }
+                }
+            }
+        }
+
+        if (obj.getNumFaces() == 0) return null;
+        return new BakedSection(new ModelInfo(obj, 1, materials), baked);
+    }
+
+    /**
+     * Add a baked section to the export context.
+     *
+     * @param section The section.
+     * @return The name of the section's model.
+     */
+    public String addModel(BakedSection section) {
+        return context.addModel("section.0", ModelProvider.of(section.model()));
+    }
+
+    private void addMergedFace(Obj obj, MergeKey key, Direction direction, int slice, int a, int b,
+            int width, int height, Map<String, MaterialProvider> materials) {
+        TiledSpriteMaterialProvider material = new TiledSpriteMaterialProvider(key.sprite(), key.transparent(),
+                key.tinted(), key.emissive());
+        materials.putIfAbsent(material.getName(), material);
+        obj.setActiveMaterialGroupName(material.getName());
+
+        int normalAxis = direction.getAxis().ordinal();
+        int axisA = normalAxis == 0 ? 1 : 0;
+        int axisB = normalAxis == 2 ? 1 : 2;
+        float normalPos = slice + (direction.getDirection() == Direction.AxisDirection.POSITIVE ? 1 : 0);
+
+        // Wind the corners so the face points along the direction. A cross B is
+        // +X and +Z for the X and Z axes, but -Y for the Y axis.
+        boolean flip = (normalAxis == 1) == (direction.getDirection() == Direction.AxisDirection.POSITIVE);
+        int[][] corners = flip
+                ? new int[][] { { 0, 0 }, { 0, height }, { width, height }, { width, 0 } }
+                : new int[][] { { 0, 0 }, { width, 0 }, { width, height }, { 0, height } };
+
+        UvMapping uv = key.mapping();
+        int[] indices = new int[4];
+        float[] vertex = new float[3];
+        for (int i = 0; i < 4; i++) {
+            int cornerA = corners[i][0];
+            int cornerB = corners[i][1];
+            vertex[normalAxis] = normalPos;
+            vertex[axisA] = a + cornerA;
+            vertex[axisB] = b + cornerB;
+
+            float u = uv.cu() + uv.au() * cornerA + uv.bu() * cornerB;
+            float v = uv.cv() + uv.av() * cornerA + uv.bv() * cornerB;
+
+            indices[i] = obj.getNumVertices();
+            obj.addVertex(vertex[0], vertex[1], vertex[2]);
+            obj.addTexCoord(u, 1 - v);
+        }
+        obj.addFace(indices, indices, null);
+    }
+
+    /**
+     * Work out how a model can be baked.
+     *
+     * @param modelId The model's ID in the export context, or its block key if
+     *                faces are split.
+     * @return The model's geometry, or <code>null</code> if it can't be baked.
+     */
+    @Nullable
+    private BakedEntry prepare(String modelId) {
+        if (cache.containsKey(modelId)) return cache.get(modelId);
+        BakedEntry entry = null;
+        if (context.models.get(SplitFaces.getMesh(modelId)) instanceof BlockModelProvider provider) {
+            BlockModelEntry blockEntry = provider.getEntry();
+            if (provider.splitsFaces()) {
+                blockEntry = new BlockModelEntry(blockEntry.model(), blockEntry.blockState(),
+                        SplitFaces.getFaces(modelId), blockEntry.transparent(), blockEntry.emissive());
+            }
+            entry = prepare(blockEntry);
+        }
+        cache.put(modelId, entry);
+        return entry;
+    }
+
+    @Nullable
+    private BakedEntry prepare(BlockModelEntry entry) {
+        BakedModel model = entry.model();
+        List<BakedQuad> unculled = model.getQuads(entry.blockState(), null, random);
+        List<BakedQuad> all = new ArrayList<>(unculled);
+
+        FullFace[] fullFaces = new FullFace[6];
+        List<BakedQuad> quads = new ArrayList<>(unculled);
+
+        for (Direction direction : DIRECTIONS) {
+            if (!entry.isFaceVisible(direction)) continue;
+            List<BakedQuad> sideQuads = model.getQuads(entry.blockState(), direction, random);
+            all.addAll(sideQuads);
+
+            FullFace face = sideQuads.size() == 1 && unculled.isEmpty()
+                    ? getFullFace(sideQuads.get(0), direction) : null;
+            if (face != null) {
+                fullFaces[direction.getId()] = face;
+            } else {
+                quads.addAll(sideQuads);
+            }
+        }
+
+        // Overlapping quads need face layers, which a baked mesh doesn't have.
+        for (int i = 0; i < all.size(); i++) {
+            for (int j = i + 1; j < all.size(); j++) {
+                if (samePositions(all.get(i), all.get(j))) return null;
+            }
+        }
+
+        return new BakedEntry(entry, fullFaces, quads);
+    }
+
+    /**
+     * Check if a quad covers the entire side of its block with one full copy of
+     * its sprite.
+     *
+     * @return The face, or <code>null</code> if it can't be merged.
+     */
+    @Nullable
+    private static FullFace getFullFace(BakedQuad quad, Direction direction) {
+        if (quad.getFace() != direction) return null;
+        Sprite sprite = quad.getSprite();
+        if (sprite.createAnimation() != null) return null;
+
+        int[] vertData = quad.getVertexData();
+        if (vertData.length != 32) return null;
+
+        int normalAxis = direction.getAxis().ordinal();
+        int axisA = normalAxis == 0 ? 1 : 0;
+        int axisB = normalAxis == 2 ? 1 : 2;
+        float normalPos = direction.getDirection() == Direction.AxisDirection.POSITIVE ? 1 : 0;
+
+        // Local UVs at each in-plane corner, indexed by A + 2B.
+        int[] us = new int[4];
+        int[] vs = new int[4];
+        int found = 0;
+
+        for (int i = 0; i < 4; i++) {
+            float[] vertex = new float[] {
+                    Float.intBitsToFloat(vertData[i * 8]),
+                    Float.intBitsToFloat(vertData[i * 8 + 1]),
+                    Float.intBitsToFloat(vertData[i * 8 + 2]) };
+            if (!isExactly(vertex[normalAxis], normalPos)) return null;
+
+            int a = toUnit(vertex[axisA]);
+            int b = toUnit(vertex[axisB]);
+            int u = toUnit((Float.intBitsToFloat(vertData[i * 8 + 4]) - sprite.getMinU())
+                    / (sprite.getMaxU() - sprite.getMinU()));
+            int v = toUnit((Float.intBitsToFloat(vertData[i * 8 + 5]) - sprite.getMinV())
+                    / (sprite.getMaxV() - sprite.getMinV()));
+            if (a < 0 || b < 0 || u < 0 || v < 0) return null;
+
+            int corner = a + 2 * b;
+            if ((found & (1 << corner)) != 0) return null;
+            found |= 1 << corner;
+            us[corner] = u;
+            vs[corner] = v;
+        }
+
+        int au = us[1] - us[0];
+        int bu = us[2] - us[0];
+        int av = vs[1] - vs[0];
+        int bv = vs[2] - vs[0];
+        // The sprite must be mapped affinely, without being mirrored onto itself.
+        if (us[3] != us[0] + au + bu || vs[3] != vs[0] + av + bv) return null;
+        if (au * bv - bu * av == 0) return null;
+
+        return new FullFace(sprite, new UvMapping(us[0], au, bu, vs[0], av, bv), quad.hasColor());
+    }
+
+    private static boolean samePositions(BakedQuad first, BakedQuad second) {
+        int[] firstData = first.getVertexData();
+        int[] secondData = second.getVertexData();
+        if (firstData.length != secondData.length) return false;
+        int len = firstData.length / 8;
+
+        outer: for (int i = 0; i < len; i++) {
+            for (int j = 0; j < len; j++) {
+                if (firstData[i * 8] == secondData[j * 8]
+                        && firstData[i * 8 + 1] == secondData[j * 8 + 1]
+                        && firstData[i * 8 + 2] == secondData[j * 8 + 2]) {
+                    continue outer;
+                }
+            }
+            return false;
+        }
+        return true;
+    }
+
+    private static boolean isExactly(float value, float target) {
+        return Math.abs(value - target) < EPSILON;
+    }
+
+    /**
+     * Round a value that should be <code>0</code> or <code>1</code>.
+     * @return The rounded value, or <code>-1</code> if it's neither.
+     */
+    private static int toUnit(float value) {
+        if (isExactly(value, 0)) return 0;
+        if (isExactly(value, 1)) return 1;
+        return -1;
+    }
+
+    private static int readColor(byte[] colorPalette, byte index) {
+        int i = Byte.toUnsignedInt(index);
+        return (colorPalette[i] & 255) << 16 | (colorPalette[i + 1] & 255) << 8 | (colorPalette[i + 2] & 255);
+    }
+}
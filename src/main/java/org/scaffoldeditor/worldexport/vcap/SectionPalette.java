@@ -0,0 +1,223 @@
+package org.scaffoldeditor.worldexport.vcap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import net.minecraft.nbt.NbtByteArray;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtIntArray;
+import net.minecraft.nbt.NbtList;
+import net.minecraft.nbt.NbtString;
+
+/**
+ * Builds the model and color palettes of a single section or predicted frame.
+ * Palette indices are resolved through hash maps rather than linear scans, so
+ * this is cheap enough to call once per block.
+ * <p>
+ * Instances are <b>not</b> thread-safe. Each section being exported should use
+ * its own palette.
+ */
+public class SectionPalette {
+
+    private final Object2IntOpenHashMap<String> modelIndices = new Object2IntOpenHashMap<>();
+    private final List<String> models = new ArrayList<>();
+    private boolean splitFaces;
+
+    private final Int2IntOpenHashMap colorIndices = new Int2IntOpenHashMap();
+    private byte[] colorPalette = new byte[3 * 16];
+    private int colorPaletteSize;
+
+    public SectionPalette() {
+        modelIndices.defaultReturnValue(-1);
+        colorIndices.defaultReturnValue(-1);
+    }
+
+    /**
+     * Get the palette index of a model, adding it if it isn't in the palette yet.
+     *
+     * @param id The model ID.
+     * @return The model's index in the palette.
+     */
+    public int model(String id) {
+        int index = modelIndices.getInt(id);
+        if (index < 0) {
+            index = models.size();
+            models.add(id);
+            modelIndices.put(id, index);
+            splitFaces |= SplitFaces.isSplit(id);
+        }
+        return index;
+    }
+
+    /**
+     * Get the index of a color in the color palette, adding it if it isn't in the
+     * palette yet. Note that, per the vcap spec, this is the index of the color's
+     * <i>first byte</i>, and is therefore always a multiple of three.
+     *
+     * @param color The color, packed as <code>0xRRGGBB</code>. Any alpha bits are
+     *              ignored.
+     * @return The color's index in the color palette.
+     */
+    public int color(int color) {
+        color &= 0xFFFFFF;
+        int index = colorIndices.get(color);
+        if (index < 0) {
+            index = colorPaletteSize;
+            if (colorPaletteSize + 3 > colorPalette.length) {
+                colorPalette = Arrays.copyOf(colorPalette, colorPalette.length * 2);
+            }
+            colorPalette[colorPaletteSize++] = (byte) (color >> 16 & 255);
+            colorPalette[colorPaletteSize++] = (byte) (color >> 8 & 255);
+            colorPalette[colorPaletteSize++] = (byte) (color & 255);
+            colorIndices.put(color, index);
+        }
+        return index;
+    }
+
+    /**
+     * Get the number of models in the palette.
+     * @return Model palette size.
+     */
+    public int numModels() {
+        return models.size();
+    }
+
+    /**
+     * Get the number of colors in the color palette.
+     * @return Color palette size, in colors (not bytes).
+     */
+    public int numColors() {
+        return colorPaletteSize / 3;
+    }
+
+    /**
+     * Get the model ID at a given palette index.
+     * @param index Palette index.
+     * @return The model ID.
+     */
+    public String getModel(int index) {
+        return models.get(index);
+    }
+
+    /**
+     * Check if any entries in the palette are the keys of blocks whose model has
+     * split faces.
+     * 
+     * @return If the palette is written in its face-split form.
+     * @see SplitFaces
+     */
+    public boolean hasSplitFaces() {
+        return splitFaces;
+    }
+
+    /**
+     * Find the meshes of every entry in the palette. When the palette has split
+     * faces, this is the model palette it's written with.
+     * 
+     * @param meshes Palette to add the meshes to.
+     * @return For each entry in this palette, the index of its mesh in
+     *         <code>meshes</code>.
+     */
+    public int[] splitInto(SectionPalette meshes) {
+        int[] indices = new int[models.size()];
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = meshes.model(SplitFaces.getMesh(models.get(i)));
+        }
+        return indices;
+    }
+
+    /**
+     * Get a copy of the color palette in its serialized form: a sequence of RGB
+     * byte triplets.
+     *
+     * @return The color palette bytes.
+     */
+    public byte[] getColorPalette() {
+        return Arrays.copyOf(colorPalette, colorPaletteSize);
+    }
+
+    /**
+     * Write the model palette as an NBT list of strings.
+     * @return The palette tag.
+     */
+    public NbtList writePalette() {
+        NbtList paletteTag = new NbtList();
+        for (String entry : models) paletteTag.add(NbtString.of(entry));
+        return paletteTag;
+    }
+
+    /**
+     * Check if every block in the section shares a single model and color.
+     * @return If the section can be written in its uniform form.
+     */
+    public boolean isUniform() {
+        return models.size() == 1 && colorPaletteSize == 3;
+    }
+
+    /**
+     * Write this palette and the given block data into a section tag. If every
+     * block shares one model and color, the compact uniform form is written, which
+     * omits the <code>blocks</code> and <code>colors</code> arrays. Palettes with
+     * split faces are written with one entry per mesh and a <code>faces</code>
+     * array.
+     *
+     * @param tag    Section tag to write to.
+     * @param blocks Palette indices of each block in the section.
+     * @param colors Color palette indices of each block in the section.
+     */
+    public void writeTo(NbtCompound tag, int[] blocks, byte[] colors) {
+        if (splitFaces) {
+            writeSplitTo(tag, blocks, colors);
+            return;
+        }
+        if (isUniform()) {
+            tag.putBoolean("uniform", true);
+            tag.put("palette", writePalette());
+            tag.put("colorPalette", new NbtByteArray(getColorPalette()));
+            return;
+        }
+        tag.put("palette", writePalette());
+        tag.put("blocks", new NbtIntArray(blocks));
+        tag.put("colorPalette", new NbtByteArray(getColorPalette()));
+        tag.put("colors", new NbtByteArray(colors));
+    }
+
+    /**
+     * Write the palette and block data in face-split form, where the palette
+     * lists meshes and a separate <code>faces</code> array holds each block's face
+     * mask.
+     */
+    private void writeSplitTo(NbtCompound tag, int[] blocks, byte[] colors) {
+        SectionPalette meshes = new SectionPalette();
+        int[] meshIndices = splitInto(meshes);
+        byte[] entryFaces = new byte[models.size()];
+        for (int i = 0; i < entryFaces.length; i++) {
+            entryFaces[i] = SplitFaces.getFaces(models.get(i));
+        }
+
+        int[] meshBlocks = new int[blocks.length];
+        byte[] faces = new byte[blocks.length];
+        boolean uniformFaces = true;
+        for (int i = 0; i < blocks.length; i++) {
+            meshBlocks[i] = meshIndices[blocks[i]];
+            faces[i] = entryFaces[blocks[i]];
+            uniformFaces &= faces[i] == faces[0];
+        }
+
+        if (meshes.numModels() == 1 && colorPaletteSize == 3 && uniformFaces) {
+            tag.putBoolean("uniform", true);
+            tag.put("palette", meshes.writePalette());
+            tag.put("colorPalette", new NbtByteArray(getColorPalette()));
+            tag.put("faces", new NbtByteArray(new byte[] { faces[0] }));
+            return;
+        }
+        tag.put("palette", meshes.writePalette());
+        tag.put("blocks", new NbtIntArray(meshBlocks));
+        tag.put("colorPalette", new NbtByteArray(getColorPalette()));
+        tag.put("colors", new NbtByteArray(colors));
+        tag.put("faces", new NbtByteArray(faces));
+    }
+}
@@ -0,0 +1,286 @@
+package org.scaffoldeditor.worldexport.vcap;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.LongPredicate;
+
+import javax.annotation.Nullable;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtElement;
+import net.minecraft.nbt.NbtIo;
+import net.minecraft.util.math.ChunkSectionPos;
+
+/**
+ * A temporary file that captured sections are written to as soon as they're
+ * done, so an intracoded frame never has to hold all of its sections in memory.
+ * Sections can be read back individually by position, and the whole spill can
+ * be copied into a <code>sections</code> list when the vcap is saved.
+ * <p>
+ * A spill can be derived from another one with {@link #derive}. The two share
+ * a file, and sections written to either are appended to it, so a keyframe only
+ * adds the sections that changed since the frame it's based on. The file is
+ * deleted once every spill sharing it has been closed.
+ * <p>
+ * Sections may be written from multiple threads.
+ */
+public class SectionSpill implements Closeable {
+
+    /**
+     * The length of the header {@link NbtIo#write(NbtCompound, DataOutput)} puts
+     * before each section: a type byte and an empty name.
+     */
+    private static final int HEADER_LENGTH = 3;
+
+    private final SpillFile file;
+
+    /**
+     * The position and record in the file of each section in this spill, in the
+     * order they were added.
+     */
+    private final LongArrayList positions = new LongArrayList();
+    private final IntArrayList records = new IntArrayList();
+    /**
+     * The index into {@link #positions} and {@link #records} of each section.
+     */
+    private final Long2IntOpenHashMap index = new Long2IntOpenHashMap();
+
+    private boolean closed;
+
+    /**
+     * Create a new spill file in the system's temp directory.
+     * @throws IOException If the file can't be created.
+     */
+    public SectionSpill() throws IOException {
+        this(new SpillFile());
+    }
+
+    private SectionSpill(SpillFile file) {
+        this.file = file;
+        index.defaultReturnValue(-1);
+    }
+
+    /**
+     * Append a section to the spill. If the spill already has a section at the
+     * same position, it's replaced.
+     *
+     * @param section Section to write. Must have <code>x</code>, <code>y</code>
+     *                and <code>z</code> entries.
+     * @throws IOException If an IO exception occurs.
+     */
+    public void write(NbtCompound section) throws IOException {
+        // Serialize outside the lock; only the copy into the file is serialized.
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(16 * 1024);
+        NbtIo.write(section, new DataOutputStream(buffer));
+        long pos = ChunkSectionPos.asLong(section.getInt("x"), section.getInt("y"), section.getInt("z"));
+        append(pos, buffer.toByteArray());
+    }
+
+    private synchronized void append(long pos, byte[] bytes) throws IOException {
+        if (closed) throw new IOException("This spill has been closed.");
+        put(pos, file.append(bytes));
+    }
+
+    private void put(long pos, int record) {
+        int i = index.get(pos);
+        if (i >= 0) {
+            records.set(i, record);
+            return;
+        }
+        index.put(pos, records.size());
+        positions.add(pos);
+        records.add(record);
+    }
+
+    /**
+     * Create a spill that shares this spill's file and starts out with some of its
+     * sections. No section data is copied; the new spill refers to the same
+     * records in the file. Both spills must be closed separately.
+     *
+     * @param include Decides which sections to include, by packed section
+     *                position.
+     * @return The new spill.
+     * @throws IOException If this spill has been closed.
+     */
+    public synchronized SectionSpill derive(LongPredicate include) throws IOException {
+        if (closed) throw new IOException("This spill has been closed.");
+        file.retain();
+        SectionSpill derived = new SectionSpill(file);
+        for (int i = 0; i < positions.size(); i++) {
+            long pos = positions.getLong(i);
+            if (include.test(pos)) {
+                derived.put(pos, records.getInt(i));
+            }
+        }
+        return derived;
+    }
+
+    /**
+     * Get the number of sections in the spill.
+     * @return Section count.
+     */
+    public synchronized int size() {
+        return records.size();
+    }
+
+    /**
+     * Check if a section is in the spill.
+     * @param sectionPos The packed section position.
+     * @return If it's there.
+     */
+    public synchronized boolean contains(long sectionPos) {
+        return index.containsKey(sectionPos);
+    }
+
+    /**
+     * Read a section back from the spill.
+     * @param sectionPos The packed section position, as returned by
+     *                   {@link ChunkSectionPos#asLong}.
+     * @return The section, or <code>null</code> if it isn't in the spill.
+     * @throws IOException If an IO exception occurs.
+     */
+    @Nullable
+    public synchronized NbtCompound read(long sectionPos) throws IOException {
+        int i = index.get(sectionPos);
+        if (i < 0) return null;
+        return readEntry(i);
+    }
+
+    /**
+     * Read every section back from the spill. This defeats the purpose of
+     * spilling; it's only here for code that still needs the full frame tree.
+     *
+     * @param consumer Consumer to pass the sections to.
+     * @throws IOException If an IO exception occurs.
+     */
+    public synchronized void readAll(IOConsumer<NbtCompound> consumer) throws IOException {
+        for (int i = 0; i < records.size(); i++) {
+            consumer.accept(readEntry(i));
+        }
+    }
+
+    private NbtCompound readEntry(int i) throws IOException {
+        if (closed) throw new IOException("This spill has been closed.");
+        return NbtIo.read(new DataInputStream(new ByteArrayInputStream(file.read(records.getInt(i)))));
+    }
+
+    /**
+     * Copy the payload of every section into an output, as the elements of an NBT
+     * list of compounds. The list header itself is not written.
+     *
+     * @param output Output to write to.
+     * @throws IOException If an IO exception occurs.
+     */
+    public synchronized void transferTo(DataOutput output) throws IOException {
+        if (closed) throw new IOException("This spill has been closed.");
+        byte[] buffer = new byte[16 * 1024];
+        for (int i = 0; i < records.size(); i++) {
+            file.transferPayload(records.getInt(i), output, buffer);
+        }
+    }
+
+    /**
+     * Close the spill. The file is deleted once every spill sharing it has been
+     * closed. Must be called once the spill is no longer needed, as the file is
+     * not deleted otherwise.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        file.release();
+    }
+
+    /**
+     * The file behind one or more spills. Records are only ever appended to it.
+     */
+    private static class SpillFile {
+        final Path file;
+        final DataOutputStream out;
+
+        final LongArrayList offsets = new LongArrayList();
+        final IntArrayList lengths = new IntArrayList();
+        long size;
+
+        @Nullable
+        RandomAccessFile reader;
+        int references = 1;
+
+        SpillFile() throws IOException {
+            file = Files.createTempFile("vcap-sections", ".dat");
+            out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)));
+        }
+
+        synchronized int append(byte[] bytes) throws IOException {
+            if (references <= 0) throw new IOException("This spill has been closed.");
+            out.write(bytes);
+            offsets.add(size);
+            lengths.add(bytes.length);
+            size += bytes.length;
+            return offsets.size() - 1;
+        }
+
+        synchronized byte[] read(int record) throws IOException {
+            byte[] bytes = new byte[lengths.getInt(record)];
+            seek(record).readFully(bytes);
+            return bytes;
+        }
+
+        synchronized void transferPayload(int record, DataOutput output, byte[] buffer) throws IOException {
+            RandomAccessFile in = seek(record);
+            // Strip the root tag header so only the compound's payload is copied.
+            if (in.readByte() != NbtElement.COMPOUND_TYPE || in.readUnsignedShort() != 0) {
+                throw new IOException("Corrupt section spill at record " + record);
+            }
+
+            int remaining = lengths.getInt(record) - HEADER_LENGTH;
+            while (remaining > 0) {
+                int read = in.read(buffer, 0, Math.min(buffer.length, remaining));
+                if (read < 0) throw new IOException("Unexpected end of section spill.");
+                output.write(buffer, 0, read);
+                remaining -= read;
+            }
+        }
+
+        private RandomAccessFile seek(int record) throws IOException {
+            if (references <= 0) throw new IOException("This spill has been closed.");
+            out.flush();
+            if (reader == null) {
+                reader = new RandomAccessFile(file.toFile(), "r");
+            }
+            reader.seek(offsets.getLong(record));
+            return reader;
+        }
+
+        synchronized void retain() throws IOException {
+            if (references <= 0) throw new IOException("This spill has been closed.");
+            references++;
+        }
+
+        synchronized void release() throws IOException {
+            if (--references > 0) return;
+            out.close();
+            if (reader != null) reader.close();
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * A consumer that may throw an IO exception.
+     */
+    public static interface IOConsumer<T> {
+        void accept(T val) throws IOException;
+    }
+}
@@ -0,0 +1,172 @@
+package org.scaffoldeditor.worldexport.vcap;
+
+import java.util.Collection;
+
+import org.scaffoldeditor.worldexport.world_snapshot.ChunkView;
+
+import it.unimi.dsi.fastutil.bytes.ByteArrayFIFOQueue;
+import it.unimi.dsi.fastutil.longs.Long2ByteOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayFIFOQueue;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import net.minecraft.block.BlockState;
+import net.minecraft.client.render.chunk.ChunkOcclusionData;
+import net.minecraft.client.render.chunk.ChunkOcclusionDataBuilder;
+import net.minecraft.util.math.BlockBox;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkSectionPos;
+import net.minecraft.util.math.Direction;
+import net.minecraft.util.math.Vec3d;
+
+/**
+ * Computes a potentially visible set of sections from a set of camera
+ * positions, using the same section connectivity that Minecraft's renderer
+ * uses for cave culling.
+ * <p>
+ * Starting at each camera's section, a flood fill moves into a neighboring
+ * section only if the section it's in has a path of non-opaque blocks between
+ * the face it was entered through and the face it's leaving through. Every
+ * section the fill reaches is visible, including solid sections it can't pass
+ * through, as their outer faces can be seen. Sections that aren't loaded are
+ * treated as fully open, so they never hide anything behind them.
+ */
+public final class SectionVisibility {
+    private SectionVisibility() {}
+
+    /**
+     * The largest region, in sections, that will be flood filled.
+     */
+    public static final long MAX_SECTIONS = 1 << 24;
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    /**
+     * Marks a section that a camera is in, which may be left through any face.
+     */
+    private static final byte FROM_CAMERA = -1;
+
+    private static final ChunkOcclusionData OPEN = new ChunkOcclusionData();
+    private static final ChunkOcclusionData CLOSED = new ChunkOcclusionData();
+
+    static {
+        OPEN.fill(true);
+    }
+
+    /**
+     * Find the sections in a region that can be seen from any of a set of camera
+     * positions. Must be called on the thread that owns the world.
+     *
+     * @param world   The world to check.
+     * @param bounds  The region to return sections from, in section coordinates.
+     * @param cameras The camera positions to check from.
+     * @return Packed positions of the visible sections within the bounds.
+     * @throws IllegalArgumentException If the bounds and cameras span more than
+     *                                  {@link #MAX_SECTIONS} sections.
+     */
+    public static LongSet compute(ChunkView world, BlockBox bounds, Collection<Vec3d> cameras) {
+        // Cameras outside the bounds can still see into them, so the fill is
+        // allowed to cover the cameras as well.
+        BlockBox region = bounds;
+        for (Vec3d camera : cameras) {
+            int x = ChunkSectionPos.getSectionCoord(camera.x);
+            int y = ChunkSectionPos.getSectionCoord(camera.y);
+            int z = ChunkSectionPos.getSectionCoord(camera.z);
+            region = new BlockBox(Math.min(region.getMinX(), x), Math.min(region.getMinY(), y),
+                    Math.min(region.getMinZ(), z), Math.max(region.getMaxX(), x),
+                    Math.max(region.getMaxY(), y), Math.max(region.getMaxZ(), z));
+        }
+        region = new BlockBox(region.getMinX(), Math.max(region.getMinY(), world.getBottomSectionCoord()),
+                region.getMinZ(), region.getMaxX(), Math.min(region.getMaxY(), world.getTopSectionCoord() - 1),
+                region.getMaxZ());
+
+        long volume = (long) region.getBlockCountX() * region.getBlockCountY() * region.getBlockCountZ();
+        if (volume > MAX_SECTIONS) {
+            throw new IllegalArgumentException("Region is too large to compute visibility for.");
+        }
+
+        Long2ObjectMap<ChunkOcclusionData> occlusion = new Long2ObjectOpenHashMap<>();
+        // The faces each section has already been entered through.
+        Long2ByteOpenHashMap entered = new Long2ByteOpenHashMap();
+        LongSet visible = new LongOpenHashSet();
+
+        LongArrayFIFOQueue sections = new LongArrayFIFOQueue();
+        ByteArrayFIFOQueue entryFaces = new ByteArrayFIFOQueue();
+
+        for (Vec3d camera : cameras) {
+            long section = ChunkSectionPos.toLong(BlockPos.ofFloored(camera));
+            if (!contains(region, section) || entered.get(section) == (byte) 0x3F) continue;
+            entered.put(section, (byte) 0x3F);
+            if (contains(bounds, section)) visible.add(section);
+            sections.enqueue(section);
+            entryFaces.enqueue(FROM_CAMERA);
+        }
+
+        while (!sections.isEmpty()) {
+            long section = sections.dequeueLong();
+            byte entryFace = entryFaces.dequeueByte();
+            ChunkOcclusionData data = occlusion.computeIfAbsent(section, s -> computeOcclusion(world, s));
+
+            for (Direction direction : DIRECTIONS) {
+                if (entryFace != FROM_CAMERA && !data.isVisibleThrough(DIRECTIONS[entryFace], direction)) {
+                    continue;
+                }
+
+                long neighbor = ChunkSectionPos.offset(section, direction);
+                if (!contains(region, neighbor)) continue;
+
+                Direction neighborFace = direction.getOpposite();
+                byte mask = entered.get(neighbor);
+                byte faceBit = (byte) (1 << neighborFace.getId());
+                if ((mask & faceBit) != 0) continue;
+                entered.put(neighbor, (byte) (mask | faceBit));
+
+                if (contains(bounds, neighbor)) visible.add(neighbor);
+                sections.enqueue(neighbor);
+                entryFaces.enqueue((byte) neighborFace.getId());
+            }
+        }
+
+        return visible;
+    }
+
+    private static ChunkOcclusionData computeOcclusion(ChunkView world, long section) {
+        int x = ChunkSectionPos.unpackX(section);
+        int y = ChunkSectionPos.unpackY(section);
+        int z = ChunkSectionPos.unpackZ(section);
+        if (!world.isSectionLoaded(x, y, z)) return OPEN;
+
+        BlockPos.Mutable pos = new BlockPos.Mutable();
+        BlockState uniform = world.getUniformState(x, y, z);
+        if (uniform != null) {
+            pos.set(x << 4, y << 4, z << 4);
+            return uniform.isOpaqueFullCube(world, pos) ? CLOSED : OPEN;
+        }
+
+        ChunkOcclusionDataBuilder builder = new ChunkOcclusionDataBuilder();
+        int minX = x << 4;
+        int minY = y << 4;
+        int minZ = z << 4;
+        for (int localY = 0; localY < 16; localY++) {
+            for (int localZ = 0; localZ < 16; localZ++) {
+                for (int localX = 0; localX < 16; localX++) {
+                    pos.set(minX + localX, minY + localY, minZ + localZ);
+                    if (world.getBlockState(pos).isOpaqueFullCube(world, pos)) {
+                        builder.markClosed(pos);
+                    }
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    private static boolean contains(BlockBox box, long section) {
+        int x = ChunkSectionPos.unpackX(section);
+        int y = ChunkSectionPos.unpackY(section);
+        int z = ChunkSectionPos.unpackZ(section);
+        return x >= box.getMinX() && x <= box.getMaxX()
+                && y >= box.getMinY() && y <= box.getMaxY()
+                && z >= box.getMinZ() && z <= box.getMaxZ();
+    }
+}
@@ -0,0 +1,80 @@
+package org.scaffoldeditor.worldexport.vcap;
+
+import javax.annotation.Nullable;
+
+import net.minecraft.util.math.Direction;
+
+/**
+ * Utilities for models that are written with their faces split into groups.
+ * <p>
+ * When faces are split, a block state's model is written once with every face,
+ * and each block stores which of the faces are visible separately. While
+ * capturing, blocks are identified by a key that combines the two, so frames
+ * can still compare blocks by model ID alone. Keys are broken back up into a
+ * mesh and a face mask when frames are serialized.
+ *
+ * @see VcapSettings#splitFaces()
+ */
+public final class SplitFaces {
+    private SplitFaces() {}
+
+    private static final char SEPARATOR = '|';
+
+    /**
+     * The face mask of blocks whose model isn't split, and is drawn whole.
+     */
+    public static final byte UNSPLIT = -1;
+
+    /**
+     * Get the key of a block with a split model.
+     *
+     * @param mesh  The model ID of the block state's mesh.
+     * @param faces The block's visible faces, with bits in the order of
+     *              {@link Direction}.
+     * @return The block's key.
+     */
+    public static String key(String mesh, int faces) {
+        if (faces < 0) return mesh;
+        return mesh + SEPARATOR + Integer.toHexString(faces);
+    }
+
+    /**
+     * Get the model ID of the mesh a block key refers to.
+     * @param key The block key or model ID.
+     * @return The mesh's model ID.
+     */
+    public static String getMesh(String key) {
+        int index = key.lastIndexOf(SEPARATOR);
+        return index < 0 ? key : key.substring(0, index);
+    }
+
+    /**
+     * Get the visible faces of a block key.
+     * @param key The block key or model ID.
+     * @return The face mask, or {@link #UNSPLIT} if the model isn't split.
+     */
+    public static byte getFaces(String key) {
+        int index = key.lastIndexOf(SEPARATOR);
+        return index < 0 ? UNSPLIT : (byte) Integer.parseInt(key.substring(index + 1), 16);
+    }
+
+    /**
+     * Check if a block key refers to a split model.
+     * @param key The block key or model ID.
+     * @return If the key has a face mask.
+     */
+    public static boolean isSplit(String key) {
+        return key.indexOf(SEPARATOR) >= 0;
+    }
+
+    /**
+     * Get the name of the face group the quads of a direction are written to.
+     *
+     * @param direction The direction, or <code>null</code> for quads that are
+     *                  never culled.
+     * @return The group name.
+     */
+    public static String getGroupName(@Nullable Direction direction) {
+        return "face_" + (direction != null ? direction.getName() : "none");
+    }
+}
@@ -0,0 +1,190 @@
+package org.scaffoldeditor.worldexport.vcap;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.scaffoldeditor.worldexport.mixins.BlockColorsAccessor;
+
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectOpenHashMap;
+import net.minecraft.block.BlockState;
+import net.minecraft.client.color.block.BlockColorProvider;
+import net.minecraft.client.color.block.BlockColors;
+import net.minecraft.registry.Registries;
+import net.minecraft.util.collection.IdList;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.BlockRenderView;
+
+/**
+ * Caches block colors so biome blending only runs once per block column rather
+ * than once per block. Blocks without a color provider are detected up front
+ * and never sampled.
+ * <p>
+ * Colors are cached by color provider and x/z column, so every block sharing a
+ * provider (grass, ferns and sugar cane; the states of a leaf block; water)
+ * shares one sample per column. Some providers (stems, redstone wire) depend on
+ * the state as well; the first time a state is seen, it's sampled alongside
+ * the first state seen with its provider, and if their colors differ, the state
+ * gets its own cache. A block's color is assumed not to change with height,
+ * which may be off underground, where a cave biome can differ from the surface.
+ * <p>
+ * Sampled colors are kept in a {@link Shared} store for the whole capture.
+ * Instances of this class are <b>not</b> thread-safe; each capture task should
+ * use its own, backed by the same store.
+ */
+public class TintCache {
+
+    /**
+     * The colors sampled during a capture, shared between the tint caches of all
+     * its tasks. Thread-safe.
+     */
+    public static class Shared {
+        /**
+         * The sampled colors of each cache key, by packed column. Guarded by the
+         * map itself.
+         */
+        private final Map<Object, Long2IntOpenHashMap> colors = new ConcurrentHashMap<>();
+
+        /**
+         * The cache key of each state: either its color provider or the state
+         * itself.
+         */
+        private final Map<BlockState, Object> keys = new ConcurrentHashMap<>();
+
+        /**
+         * The first state seen with each provider, which other states are
+         * compared against.
+         */
+        private final Map<BlockColorProvider, BlockState> references = new ConcurrentHashMap<>();
+
+        private Long2IntOpenHashMap getColumns(Object key) {
+            return colors.computeIfAbsent(key, k -> new Long2IntOpenHashMap());
+        }
+    }
+
+    private final BlockColors blockColors;
+    private final IdList<BlockColorProvider> providers;
+    private final Shared shared;
+
+    private final Reference2ObjectOpenHashMap<Object, Long2IntOpenHashMap> cache = new Reference2ObjectOpenHashMap<>();
+    private final Reference2ObjectOpenHashMap<BlockState, Object> keys = new Reference2ObjectOpenHashMap<>();
+
+    private long nanos;
+    private long samples;
+    private long lookups;
+
+    /**
+     * Create a tint cache backed by the colors of a capture.
+     * @param blockColors The game's block colors.
+     * @param shared      The capture's shared colors.
+     */
+    public TintCache(BlockColors blockColors, Shared shared) {
+        this.blockColors = blockColors;
+        this.providers = ((BlockColorsAccessor) blockColors).getProviders();
+        this.shared = shared;
+    }
+
+    /**
+     * Check if a block state has a color provider at all.
+     * @param state Block state to check.
+     * @return If the block's color may be something other than white.
+     */
+    public boolean isTinted(BlockState state) {
+        return getProvider(state) != null;
+    }
+
+    private BlockColorProvider getProvider(BlockState state) {
+        return providers.get(Registries.BLOCK.getRawId(state.getBlock()));
+    }
+
+    /**
+     * Get the color of a block, using the cached value for its column if there is
+     * one.
+     *
+     * @param state Block state.
+     * @param world World the block is in.
+     * @param pos   Position of the block.
+     * @return The block's color, or <code>-1</code> if it's untinted.
+     */
+    public int getColor(BlockState state, BlockRenderView world, BlockPos pos) {
+        BlockColorProvider provider = getProvider(state);
+        if (provider == null) return -1;
+        lookups++;
+
+        Object key = getKey(state, provider, world, pos);
+        Long2IntOpenHashMap columns = cache.get(key);
+        if (columns == null) {
+            columns = new Long2IntOpenHashMap();
+            cache.put(key, columns);
+        }
+
+        long column = ChunkPos.toLong(pos.getX(), pos.getZ());
+        if (columns.containsKey(column)) {
+            return columns.get(column);
+        }
+
+        Long2IntOpenHashMap sharedColumns = shared.getColumns(key);
+        int color = 0;
+        boolean cached;
+        synchronized (sharedColumns) {
+            cached = sharedColumns.containsKey(column);
+            if (cached) color = sharedColumns.get(column);
+        }
+        // Sample outside the lock so workers don't wait on each other's blending.
+        if (!cached) {
+            color = sample(state, world, pos);
+            synchronized (sharedColumns) {
+                sharedColumns.put(column, color);
+            }
+        }
+
+        columns.put(column, color);
+        return color;
+    }
+
+    /**
+     * Get the key a state's colors are cached under: its color provider, unless
+     * its color depends on the state.
+     */
+    private Object getKey(BlockState state, BlockColorProvider provider, BlockRenderView world, BlockPos pos) {
+        Object key = keys.get(state);
+        if (key != null) return key;
+
+        key = shared.keys.get(state);
+        if (key == null) {
+            BlockState reference = shared.references.computeIfAbsent(provider, p -> state);
+            if (reference == state || sample(reference, world, pos) == sample(state, world, pos)) {
+                key = provider;
+            } else {
+                key = state;
+            }
+            Object existing = shared.keys.putIfAbsent(state, key);
+            if (existing != null) key = existing;
+        }
+
+        keys.put(state, key);
+        return key;
+    }
+
+    private int sample(BlockState state, BlockRenderView world, BlockPos pos) {
+        long start = System.nanoTime();
+        int color = blockColors.getColor(state, world, pos, 0);
+        nanos += System.nanoTime() - start;
+        samples++;
+        return color;
+    }
+
+    /**
+     * Add the time spent sampling colors to a capture profile and reset the
+     * counters.
+     * @param profile Profile to add to.
+     */
+    public void flush(CaptureProfile profile) {
+        profile.record(CaptureProfile.TINT_SAMPLING, nanos, samples);
+        profile.count(CaptureProfile.TINT_LOOKUPS, lookups);
+        nanos = 0;
+        samples = 0;
+        lookups = 0;
+    }
+}
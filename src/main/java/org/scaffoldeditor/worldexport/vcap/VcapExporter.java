@@ -1,5 +1,7 @@
 package org.scaffoldeditor.worldexport.vcap;
 
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
@@ -31,34 +33,39 @@ import org.scaffoldeditor.worldexport.mat.ReplayTexture;
 import org.scaffoldeditor.worldexport.mat.TextureExtractor;
 import org.scaffoldeditor.worldexport.mat.TextureSerializer;
 import org.scaffoldeditor.worldexport.replaymod.util.ExportPhase;
+import org.scaffoldeditor.worldexport.util.MeshFingerprint;
+import org.scaffoldeditor.worldexport.util.MeshFormat;
 import org.scaffoldeditor.worldexport.util.ZipEntryOutputStream;
 import org.scaffoldeditor.worldexport.vcap.BlockExporter.CaptureCallback;
 import org.scaffoldeditor.worldexport.vcap.model.MaterialProvider;
 import org.scaffoldeditor.worldexport.vcap.model.ModelProvider;
-import org.scaffoldeditor.worldexport.vcap.model.ModelProvider.ModelInfo;
 import org.scaffoldeditor.worldexport.world_snapshot.ChunkView;
+import org.scaffoldeditor.worldexport.world_snapshot.WorldSnapshotManager;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
-import com.mojang.blaze3d.systems.RenderSystem;
 
-import de.javagl.obj.ObjWriter;
 import de.javagl.obj.Objs;
 import de.javagl.obj.ReadableObj;
-import net.minecraft.block.BlockState;
-import net.minecraft.nbt.NbtCompound;
-import net.minecraft.nbt.NbtIo;
-import net.minecraft.nbt.NbtList;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientChunkEvents;
+import net.minecraft.nbt.NbtElement;
 import net.minecraft.util.math.BlockBox;
 import net.minecraft.util.math.BlockPos;
-import net.minecraft.world.World;
+import net.minecraft.util.math.ChunkSectionPos;
+import net.minecraft.util.math.Direction;
 import net.minecraft.world.WorldAccess;
 
 /**
  * Captures and exports a voxel capture file. Each instance
  * represents one file being exported.
+ * <p>
+ * Captured frames are kept in temporary files until the vcap is saved. If an
+ * exporter is discarded without saving, it must be closed to delete them.
  */
-public class VcapExporter {
+public class VcapExporter implements Closeable {
     private static Logger LOGGER = LogManager.getLogger();
 
     /**
@@ -66,8 +73,25 @@ public class VcapExporter {
      */
     public final WorldAccess world;
 
+    /**
+     * The frames in this vcap. Frames should be added with {@link #addFrame} or
+     * the capture methods rather than directly, so the world state overlay stays
+     * up to date.
+     */
     public final List<Frame> frames = Collections.synchronizedList(new ArrayList<>());
     public final ExportContext context;
+
+    private final WorldStateOverlay overlay = new WorldStateOverlay();
+
+    @Nullable
+    private FrameJournal journal;
+
+    @Nullable
+    private volatile ChunkBackfill backfill;
+    private final ClientChunkEvents.Load chunkLoadListener = (world, chunk) -> {
+        ChunkBackfill backfill = this.backfill;
+        if (backfill != null && world == this.world) backfill.onChunkLoaded(chunk.getPos());
+    };
     
     public VcapSettings getSettings() {
         return context.getSettings();
@@ -123,6 +147,9 @@ public class VcapExporter {
      * <b>Warning:</b> Due to the need to extract the atlas texture from
      * the GPU, if this method is not called on the render thread, it will block
      * until the next frame is rendered.
+     * <p>
+     * Once the frames have been written, their temporary files are deleted, so a
+     * vcap can only be saved once.
      * 
      * @param os Output stream to write to.
      * @throws IOException If an IO exception occurs while writing the file
@@ -133,38 +160,58 @@ public class VcapExporter {
 
         // WORLD
         phaseConsumer.accept(ExportPhase.COMPILING_FRAMES);
-        NbtList frames = new NbtList();
-        this.frames.forEach(frame -> frames.add(frame.getFrameData()));
-        NbtCompound worldData = new NbtCompound();
-        worldData.put("frames", frames);
-
         out.putNextEntry(new ZipEntry("world.dat"));
-        NbtIo.write(worldData, new DataOutputStream(out));
+        try {
+            writeWorld(new DataOutputStream(new BufferedOutputStream(out)));
+        } finally {
+            releaseFrames();
+        }
         out.closeEntry();
 
+        context.getProfile().log(LOGGER);
+        WorldSnapshotManager snapshots = WorldSnapshotManager.getInstance();
+        LOGGER.debug("{} world snapshot(s) still live, tracking {} overwritten block(s).",
+                snapshots.getLiveSnapshots(), snapshots.getTrackedOverwrites());
+
         Map<String, MaterialProvider> materials = new HashMap<>(context.materials);
 
         // MODELS
-        int numLayers = 0;
+        int[] numLayers = new int[1];
 
         phaseConsumer.accept(ExportPhase.MESHES);
-        for (Map.Entry<String, ModelProvider> entry : context.models.entrySet()) {
-            String id = entry.getKey();
-            ModelProvider modelProvider = entry.getValue();
-
-            LOGGER.debug("Writing mesh: "+id);
-            ModelInfo model = modelProvider.writeMesh();
-            writeMesh(model.mesh(), id, out);
+        MeshFormat meshFormat = getSettings().getMeshFormat();
+        boolean dedupe = getSettings().deduplicateMeshes();
+        Map<MeshFingerprint, String> meshIds = new HashMap<>();
+        Map<String, String> meshAliases = new HashMap<>();
+
+        List<Map.Entry<String, ModelProvider>> models = new ArrayList<>(context.models.entrySet());
+        MeshBaker.bake(models, meshFormat, getSettings().getMeshThreads(), dedupe, (id, model, fingerprint, data) -> {
+            if (model.numLayers() > numLayers[0]) {
+                numLayers[0] = model.numLayers();
+            }
+            model.materials().forEach(materials::putIfAbsent);
 
-            if (model.numLayers() > numLayers) {
-                numLayers = model.numLayers();
+            if (fingerprint != null) {
+                String existing = meshIds.putIfAbsent(fingerprint, id);
+                if (existing != null) {
+                    meshAliases.put(id, existing);
+                    return;
+                }
             }
 
-            model.materials().forEach(materials::putIfAbsent);
+            LOGGER.debug("Writing mesh: "+id);
+            out.putNextEntry(new ZipEntry("mesh/"+id+"."+meshFormat.getExtension()));
+            data.writeTo(out);
+            out.closeEntry();
+        });
+
+        if (!meshAliases.isEmpty()) {
+            LOGGER.info("{} of {} meshes were duplicates and were replaced with aliases.", meshAliases.size(),
+                    models.size());
         }
 
         // Fluid meshes assume empty mesh is written.
-        writeMesh(Objs.create(), MeshWriter.EMPTY_MESH, out);
+        writeMesh(Objs.create(), MeshWriter.EMPTY_MESH, meshFormat, out);
 
         // MATERIALS
 
@@ -188,7 +235,8 @@ public class VcapExporter {
         
         // META
         LOGGER.info(ExportPhase.VCAP_META);
-        VcapMeta meta = new VcapMeta(numLayers);
+        VcapMeta meta = new VcapMeta(numLayers[0]);
+        meta.meshAliases.putAll(meshAliases);
         context.getIDMapping(meta.blockTypes);
         Gson gson = new GsonBuilder()
             .setPrettyPrinting()
@@ -205,10 +253,75 @@ public class VcapExporter {
         out.finish();
     }
 
-    private static void writeMesh(ReadableObj mesh, String id, ZipOutputStream out) throws IOException {
-        ZipEntry modelEntry = new ZipEntry("mesh/"+id+".obj");
+    /**
+     * Write <code>world.dat</code>. Rather than building the whole tag and writing
+     * it at once, each frame streams its own data into the output.
+     * 
+     * @param out Output to write to. Will be flushed but not closed.
+     * @throws IOException If an IO exception occurs.
+     */
+    private void writeWorld(DataOutputStream out) throws IOException {
+        // Root compound
+        out.writeByte(NbtElement.COMPOUND_TYPE);
+        out.writeUTF("");
+
+        synchronized (frames) {
+            out.writeByte(NbtElement.LIST_TYPE);
+            out.writeUTF("frames");
+            out.writeByte(NbtElement.COMPOUND_TYPE);
+            out.writeInt(frames.size());
+            for (Frame frame : frames) {
+                frame.writeFrameData(out);
+            }
+        }
+
+        out.writeByte(NbtElement.END_TYPE);
+        out.flush();
+    }
+
+    /**
+     * Delete the temporary files holding the captured frames: the section spills
+     * of intracoded frames and the frame journal. The frames can no longer be
+     * written or queried afterwards.
+     */
+    private void releaseFrames() {
+        synchronized (frames) {
+            for (Frame frame : frames) {
+                if (frame instanceof IFrame iFrame) {
+                    try {
+                        iFrame.close();
+                    } catch (IOException e) {
+                        LOGGER.warn("Unable to delete section spill.", e);
+                    }
+                }
+            }
+
+            if (journal != null) {
+                try {
+                    journal.close();
+                } catch (IOException e) {
+                    LOGGER.warn("Unable to delete frame journal.", e);
+                }
+                journal = null;
+            }
+        }
+    }
+
+    /**
+     * Stop listening for changes and delete any temporary files held by the
+     * captured frames. Call this if the exporter is discarded without being saved;
+     * saving does it automatically.
+     */
+    @Override
+    public void close() {
+        stopListen();
+        releaseFrames();
+    }
+
+    private static void writeMesh(ReadableObj mesh, String id, MeshFormat format, ZipOutputStream out) throws IOException {
+        ZipEntry modelEntry = new ZipEntry("mesh/"+id+"."+format.getExtension());
         out.putNextEntry(modelEntry);   
-        ObjWriter.write(mesh, out);
+        format.write(mesh, out);
         out.closeEntry();
     }
 
@@ -227,8 +340,12 @@ public class VcapExporter {
      * @return The frame.
      */
     public IFrame captureIFrame(double time, @Nullable CaptureCallback callback) {
+        if (frames.isEmpty()) startBackfill(time);
         IFrame iFrame = IFrame.capture(new ChunkView.Wrapper(world), getSettings().getBounds(), context, time, callback);
-        frames.add(iFrame);
+        synchronized (frames) {
+            frames.add(iFrame);
+            overlay.append(iFrame);
+        }
         return iFrame;
     }
 
@@ -261,6 +378,7 @@ public class VcapExporter {
      */
     public CompletableFuture<IFrame> captureIFrameAsync(double time, Executor executor, @Nullable CaptureCallback callback) {
         int index = frames.size();
+        if (index == 0) startBackfill(time);
         return IFrame.captureAsync(new ChunkView.Wrapper(world), getSettings().getBounds(), context, time, executor, callback).thenApply(frame -> {
             addFrame(index, frame);
             LogManager.getLogger().info("Finished capturing world at {} seconds.", time);
@@ -281,6 +399,179 @@ public class VcapExporter {
         return captureIFrameAsync(time, executor, null);
     }
 
+    /**
+     * Start waiting for the chunks in the export bounds that aren't loaded yet, if
+     * the settings call for it. Called when the initial intracoded frame is
+     * captured, on the thread that owns the world.
+     * 
+     * @param time Time stamp of the initial frame.
+     * @see VcapSettings#getBackfillWindow()
+     */
+    private void startBackfill(double time) {
+        double window = getSettings().getBackfillWindow();
+        if (window <= 0 || backfill != null) return;
+
+        BlockBox bounds = getBounds();
+        if (!ChunkBackfill.canTrack(bounds)) {
+            LOGGER.warn("Export bounds are too large to wait for unloaded chunks. They will be missing from the vcap.");
+            return;
+        }
+
+        ChunkBackfill backfill = new ChunkBackfill(new ChunkView.Wrapper(world), bounds, time, window);
+        int missing = backfill.getMissingChunks();
+        if (missing == 0) return;
+
+        this.backfill = backfill;
+        ReplayExportMod.getInstance().onChunkLoaded(chunkLoadListener);
+        LOGGER.info("{} chunk(s) in the export bounds aren't loaded. They will be captured as they load.", missing);
+    }
+
+    /**
+     * Capture the chunks that were missing from the initial intracoded frame and
+     * have loaded since the last call, if there are any. Should be called once per
+     * frame, before the block updates are captured.
+     * 
+     * @param time  Timestamp of the frame, in seconds since the beginning of the
+     *              animation.
+     * @param world The world to query. Should contain a block structure equal to
+     *              that in this exporter.
+     * @return The captured frame, or <code>null</code> if no chunks have loaded.
+     */
+    @Nullable
+    public PartialIFrame captureLoadedChunks(double time, WorldAccess world) {
+        ChunkBackfill backfill = this.backfill;
+        if (backfill == null) return null;
+
+        PartialIFrame partial = null;
+        LongSet sections = backfill.flush();
+        if (!sections.isEmpty()) {
+            synchronized (frames) {
+                Optional<Frame> previous = !frames.isEmpty() ? Optional.of(frames.get(frames.size() - 1)) : Optional.empty();
+                // These sections were absent from the vcap until now, so empty ones can be left out.
+                partial = PartialIFrame.capture(new ChunkView.Wrapper(world), sections, time, previous, context, false);
+                frames.add(partial);
+                overlay.append(partial);
+                frames.set(frames.size() - 1, toJournal(partial));
+            }
+        }
+
+        if (backfill.isFinished(time)) stopBackfill();
+        return partial;
+    }
+
+    /**
+     * Stop waiting for missing chunks to load. Any that haven't loaded yet will be
+     * missing from the vcap.
+     */
+    public void stopBackfill() {
+        ChunkBackfill backfill = this.backfill;
+        if (backfill == null) return;
+        this.backfill = null;
+        ReplayExportMod.getInstance().removeOnChunkLoaded(chunkLoadListener);
+
+        int missing = backfill.getMissingChunks();
+        if (missing > 0) {
+            LOGGER.warn("{} chunk(s) never loaded and will be missing from the vcap.", missing);
+        }
+    }
+
+    /**
+     * Check whether the keyframe policy in the settings calls for a new intracoded
+     * frame. Always false until the first intracoded frame has been added.
+     * 
+     * @param time The time of the next frame, in seconds since the beginning of
+     *             the animation.
+     * @return If {@link #captureKeyframe} should be called.
+     * @see VcapSettings#getKeyframeInterval()
+     * @see VcapSettings#getKeyframeBlockThreshold()
+     */
+    public boolean needsKeyframe(double time) {
+        return needsKeyframe(time, Set.of());
+    }
+
+    /**
+     * Check whether the keyframe policy in the settings calls for a new intracoded
+     * frame, counting block updates that haven't been captured yet. Always false
+     * until the first intracoded frame has been added.
+     * 
+     * @param time    The time of the next frame, in seconds since the beginning
+     *                of the animation.
+     * @param pending Block updates since the last frame that haven't been
+     *                captured.
+     * @return If {@link #captureKeyframe(double, Set, WorldAccess)} should be
+     *         called.
+     */
+    public boolean needsKeyframe(double time, Set<BlockPos> pending) {
+        VcapSettings settings = getSettings();
+        Frame base = overlay.getBase();
+        if (!(base instanceof IFrame)) return false;
+
+        // A keyframe with nothing new in it would be identical to the last one.
+        int changed = overlay.getChangedBlocks() + pending.size();
+        if (changed == 0) return false;
+
+        double interval = settings.getKeyframeInterval();
+        if (interval > 0 && time - base.getTimestamp() >= interval) return true;
+
+        int threshold = settings.getKeyframeBlockThreshold();
+        return threshold > 0 && changed >= threshold;
+    }
+
+    /**
+     * Capture an intracoded frame from the current state of the vcap and add it
+     * to the end. Rather than re-scanning the world, the sections of the last
+     * intracoded frame are re-used, and only the sections that predicted frames
+     * have changed since are captured again.
+     * 
+     * @param time Time stamp of the frame, in seconds since the beginning of the
+     *             animation.
+     * @return The frame.
+     * @throws IllegalStateException If there is no intracoded frame to base it on.
+     * @throws IOException           If an IO exception occurs copying the last
+     *                               intracoded frame.
+     */
+    public IFrame captureKeyframe(double time) throws IOException {
+        return captureKeyframe(time, Set.of(), world);
+    }
+
+    /**
+     * Capture an intracoded frame from the current state of the vcap, along with
+     * block updates that haven't been captured yet, and add it to the end. The
+     * sections holding the updated blocks (and their neighbors, whose faces may
+     * have changed) are captured again along with the sections predicted frames
+     * have changed, so the updates don't need a predicted frame of their own.
+     * 
+     * @param time   Time stamp of the frame, in seconds since the beginning of the
+     *               animation.
+     * @param blocks Block updates since the last frame that haven't been
+     *               captured.
+     * @param world  The world to query. Should contain a block structure equal to
+     *               that in this exporter.
+     * @return The frame.
+     * @throws IllegalStateException If there is no intracoded frame to base it on.
+     * @throws IOException           If an IO exception occurs copying the last
+     *                               intracoded frame.
+     */
+    public IFrame captureKeyframe(double time, Set<BlockPos> blocks, WorldAccess world) throws IOException {
+        synchronized (frames) {
+            if (!(overlay.getBase() instanceof IFrame)) {
+                throw new IllegalStateException("No intracoded frame has been captured yet.");
+            }
+            LongSet dirtySections = overlay.getDirtySections();
+            for (BlockPos pos : blocks) {
+                dirtySections.add(ChunkSectionPos.toLong(pos));
+                for (Direction direction : Direction.values()) {
+                    dirtySections.add(ChunkSectionPos.toLong(pos.offset(direction)));
+                }
+            }
+            IFrame iFrame = IFrame.captureKeyframe(new ChunkView.Wrapper(world), overlay, dirtySections,
+                    context, time);
+            frames.add(iFrame);
+            overlay.append(iFrame);
+            return iFrame;
+        }
+    }
+
     /**
      * Insert a frame into this vcap, adjusting subsequent P frames as necessary.
      * @param index The index to insert at.
@@ -291,13 +582,35 @@ public class VcapExporter {
             if (index < 0 || index > frames.size()) {
                 throw new IndexOutOfBoundsException(index);
             }
-            if (index < frames.size() && frames.get(index) instanceof PFrame) {
-                ((PFrame) frames.get(index)).setPrevious(Optional.of(frame));
+            if (index < frames.size()) {
+                Frame next = frames.get(index);
+                if (next instanceof PFrame pFrame) {
+                    pFrame.setPrevious(Optional.of(frame));
+                } else if (next instanceof PartialIFrame partial) {
+                    partial.setPrevious(Optional.of(frame));
+                } else if (next instanceof JournaledFrame journaled) {
+                    journaled.setPrevious(Optional.of(frame));
+                }
             }
             frames.add(index, frame);
+
+            if (index == frames.size() - 1) {
+                overlay.append(frame);
+            } else {
+                overlay.rebuild(frames);
+            }
+            frames.set(index, toJournal(frame));
         }
     }
 
+    /**
+     * Get the state of the world as of the last frame in this vcap.
+     * @return The current world state.
+     */
+    public ModelLookup getCurrentState() {
+        return overlay;
+    }
+
     /**
      * Capture a predicted frame and add it to the file.
      * 
@@ -326,33 +639,169 @@ public class VcapExporter {
      * @return The captured frame.
      */
     public PFrame capturePFrame(double time, Set<BlockPos> blocks, WorldAccess world) {
-        Optional<Frame> previous = !frames.isEmpty() ? Optional.of(frames.get(frames.size() - 1)) : Optional.empty();
-        PFrame pFrame = PFrame.capture(new ChunkView.Wrapper(world), blocks, time, previous, context);
-        frames.add(pFrame);
-        return pFrame;
+        synchronized (frames) {
+            Optional<Frame> previous = !frames.isEmpty() ? Optional.of(frames.get(frames.size() - 1)) : Optional.empty();
+            PFrame pFrame = PFrame.capture(new ChunkView.Wrapper(world), blocks, time, previous, overlay, context);
+            frames.add(pFrame);
+            overlay.append(pFrame);
+            frames.set(frames.size() - 1, toJournal(pFrame));
+            return pFrame;
+        }
     }
 
-    private Date captureStartTime;
-    private Set<BlockPos> updateCache = new HashSet<>();
-    private ClientBlockPlaceCallback listener = new ClientBlockPlaceCallback() {
-        private boolean isCaptureQueued = false;
-
-        @Override
-        public void place(BlockPos t, @Nullable BlockState old, BlockState u, World world) {
-            updateCache.add(t);
-            if (!isCaptureQueued) {
-                RenderSystem.recordRenderCall(() -> {
-                    capturePFrame((new Date().getTime() - captureStartTime.getTime()) / 1000d, updateCache);
-                    updateCache.clear();
-                    isCaptureQueued = false;
-                });
+    /**
+     * Capture everything that's changed in the world since the last frame: the
+     * chunks that were missing and have loaded, then the block updates. If the
+     * keyframe policy calls for a keyframe, the block updates go into it rather
+     * than into a predicted frame. Should be called once per frame, even if
+     * there are no block updates.
+     * 
+     * @param time   Timestamp of the frame, in seconds since the beginning of the
+     *               animation.
+     * @param blocks The updated blocks. May be empty.
+     * @param world  The world to query. Should contain a block structure equal to
+     *               that in this exporter.
+     * @see #needsKeyframe(double, Set)
+     */
+    public void captureFrame(double time, Set<BlockPos> blocks, WorldAccess world) {
+        captureLoadedChunks(time, world);
+
+        if (needsKeyframe(time, blocks)) {
+            try {
+                captureKeyframe(time, blocks, world);
+                return;
+            } catch (IOException e) {
+                LOGGER.error("Unable to capture world keyframe.", e);
+            }
+        }
+
+        if (!blocks.isEmpty()) {
+            captureBlockUpdates(time, blocks, world);
+        }
+    }
+
+    /**
+     * Capture the block updates since the last frame. Sections where enough of
+     * the blocks changed are re-captured whole in a partial intracoded frame; the
+     * rest go into a predicted frame with the same timestamp.
+     * 
+     * @param time   Timestamp of the frames, in seconds since the beginning of the
+     *               animation.
+     * @param blocks The updated blocks.
+     * @param world  The world to query. Should contain a block structure equal to
+     *               that in this exporter.
+     * @return The captured frames, in the order they were added.
+     * @see VcapSettings#getPartialFrameThreshold()
+     */
+    public List<Frame> captureBlockUpdates(double time, Set<BlockPos> blocks, WorldAccess world) {
+        LongSet fullSections = findChangedSections(blocks);
+        if (fullSections.isEmpty()) {
+            return List.of(capturePFrame(time, blocks, world));
+        }
+
+        // Blocks outside the replaced sections are still captured individually,
+        // along with any neighbors across the boundary whose faces may have changed.
+        Set<BlockPos> remaining = new HashSet<>();
+        for (BlockPos pos : blocks) {
+            long section = ChunkSectionPos.toLong(pos);
+            if (!fullSections.contains(section)) {
+                remaining.add(pos);
+                continue;
+            }
+            for (Direction direction : Direction.values()) {
+                BlockPos adjacent = pos.offset(direction);
+                long adjacentSection = ChunkSectionPos.toLong(adjacent);
+                if (adjacentSection != section && !fullSections.contains(adjacentSection)) {
+                    remaining.add(adjacent);
+                }
+            }
+        }
+
+        synchronized (frames) {
+            Optional<Frame> previous = !frames.isEmpty() ? Optional.of(frames.get(frames.size() - 1)) : Optional.empty();
+            PartialIFrame partial = PartialIFrame.capture(new ChunkView.Wrapper(world), fullSections, time, previous,
+                    context);
+            frames.add(partial);
+            overlay.append(partial);
+            frames.set(frames.size() - 1, toJournal(partial));
+
+            if (remaining.isEmpty()) return List.of(partial);
+            return List.of(partial, capturePFrame(time, remaining, world));
+        }
+    }
+
+    /**
+     * Find the sections where enough blocks changed to re-capture them whole.
+     * @param blocks The updated blocks.
+     * @return The packed section positions.
+     */
+    private LongSet findChangedSections(Set<BlockPos> blocks) {
+        LongSet sections = new LongOpenHashSet();
+        double threshold = getSettings().getPartialFrameThreshold();
+        if (threshold <= 0) return sections;
+
+        int minBlocks = Math.max(1, (int) Math.ceil(threshold * 16 * 16 * 16));
+        if (blocks.size() < minBlocks) return sections;
+
+        Long2IntOpenHashMap counts = new Long2IntOpenHashMap();
+        for (BlockPos pos : blocks) {
+            if (!getSettings().isInExport(pos)) continue;
+            long section = ChunkSectionPos.toLong(pos);
+            if (counts.addTo(section, 1) + 1 == minBlocks) {
+                sections.add(section);
             }
-            isCaptureQueued = true;
         }
+        return sections;
+    }
+
+    /**
+     * Move a predicted or partial intracoded frame into the frame journal, if
+     * journaling is enabled. Must be called after the frame has been applied to
+     * the overlay, as journaled frames don't keep their fluid domains.
+     * 
+     * @param frame The frame.
+     * @return The frame to keep in the frame list in its place.
+     */
+    private Frame toJournal(Frame frame) {
+        if (!getSettings().journalFrames()) return frame;
+
+        Frame previous;
+        if (frame instanceof PFrame pFrame) {
+            previous = pFrame.getPrevious();
+        } else if (frame instanceof PartialIFrame partial) {
+            previous = partial.getPrevious();
+        } else {
+            return frame;
+        }
+
+        try {
+            if (journal == null) {
+                journal = new FrameJournal();
+            }
+            JournaledFrame journaled = journal.append(frame);
+            journaled.setPrevious(Optional.of(previous));
+            return journaled;
+        } catch (IOException e) {
+            LOGGER.error("Unable to write frame to journal. It will be kept in memory.", e);
+            return frame;
+        }
+    }
+
+    private Date captureStartTime;
+    @Nullable
+    private BlockUpdateBatcher updateBatcher;
+    private ClientBlockPlaceCallback listener = (pos, old, state, world) -> {
+        if (updateBatcher != null) updateBatcher.add(pos);
+    };
+
+    private Runnable tickListener = () -> {
+        double time = (new Date().getTime() - captureStartTime.getTime()) / 1000d;
+        captureFrame(time, updateBatcher != null ? updateBatcher.flush() : Set.of(), world);
     };
 
     /**
-     * Listen for and record changes to the world.
+     * Listen for and record changes to the world. Block updates are batched, and
+     * at most one predicted frame is captured per tick.
      * @param startTime Start time of the animation. Current time if null.
      */
     public void listen(@Nullable Date startTime) {
@@ -362,10 +811,19 @@ public class VcapExporter {
             captureStartTime = startTime;
         }
 
-        ReplayExportMod.getInstance().onBlockUpdated(listener);
+        if (updateBatcher == null) {
+            updateBatcher = new BlockUpdateBatcher(getSettings().getBounds());
+        }
+
+        // Not restricted to the world: it may be a wrapper that never matches the
+        // client world the updates come from.
+        ReplayExportMod.getInstance().onBlockUpdated(listener, null, getSettings().getBounds());
+        ReplayExportMod.getInstance().onClientTick(tickListener);
     }
 
     public void stopListen() {
         ReplayExportMod.getInstance().removeOnBlockUpdated(listener);
+        ReplayExportMod.getInstance().removeOnClientTick(tickListener);
+        stopBackfill();
     }
 }
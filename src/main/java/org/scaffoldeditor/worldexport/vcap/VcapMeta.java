@@ -21,6 +21,12 @@ public class VcapMeta {
      */
     public final Map<String, String> blockTypes = new HashMap<>();
 
+    /**
+     * A mapping of model IDs and the IDs of the models whose meshes they share.
+     * Models in this mapping don't have mesh files of their own.
+     */
+    public final Map<String, String> meshAliases = new HashMap<>();
+
     /**
      * Create a VCap metadata object.
      * @param numLayers The number of face layers in the file.
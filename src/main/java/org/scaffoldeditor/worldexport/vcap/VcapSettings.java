@@ -1,5 +1,10 @@
 package org.scaffoldeditor.worldexport.vcap;
 
+import javax.annotation.Nullable;
+
+import org.scaffoldeditor.worldexport.util.MeshFormat;
+
+import it.unimi.dsi.fastutil.longs.LongSet;
 import net.minecraft.util.math.BlockBox;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.ChunkSectionPos;
@@ -37,6 +42,19 @@ public class VcapSettings {
     private FluidMode fluidMode = FluidMode.STATIC;
     private BlockBox bounds = BlockBox.infinite();
     private int fluidChunkSize = 16;
+    private boolean copySnapshots = true;
+    private boolean journalFrames = true;
+    private double keyframeInterval = 0;
+    private int keyframeBlockThreshold = 0;
+    private double partialFrameThreshold = 0.125;
+    private double backfillWindow = 0;
+    private boolean bakeSections = false;
+    private boolean splitFaces = false;
+    private MeshFormat meshFormat = MeshFormat.OBJ;
+    private boolean deduplicateMeshes = true;
+    private int meshThreads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+    @Nullable
+    private LongSet visibleSections;
 
     @Deprecated
     public boolean shouldExportFluids() {
@@ -75,6 +93,204 @@ public class VcapSettings {
         return this;
     }
 
+    /**
+     * Whether intracoded frames should copy the section data of the world when
+     * capture starts, rather than reading the live world and tracking block
+     * updates as they happen.
+     */
+    public boolean copySnapshots() {
+        return copySnapshots;
+    }
+
+    public VcapSettings setCopySnapshots(boolean copySnapshots) {
+        this.copySnapshots = copySnapshots;
+        return this;
+    }
+
+    /**
+     * Whether predicted frames should be moved into a {@link FrameJournal} on disk
+     * as soon as they're captured, rather than kept in memory until the vcap is
+     * saved.
+     */
+    public boolean journalFrames() {
+        return journalFrames;
+    }
+
+    public VcapSettings setJournalFrames(boolean journalFrames) {
+        this.journalFrames = journalFrames;
+        return this;
+    }
+
+    /**
+     * The maximum time between intracoded frames, in seconds. If this much time
+     * has passed since the last one, a new one is captured so importers don't
+     * have to replay every predicted frame since the start of the vcap.
+     * <code>0</code> disables time-based keyframes.
+     */
+    public double getKeyframeInterval() {
+        return keyframeInterval;
+    }
+
+    public VcapSettings setKeyframeInterval(double keyframeInterval) {
+        this.keyframeInterval = keyframeInterval;
+        return this;
+    }
+
+    /**
+     * The number of blocks that may change before a new intracoded frame is
+     * captured. <code>0</code> disables change-based keyframes.
+     */
+    public int getKeyframeBlockThreshold() {
+        return keyframeBlockThreshold;
+    }
+
+    public VcapSettings setKeyframeBlockThreshold(int keyframeBlockThreshold) {
+        this.keyframeBlockThreshold = keyframeBlockThreshold;
+        return this;
+    }
+
+    /**
+     * The fraction of a section's blocks that must change at once for the whole
+     * section to be re-captured in a {@link PartialIFrame} rather than listed
+     * block-by-block in a predicted frame. <code>0</code> disables partial
+     * frames.
+     */
+    public double getPartialFrameThreshold() {
+        return partialFrameThreshold;
+    }
+
+    public VcapSettings setPartialFrameThreshold(double partialFrameThreshold) {
+        this.partialFrameThreshold = partialFrameThreshold;
+        return this;
+    }
+
+    /**
+     * How long after the first intracoded frame to keep waiting for chunks in the
+     * export bounds that weren't loaded when it was captured, in seconds. Each
+     * one is captured into a {@link PartialIFrame} as soon as it loads.
+     * <code>0</code> disables this, so unloaded chunks are left out of the vcap.
+     */
+    public double getBackfillWindow() {
+        return backfillWindow;
+    }
+
+    public VcapSettings setBackfillWindow(double backfillWindow) {
+        this.backfillWindow = backfillWindow;
+        return this;
+    }
+
+    /**
+     * Whether to bake the static geometry of each section into a single mesh,
+     * greedy meshing the full faces of its blocks. Blocks that are baked are
+     * still listed in the section's palette, but importers don't need to
+     * instance them.
+     * 
+     * @see SectionMesher
+     */
+    public boolean bakeSections() {
+        return bakeSections;
+    }
+
+    public VcapSettings setBakeSections(boolean bakeSections) {
+        this.bakeSections = bakeSections;
+        return this;
+    }
+
+    /**
+     * Whether to write each block state's model once with all of its faces,
+     * rather than once for every combination of visible faces. Each block
+     * stores which faces are visible alongside its model, and importers
+     * assemble the faces themselves.
+     * 
+     * @see SplitFaces
+     */
+    public boolean splitFaces() {
+        return splitFaces;
+    }
+
+    public VcapSettings setSplitFaces(boolean splitFaces) {
+        this.splitFaces = splitFaces;
+        return this;
+    }
+
+    /**
+     * The format to write the vcap's meshes in. Binary meshes are smaller and
+     * faster to read and write, but older importers can only read OBJ.
+     */
+    public MeshFormat getMeshFormat() {
+        return meshFormat;
+    }
+
+    public VcapSettings setMeshFormat(MeshFormat meshFormat) {
+        this.meshFormat = meshFormat;
+        return this;
+    }
+
+    /**
+     * Whether to write models with identical meshes only once. The other models
+     * are listed as aliases in the vcap's metadata.
+     * 
+     * @see org.scaffoldeditor.worldexport.util.MeshFingerprint
+     */
+    public boolean deduplicateMeshes() {
+        return deduplicateMeshes;
+    }
+
+    public VcapSettings setDeduplicateMeshes(boolean deduplicateMeshes) {
+        this.deduplicateMeshes = deduplicateMeshes;
+        return this;
+    }
+
+    /**
+     * The number of threads to generate and encode meshes on when the vcap is
+     * saved. <code>1</code> writes them all on the saving thread. The output is
+     * the same either way.
+     * 
+     * @see MeshBaker
+     */
+    public int getMeshThreads() {
+        return meshThreads;
+    }
+
+    public VcapSettings setMeshThreads(int meshThreads) {
+        this.meshThreads = meshThreads;
+        return this;
+    }
+
+    /**
+     * The sections that can be seen from the camera, as packed section positions.
+     * If set, sections in the bounds that aren't in this set are left out of the
+     * vcap entirely, along with any block updates inside them.
+     * <code>null</code> exports every section in the bounds.
+     * 
+     * @see SectionVisibility
+     */
+    @Nullable
+    public LongSet getVisibleSections() {
+        return visibleSections;
+    }
+
+    public VcapSettings setVisibleSections(@Nullable LongSet visibleSections) {
+        this.visibleSections = visibleSections;
+        return this;
+    }
+
+    /**
+     * Check if a section is within the export region and visible.
+     * @param x Section X.
+     * @param y Section Y.
+     * @param z Section Z.
+     * @return Should the section be exported?
+     */
+    public boolean isSectionInExport(int x, int y, int z) {
+        if (x < bounds.getMinX() || x > bounds.getMaxX()
+                || y < bounds.getMinY() || y > bounds.getMaxY()
+                || z < bounds.getMinZ() || z > bounds.getMaxZ()) {
+            return false;
+        }
+        return visibleSections == null || visibleSections.contains(ChunkSectionPos.asLong(x, y, z));
+    }
+
     public BlockBox getBounds() {
         return bounds;
     }
@@ -89,6 +305,7 @@ public class VcapSettings {
      * @return Is it in the export region?
      */
     public boolean isInExport(BlockPos pos) {
-        return bounds.contains(ChunkSectionPos.from(pos));
+        return isSectionInExport(ChunkSectionPos.getSectionCoord(pos.getX()),
+                ChunkSectionPos.getSectionCoord(pos.getY()), ChunkSectionPos.getSectionCoord(pos.getZ()));
     }
 }
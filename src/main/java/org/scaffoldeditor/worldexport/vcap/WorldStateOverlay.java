@@ -0,0 +1,265 @@
+package org.scaffoldeditor.worldexport.vcap;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+import javax.annotation.Nullable;
+
+import org.scaffoldeditor.worldexport.vcap.IFrame.IndexedSection;
+import org.scaffoldeditor.worldexport.vcap.fluid.FluidDomain;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtElement;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkSectionPos;
+
+/**
+ * The state of the world as of the last frame in a vcap, materialized so it can
+ * be queried without walking back through every predicted frame. It consists of
+ * the most recent intracoded frame plus a sparse map of every block that's been
+ * changed by a predicted frame since, and every section that's been replaced
+ * by a partial intracoded frame.
+ * <p>
+ * All methods are thread-safe.
+ */
+public class WorldStateOverlay implements ModelLookup {
+
+    private Frame base = Frame.EMPTY;
+    private final Long2ObjectMap<String> models = new Long2ObjectOpenHashMap<>();
+    private final Long2ObjectMap<FluidDomain> fluids = new Long2ObjectOpenHashMap<>();
+    private final Long2ObjectMap<IndexedSection> sections = new Long2ObjectOpenHashMap<>();
+    private final LongSet dirtySections = new LongOpenHashSet();
+
+    /**
+     * Discard all changes and start over from a new base frame.
+     * @param base The frame to base the state on. Usually an intracoded frame.
+     */
+    public synchronized void reset(Frame base) {
+        // The old base won't be looked up anymore; don't hold on to its sections.
+        if (this.base != base && this.base instanceof IFrame oldBase) {
+            oldBase.clearSectionCache();
+        }
+        this.base = base;
+        models.clear();
+        fluids.clear();
+        sections.clear();
+        dirtySections.clear();
+    }
+
+    /**
+     * Apply the changes in a predicted frame to the state.
+     * @param frame The frame to apply.
+     */
+    public synchronized void apply(PFrame frame) {
+        for (Map.Entry<BlockPos, String> entry : frame.getUpdated().entrySet()) {
+            models.put(entry.getKey().asLong(), entry.getValue());
+            dirtySections.add(ChunkSectionPos.toLong(entry.getKey()));
+        }
+        for (Map.Entry<BlockPos, FluidDomain> entry : frame.getFluids().entrySet()) {
+            fluids.put(entry.getKey().asLong(), entry.getValue());
+            dirtySections.add(ChunkSectionPos.toLong(entry.getKey()));
+        }
+    }
+
+    /**
+     * Replace entire sections of the state.
+     * @param replaced The new sections, keyed by packed section position.
+     * @param newFluids The fluid domains in the new sections.
+     */
+    private void applySections(Long2ObjectMap<IndexedSection> replaced, Map<BlockPos, FluidDomain> newFluids) {
+        // Blocks changed before now are overwritten by the new sections.
+        models.keySet().removeIf((long pos) -> replaced.containsKey(ChunkSectionPos.fromBlockPos(pos)));
+        fluids.keySet().removeIf((long pos) -> replaced.containsKey(ChunkSectionPos.fromBlockPos(pos)));
+
+        sections.putAll(replaced);
+        dirtySections.addAll(replaced.keySet());
+        for (Map.Entry<BlockPos, FluidDomain> entry : newFluids.entrySet()) {
+            fluids.put(entry.getKey().asLong(), entry.getValue());
+        }
+    }
+
+    /**
+     * Apply a frame that was added to the end of the vcap.
+     * @param frame The frame.
+     */
+    public synchronized void append(Frame frame) {
+        if (frame instanceof PFrame pFrame) {
+            apply(pFrame);
+        } else if (frame instanceof JournaledFrame journaled && frame.getFrameType() == Frame.PREDICTED_TYPE) {
+            for (Long2ObjectMap.Entry<String> entry : journaled.readUpdates().long2ObjectEntrySet()) {
+                models.put(entry.getLongKey(), entry.getValue());
+                dirtySections.add(ChunkSectionPos.fromBlockPos(entry.getLongKey()));
+            }
+        } else if (frame instanceof PartialIFrame partial) {
+            applySections(partial.getSections(), partial.getFluids());
+        } else if (frame.getFrameType() == Frame.PARTIAL_INTRACODED_TYPE) {
+            applySections(PartialIFrame.decodeSections(
+                    frame.getFrameData().getList("sections", NbtElement.COMPOUND_TYPE)), Map.of());
+        } else {
+            reset(frame);
+        }
+    }
+
+    /**
+     * Rebuild the state from scratch. Used when a frame is inserted somewhere
+     * other than the end of the vcap.
+     * 
+     * @param frames Every frame in the vcap, in order.
+     */
+    public synchronized void rebuild(List<? extends Frame> frames) {
+        int start = 0;
+        for (int i = frames.size() - 1; i >= 0; i--) {
+            if (frames.get(i).getFrameType() == Frame.INTRACODED_TYPE) {
+                start = i;
+                break;
+            }
+        }
+
+        reset(Frame.EMPTY);
+        for (int i = start; i < frames.size(); i++) {
+            append(frames.get(i));
+        }
+    }
+
+    /**
+     * Get the frame the state is based on.
+     * @return The most recent intracoded frame, or an empty frame if there is none.
+     */
+    public synchronized Frame getBase() {
+        return base;
+    }
+
+    /**
+     * Get the number of blocks that have changed since the base frame.
+     * @return Changed block count.
+     */
+    public synchronized int getChangedBlocks() {
+        return models.size() + sections.size() * 16 * 16 * 16;
+    }
+
+    /**
+     * Get the sections that contain changes since the base frame.
+     * @return A copy of the packed section positions.
+     */
+    public synchronized LongSet getDirtySections() {
+        return new LongOpenHashSet(dirtySections);
+    }
+
+    /**
+     * Write a section of the current state in the intracoded frame format, for
+     * sections that have changed but can't be captured from the world again
+     * because they've been unloaded. The blocks are those of the base frame with
+     * every change since applied. Block colors are carried over from the base
+     * frame, as there's no world to sample them from, and the section's geometry
+     * isn't baked.
+     * 
+     * @param sectionPos The packed section position.
+     * @param fallback   Supplies the model of blocks whose state isn't known, such
+     *                   as those in sections the base frame doesn't have.
+     * @return The section tag.
+     */
+    public synchronized NbtCompound writeSection(long sectionPos, Supplier<String> fallback) {
+        int sectionX = ChunkSectionPos.unpackX(sectionPos);
+        int sectionY = ChunkSectionPos.unpackY(sectionPos);
+        int sectionZ = ChunkSectionPos.unpackZ(sectionPos);
+
+        NbtCompound baseSection;
+        try {
+            baseSection = base instanceof IFrame iFrame ? iFrame.readSection(sectionPos) : null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        int[] baseColors = readColors(baseSection);
+
+        SectionPalette palette = new SectionPalette();
+        int[] blocks = new int[16 * 16 * 16];
+        byte[] colors = new byte[16 * 16 * 16];
+        String fallbackModel = null;
+
+        BlockPos.Mutable pos = new BlockPos.Mutable();
+        for (int y = 0; y < 16; y++) {
+            for (int z = 0; z < 16; z++) {
+                for (int x = 0; x < 16; x++) {
+                    pos.set(sectionX * 16 + x, sectionY * 16 + y, sectionZ * 16 + z);
+                    int index = (y * 16 + z) * 16 + x;
+
+                    String model;
+                    try {
+                        model = modelAt(pos);
+                    } catch (IndexOutOfBoundsException e) {
+                        if (fallbackModel == null) fallbackModel = fallback.get();
+                        model = fallbackModel;
+                    }
+                    blocks[index] = palette.model(model);
+                    colors[index] = (byte) palette.color(baseColors[index]);
+                }
+            }
+        }
+
+        NbtCompound tag = new NbtCompound();
+        tag.putInt("x", sectionX);
+        tag.putInt("y", sectionY);
+        tag.putInt("z", sectionZ);
+        palette.writeTo(tag, blocks, colors);
+        return tag;
+    }
+
+    /**
+     * Read the color of every block in a section tag.
+     * @param section The section tag, if there is one.
+     * @return The colors, packed as <code>0xRRGGBB</code>. White if there's no
+     *         section.
+     */
+    private static int[] readColors(@Nullable NbtCompound section) {
+        int[] colors = new int[16 * 16 * 16];
+        Arrays.fill(colors, 0xFFFFFF);
+        if (section == null) return colors;
+
+        byte[] palette = section.getByteArray("colorPalette");
+        if (palette.length < 3) return colors;
+
+        // Uniform sections don't store per-block colors.
+        if (!section.contains("colors", NbtElement.BYTE_ARRAY_TYPE)) {
+            Arrays.fill(colors, readColor(palette, 0));
+            return colors;
+        }
+        byte[] indices = section.getByteArray("colors");
+        for (int i = 0; i < colors.length && i < indices.length; i++) {
+            colors[i] = readColor(palette, indices[i] & 255);
+        }
+        return colors;
+    }
+
+    private static int readColor(byte[] palette, int index) {
+        return (palette[index] & 255) << 16 | (palette[index + 1] & 255) << 8 | (palette[index + 2] & 255);
+    }
+
+    @Override
+    public synchronized String modelAt(BlockPos pos) throws IndexOutOfBoundsException {
+        String model = models.get(pos.asLong());
+        if (model != null) return model;
+
+        IndexedSection section = sections.get(ChunkSectionPos.toLong(pos));
+        if (section != null) {
+            return section.modelAt(pos.getX() & 15, pos.getY() & 15, pos.getZ() & 15);
+        }
+        return base.modelAt(pos);
+    }
+
+    @Override
+    public synchronized Optional<FluidDomain> fluidAt(BlockPos pos) {
+        FluidDomain fluid = fluids.get(pos.asLong());
+        if (fluid != null) return Optional.of(fluid);
+        if (sections.containsKey(ChunkSectionPos.toLong(pos))) return Optional.empty();
+        return base.fluidAt(pos);
+    }
+}
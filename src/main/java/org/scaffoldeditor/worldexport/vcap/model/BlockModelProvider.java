@@ -14,19 +14,39 @@ import net.minecraft.util.math.random.Random;
 public class BlockModelProvider implements ModelProvider {
 
     private final BlockModelEntry entry;
+    private final boolean splitFaces;
     Random random = Random.create();
 
     public BlockModelProvider(BlockModelEntry entry) {
+        this(entry, false);
+    }
+
+    /**
+     * Create a block model provider.
+     * @param entry      The model entry.
+     * @param splitFaces Write every face of the model into its own face group,
+     *                   ignoring the entry's visible faces.
+     */
+    public BlockModelProvider(BlockModelEntry entry, boolean splitFaces) {
         this.entry = entry;
+        this.splitFaces = splitFaces;
     }
 
     public final BlockModelEntry getEntry() {
         return entry;
     }
 
+    /**
+     * Whether this model's faces are split into groups.
+     * @return If the model is written with every face.
+     */
+    public final boolean splitsFaces() {
+        return splitFaces;
+    }
+
     @Override
     public ModelInfo writeMesh() {
-        return MeshWriter.writeBlockMesh(entry, random);
+        return MeshWriter.writeBlockMesh(entry, random, splitFaces);
     }
     
     @Override
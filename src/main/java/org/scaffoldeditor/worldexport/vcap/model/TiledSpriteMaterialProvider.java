@@ -0,0 +1,65 @@
+package org.scaffoldeditor.worldexport.vcap.model;
+
+import java.util.function.BiConsumer;
+
+import org.scaffoldeditor.worldexport.mat.Material;
+import org.scaffoldeditor.worldexport.mat.MaterialUtils;
+import org.scaffoldeditor.worldexport.mat.ReplayTexture;
+import org.scaffoldeditor.worldexport.mat.ReplayTexture.NativeImageReplayTexture;
+import org.scaffoldeditor.worldexport.mixins.SpriteAccessor;
+
+import net.minecraft.client.texture.Sprite;
+
+/**
+ * A material that uses a single sprite as its own texture rather than the world
+ * atlas. UVs outside of <code>0-1</code> repeat the sprite, so faces that were
+ * merged across several blocks can still show one copy of it per block.
+ * Animated sprites aren't supported.
+ */
+public record TiledSpriteMaterialProvider(Sprite sprite, boolean transparent, boolean tinted, boolean emissive) implements MaterialProvider {
+
+    @Override
+    public Material writeMaterial(BiConsumer<String, ReplayTexture> textureConsumer) {
+        String texName = getTexName();
+        Material material = new Material();
+
+        material.setColor(texName);
+        material.setRoughness(1);
+        material.setTransparent(transparent);
+
+        if (tinted) {
+            material.addOverride("color2", Material.DEFAULT_OVERRIDES.VERTEX_COLOR);
+        }
+
+        if (emissive) {
+            material.setEmission(texName);
+            material.setEmissionStrength(2);
+        }
+
+        textureConsumer.accept(texName,
+                new NativeImageReplayTexture(((SpriteAccessor) sprite.getContents()).getImages()[0]));
+
+        return material;
+    }
+
+    /**
+     * Get the name of the sprite's texture.
+     * @return Texture name, without extension.
+     */
+    public String getTexName() {
+        return MaterialUtils.getTexName(sprite.getContents().getId());
+    }
+
+    /**
+     * Get the name this material will save with.
+     * @return Material name.
+     */
+    public String getName() {
+        StringBuilder builder = new StringBuilder(getTexName());
+        builder.append("_tiled");
+        if (transparent) builder.append("_trans");
+        if (tinted) builder.append("_tinted");
+        if (emissive) builder.append("_emit");
+        return builder.toString();
+    }
+}
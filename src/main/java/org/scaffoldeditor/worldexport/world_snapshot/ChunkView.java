@@ -1,6 +1,9 @@
 package org.scaffoldeditor.worldexport.world_snapshot;
 
+import javax.annotation.Nullable;
+
 import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
 import net.minecraft.block.entity.BlockEntity;
 import net.minecraft.fluid.FluidState;
 import net.minecraft.util.math.BlockPos;
@@ -10,6 +13,9 @@ import net.minecraft.world.BlockRenderView;
 import net.minecraft.world.WorldAccess;
 import net.minecraft.world.biome.ColorResolver;
 import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.ChunkSection;
+import net.minecraft.world.chunk.ChunkStatus;
+import net.minecraft.world.chunk.PalettedContainer;
 import net.minecraft.world.chunk.light.LightingProvider;
 
 /**
@@ -26,6 +32,37 @@ public interface ChunkView extends BlockRenderView {
         return isSectionLoaded(pos.getX(), pos.getY(), pos.getZ());
     }
 
+    /**
+     * Get direct access to a loaded chunk, if this view is backed by one. Used to
+     * copy section data when taking a snapshot.
+     * 
+     * @param x Chunk X.
+     * @param z Chunk Z.
+     * @return The chunk, or <code>null</code> if it's not loaded or this view
+     *         doesn't expose chunks.
+     */
+    @Nullable
+    default Chunk getLoadedChunk(int x, int z) {
+        return null;
+    }
+
+    /**
+     * If every block in a section is known to share the same state, get that
+     * state. This is a cheap check based on the section's palette, so a
+     * <code>null</code> return doesn't guarantee the section has more than one
+     * state.
+     * 
+     * @param x Section X.
+     * @param y Section Y.
+     * @param z Section Z.
+     * @return The section's only block state, or <code>null</code> if it has (or
+     *         may have) more than one.
+     */
+    @Nullable
+    default BlockState getUniformState(int x, int y, int z) {
+        return null;
+    }
+
     /**
      * Because this is a modded interface, some implementations may wrap another
      * implementation. This method retrieves the base implementation for equality
@@ -100,6 +137,28 @@ public interface ChunkView extends BlockRenderView {
             return chunk.getSection(chunk.sectionCoordToIndex(y)) != null;
         }
 
+        @Override
+        @Nullable
+        public Chunk getLoadedChunk(int x, int z) {
+            return base.getChunk(x, z, ChunkStatus.FULL, false);
+        }
+
+        @Override
+        @Nullable
+        public BlockState getUniformState(int x, int y, int z) {
+            Chunk chunk = getLoadedChunk(x, z);
+            if (chunk == null) return null;
+
+            int index = chunk.sectionCoordToIndex(y);
+            if (index < 0 || index >= chunk.getSectionArray().length) return null;
+            ChunkSection section = chunk.getSection(index);
+            if (section.isEmpty()) return Blocks.AIR.getDefaultState();
+
+            PalettedContainer<BlockState> states = section.getBlockStateContainer();
+            BlockState first = states.get(0, 0, 0);
+            return states.hasAny(state -> state != first) ? null : first;
+        }
+
         @Override
         public BlockRenderView getBase() {
             return base;
@@ -0,0 +1,168 @@
+package org.scaffoldeditor.worldexport.world_snapshot;
+
+import java.util.Arrays;
+
+import javax.annotation.Nullable;
+
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.util.math.BlockBox;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.ChunkSection;
+import net.minecraft.world.chunk.PalettedContainer;
+
+/**
+ * A world snapshot that copies the block data of every section in a region up
+ * front. Unlike a regular {@link WorldSnapshot}, it doesn't need to be notified
+ * of block updates, and reading from it never touches the live world.
+ * <p>
+ * Must be created on the thread that owns the world (usually the client
+ * thread). Once created, it may be read from any thread.
+ */
+public class CopiedWorldSnapshot extends WorldSnapshot {
+    private static final BlockState AIR = Blocks.AIR.getDefaultState();
+
+    /**
+     * The largest number of section columns we're willing to copy before falling
+     * back to a tracking snapshot.
+     */
+    public static final int MAX_COLUMNS = 1 << 16;
+
+    private final int minX;
+    private final int minY;
+    private final int minZ;
+
+    private final int sizeX;
+    private final int sizeY;
+    private final int sizeZ;
+
+    /**
+     * Block data of each section, indexed <code>(x * sizeY + y) * sizeZ + z</code>.
+     * Empty sections are <code>null</code>.
+     */
+    private final PalettedContainer<BlockState>[] sections;
+    private final boolean[] loadedChunks;
+
+    /**
+     * Copy a region of a world.
+     *
+     * @param world  World to copy. Must expose its chunks through
+     *               {@link ChunkView#getLoadedChunk}.
+     * @param bounds The region to copy, in section coordinates. A one-section
+     *               border is added so blocks on the edge can be culled properly.
+     */
+    @SuppressWarnings("unchecked")
+    protected CopiedWorldSnapshot(ChunkView world, BlockBox bounds) {
+        super(world);
+        minX = bounds.getMinX() - 1;
+        minZ = bounds.getMinZ() - 1;
+        // Y may be unbounded, so be careful of overflow.
+        minY = (int) Math.max(bounds.getMinY() - 1L, world.getBottomSectionCoord());
+        int maxY = (int) Math.min(bounds.getMaxY() + 1L, world.getTopSectionCoord() - 1);
+
+        sizeX = bounds.getBlockCountX() + 2;
+        sizeZ = bounds.getBlockCountZ() + 2;
+        sizeY = Math.max(maxY - minY + 1, 0);
+
+        sections = new PalettedContainer[sizeX * sizeY * sizeZ];
+        loadedChunks = new boolean[sizeX * sizeZ];
+
+        for (int x = 0; x < sizeX; x++) {
+            for (int z = 0; z < sizeZ; z++) {
+                Chunk chunk = world.getLoadedChunk(minX + x, minZ + z);
+                if (chunk == null) continue;
+                loadedChunks[x * sizeZ + z] = true;
+
+                for (int y = 0; y < sizeY; y++) {
+                    ChunkSection section = chunk.getSection(chunk.sectionCoordToIndex(minY + y));
+                    if (section == null || section.isEmpty()) continue;
+                    sections[(x * sizeY + y) * sizeZ + z] = section.getBlockStateContainer().copy();
+                }
+            }
+        }
+    }
+
+    /**
+     * Check whether a region is small enough to be copied.
+     *
+     * @param bounds The region, in section coordinates.
+     * @return If a copied snapshot can be made of it.
+     */
+    public static boolean canCopy(BlockBox bounds) {
+        long sizeX = (long) bounds.getMaxX() - bounds.getMinX() + 3;
+        long sizeZ = (long) bounds.getMaxZ() - bounds.getMinZ() + 3;
+        return sizeX * sizeZ <= MAX_COLUMNS;
+    }
+
+    @Override
+    public void onBlockUpdated(BlockPos pos, @Nullable BlockState oldState, BlockState state) {
+        // The copy is immune to updates.
+    }
+
+    @Override
+    public void invalidate() {
+        super.invalidate();
+        // Let the copied sections be collected even if the snapshot is still referenced.
+        Arrays.fill(sections, null);
+    }
+
+    @Override
+    public BlockState getBlockState(BlockPos pos) {
+        return getBlockState(pos.getX(), pos.getY(), pos.getZ());
+    }
+
+    /**
+     * Get a block state without needing a block pos.
+     * @param x Block X.
+     * @param y Block Y.
+     * @param z Block Z.
+     * @return The block state. Air if the block is outside the copied region.
+     */
+    public BlockState getBlockState(int x, int y, int z) {
+        if (!isValid()) {
+            throw new IllegalStateException("This snapshot has been invalidated.");
+        }
+        int sx = (x >> 4) - minX;
+        int sy = (y >> 4) - minY;
+        int sz = (z >> 4) - minZ;
+        if (sx < 0 || sx >= sizeX || sy < 0 || sy >= sizeY || sz < 0 || sz >= sizeZ) {
+            return AIR;
+        }
+
+        PalettedContainer<BlockState> section = sections[(sx * sizeY + sy) * sizeZ + sz];
+        return section != null ? section.get(x & 15, y & 15, z & 15) : AIR;
+    }
+
+    @Override
+    @Nullable
+    public BlockState getUniformState(int x, int y, int z) {
+        int sx = x - minX;
+        int sy = y - minY;
+        int sz = z - minZ;
+        if (sx < 0 || sx >= sizeX || sy < 0 || sy >= sizeY || sz < 0 || sz >= sizeZ) {
+            return null;
+        }
+
+        PalettedContainer<BlockState> section = sections[(sx * sizeY + sy) * sizeZ + sz];
+        if (section == null) return AIR;
+
+        // Only checks the palette, so a palette with stale entries reads as non-uniform.
+        BlockState first = section.get(0, 0, 0);
+        return section.hasAny(state -> state != first) ? null : first;
+    }
+
+    @Override
+    public boolean isChunkLoaded(int x, int z) {
+        int cx = x - minX;
+        int cz = z - minZ;
+        if (cx < 0 || cx >= sizeX || cz < 0 || cz >= sizeZ) return false;
+        return loadedChunks[cx * sizeZ + cz];
+    }
+
+    @Override
+    public boolean isSectionLoaded(int x, int y, int z) {
+        int sy = y - minY;
+        return sy >= 0 && sy < sizeY && isChunkLoaded(x, z);
+    }
+}
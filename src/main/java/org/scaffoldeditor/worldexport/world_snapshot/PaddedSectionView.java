@@ -0,0 +1,138 @@
+package org.scaffoldeditor.worldexport.world_snapshot;
+
+import javax.annotation.Nullable;
+
+import net.minecraft.block.BlockState;
+import net.minecraft.block.entity.BlockEntity;
+import net.minecraft.fluid.FluidState;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Direction;
+import net.minecraft.world.BlockRenderView;
+import net.minecraft.world.biome.ColorResolver;
+import net.minecraft.world.chunk.light.LightingProvider;
+
+/**
+ * A block view of a single section and the blocks immediately surrounding it.
+ * The block states of the section plus a one-block border are read from the
+ * underlying world once, up front, so face culling (which looks at all six
+ * neighbors of every block) doesn't have to go back to the world for each
+ * lookup.
+ * <p>
+ * Block states outside the padded region, as well as everything that isn't a
+ * block state (biome colors, lighting, block entities), are forwarded to the
+ * underlying world.
+ */
+public class PaddedSectionView implements BlockRenderView {
+
+    /**
+     * The width of the padded region along each axis.
+     */
+    public static final int SIZE = 18;
+
+    private final BlockRenderView world;
+    private final BlockState[] states = new BlockState[SIZE * SIZE * SIZE];
+
+    private final int originX;
+    private final int originY;
+    private final int originZ;
+
+    /**
+     * Create a padded view of a section.
+     *
+     * @param world        The world to read from.
+     * @param sectionX     Section X.
+     * @param sectionY     Section Y.
+     * @param sectionZ     Section Z.
+     * @param uniformState If the section is known to consist entirely of one
+     *                     block state, that state. Only the border will be read
+     *                     from the world.
+     */
+    public PaddedSectionView(BlockRenderView world, int sectionX, int sectionY, int sectionZ,
+            @Nullable BlockState uniformState) {
+        this.world = world;
+        this.originX = sectionX * 16 - 1;
+        this.originY = sectionY * 16 - 1;
+        this.originZ = sectionZ * 16 - 1;
+
+        BlockPos.Mutable pos = new BlockPos.Mutable();
+        for (int y = 0; y < SIZE; y++) {
+            for (int z = 0; z < SIZE; z++) {
+                for (int x = 0; x < SIZE; x++) {
+                    boolean border = x == 0 || x == SIZE - 1 || y == 0 || y == SIZE - 1 || z == 0 || z == SIZE - 1;
+                    if (uniformState != null && !border) {
+                        states[(y * SIZE + z) * SIZE + x] = uniformState;
+                    } else {
+                        pos.set(originX + x, originY + y, originZ + z);
+                        states[(y * SIZE + z) * SIZE + x] = world.getBlockState(pos);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Create a padded view of a section.
+     *
+     * @param world    The world to read from.
+     * @param sectionX Section X.
+     * @param sectionY Section Y.
+     * @param sectionZ Section Z.
+     */
+    public PaddedSectionView(BlockRenderView world, int sectionX, int sectionY, int sectionZ) {
+        this(world, sectionX, sectionY, sectionZ, null);
+    }
+
+    /**
+     * Get the world this view reads from.
+     * @return The underlying world.
+     */
+    public BlockRenderView getWorld() {
+        return world;
+    }
+
+    @Override
+    public BlockState getBlockState(BlockPos pos) {
+        int x = pos.getX() - originX;
+        int y = pos.getY() - originY;
+        int z = pos.getZ() - originZ;
+        if (x < 0 || x >= SIZE || y < 0 || y >= SIZE || z < 0 || z >= SIZE) {
+            return world.getBlockState(pos);
+        }
+        return states[(y * SIZE + z) * SIZE + x];
+    }
+
+    @Override
+    public FluidState getFluidState(BlockPos pos) {
+        return getBlockState(pos).getFluidState();
+    }
+
+    @Override
+    public BlockEntity getBlockEntity(BlockPos pos) {
+        return world.getBlockEntity(pos);
+    }
+
+    @Override
+    public int getHeight() {
+        return world.getHeight();
+    }
+
+    @Override
+    public int getBottomY() {
+        return world.getBottomY();
+    }
+
+    @Override
+    public float getBrightness(Direction direction, boolean shaded) {
+        return world.getBrightness(direction, shaded);
+    }
+
+    @Override
+    public LightingProvider getLightingProvider() {
+        return world.getLightingProvider();
+    }
+
+    @Override
+    public int getColor(BlockPos pos, ColorResolver colorResolver) {
+        return world.getColor(pos, colorResolver);
+    }
+}
@@ -30,7 +30,7 @@ public class WorldSnapshot implements ChunkView {
     protected final Set<ChunkPos> bannedChunks = Collections.newSetFromMap(new ConcurrentHashMap<>());
     protected final Set<ChunkSectionPos> bannedSections = Collections.newSetFromMap(new ConcurrentHashMap<>());
 
-    private boolean isValid = true;
+    private volatile boolean isValid = true;
 
     protected WorldSnapshot(ChunkView world) {
         this.world = world;
@@ -45,6 +45,8 @@ public class WorldSnapshot implements ChunkView {
     }
 
     public void onBlockUpdated(BlockPos pos, @Nullable BlockState oldState, BlockState state) {
+        // Nobody will read the backup anymore.
+        if (!isValid) return;
         pos = new BlockPos(pos); // In case this was mutable.
         if (state.equals(oldState)) return;
         ChunkPos chunkPos = new ChunkPos(pos);
@@ -75,7 +77,9 @@ public class WorldSnapshot implements ChunkView {
         if (!isValid) {
             throw new IllegalStateException("This snapshot has been invalidated.");
         }
-        return overwrittenStates.getOrDefault(pos, world.getBlockState(pos));
+        // Don't use getOrDefault: it would evaluate the world lookup every time.
+        BlockState overwritten = overwrittenStates.get(pos);
+        return overwritten != null ? overwritten : world.getBlockState(pos);
     }
 
     @Override
@@ -90,8 +94,24 @@ public class WorldSnapshot implements ChunkView {
         return isValid;
     }
 
+    /**
+     * Invalidate this snapshot and discard the block updates it's tracked. Any
+     * further attempt to read from it will fail.
+     */
     public void invalidate() {
         isValid = false;
+        overwrittenStates.clear();
+        bannedChunks.clear();
+        bannedSections.clear();
+    }
+
+    /**
+     * Get the number of block states this snapshot has backed up because they
+     * were overwritten after it was taken.
+     * @return Overwritten block count.
+     */
+    public int getTrackedOverwrites() {
+        return overwrittenStates.size();
     }
 
     @Override
@@ -111,13 +131,13 @@ public class WorldSnapshot implements ChunkView {
 
     @Override
     public boolean isChunkLoaded(int x, int z) {
-        if (bannedChunks.contains(new ChunkPos(x, z))) return false;
+        if (!bannedChunks.isEmpty() && bannedChunks.contains(new ChunkPos(x, z))) return false;
         return world.isChunkLoaded(x, z);
     }
 
     @Override
     public boolean isSectionLoaded(int x, int y, int z) {
-        if (bannedSections.contains(ChunkSectionPos.from(x, y, z))) return false;
+        if (!bannedSections.isEmpty() && bannedSections.contains(ChunkSectionPos.from(x, y, z))) return false;
         return world.isSectionLoaded(x, y, z);
     }
 }
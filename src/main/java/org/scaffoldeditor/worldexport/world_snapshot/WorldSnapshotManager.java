@@ -1,24 +1,45 @@
 package org.scaffoldeditor.worldexport.world_snapshot;
 
-import java.util.Collections;
-import java.util.Set;
-import java.util.WeakHashMap;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import javax.annotation.Nullable;
 
+import org.scaffoldeditor.worldexport.BlockUpdateDispatcher;
 import org.scaffoldeditor.worldexport.ClientBlockPlaceCallback;
 import org.scaffoldeditor.worldexport.ReplayExportMod;
 
 import net.minecraft.block.BlockState;
+import net.minecraft.util.math.BlockBox;
 import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.BlockRenderView;
 import net.minecraft.world.World;
 import net.minecraft.world.WorldAccess;
 
 public final class WorldSnapshotManager implements ClientBlockPlaceCallback {
-    private final Set<WorldSnapshot> snapshots = Collections.newSetFromMap(new WeakHashMap<>());
 
-    public WorldSnapshotManager() {
-        ClientBlockPlaceCallback.EVENT.register(this);
+    /**
+     * A snapshot that's tracking block updates. Snapshots are only weakly
+     * referenced, so one that's never released can still be collected.
+     */
+    private static record Tracked(WeakReference<WorldSnapshot> snapshot, BlockRenderView world) {}
+
+    private static final Tracked[] NONE = new Tracked[0];
+
+    /**
+     * Replaced wholesale whenever a snapshot is added or removed, so block updates
+     * can be dispatched without locking.
+     */
+    private volatile Tracked[] tracked = NONE;
+
+    /**
+     * Create a snapshot manager.
+     * @param dispatcher The dispatcher to receive block updates from.
+     */
+    public WorldSnapshotManager(BlockUpdateDispatcher dispatcher) {
+        dispatcher.register(this);
     }
 
     /**
@@ -42,10 +63,24 @@ public final class WorldSnapshotManager implements ClientBlockPlaceCallback {
      */
     public synchronized WorldSnapshot snapshot(ChunkView world) {
         WorldSnapshot snapshot = new WorldSnapshot(world);
-        snapshots.add(snapshot);
+        List<Tracked> next = liveEntries();
+        next.add(new Tracked(new WeakReference<>(snapshot), world.getBase()));
+        tracked = next.toArray(Tracked[]::new);
         return snapshot;
     }
 
+    /**
+     * Get the entries whose snapshots haven't been collected.
+     * @return A mutable copy.
+     */
+    private List<Tracked> liveEntries() {
+        List<Tracked> entries = new ArrayList<>(tracked.length + 1);
+        for (Tracked entry : tracked) {
+            if (entry.snapshot().get() != null) entries.add(entry);
+        }
+        return entries;
+    }
+
     /**
      * Take a "snapshot" of a world in time. This snapshot does <i>not</i>
      * copy the block data. Instead, it sets up a thread-safe view of it that
@@ -59,18 +94,95 @@ public final class WorldSnapshotManager implements ClientBlockPlaceCallback {
         return snapshot(new ChunkView.Wrapper(world));
     }
 
+    /**
+     * Take a snapshot of a region of the world by copying its block data. Unlike
+     * {@link #snapshot(ChunkView)}, the resulting snapshot doesn't need to track
+     * block updates, so it isn't registered with this manager. If the region is
+     * too large to copy, or the world isn't a direct wrapper around a world, a regular
+     * tracking snapshot is returned instead.
+     * <p>
+     * Must be called on the thread that owns the world.
+     * 
+     * @param world  The world to capture.
+     * @param bounds The region to capture, in section coordinates.
+     * @return The snapshot.
+     */
+    public WorldSnapshot copy(ChunkView world, BlockBox bounds) {
+        if (!(world instanceof ChunkView.Wrapper) || !CopiedWorldSnapshot.canCopy(bounds)) {
+            return snapshot(world);
+        }
+        return new CopiedWorldSnapshot(world, bounds);
+    }
+
     @Override
-    public synchronized void place(BlockPos pos, @Nullable BlockState oldState, BlockState state, World world) {
-        snapshots.forEach(snapshot -> {
-            if (world.equals(snapshot.getWorld().getBase())) snapshot.onBlockUpdated(pos, oldState, state);
-        });
+    public void place(BlockPos pos, @Nullable BlockState oldState, BlockState state, World world) {
+        for (Tracked entry : tracked) {
+            if (entry.world() != world) continue;
+            WorldSnapshot snapshot = entry.snapshot().get();
+            if (snapshot != null) snapshot.onBlockUpdated(pos, oldState, state);
+        }
+    }
+
+    /**
+     * Invalidate a snapshot and stop tracking block updates for it. Should be
+     * called as soon as whatever the snapshot was taken for is done with it.
+     * 
+     * @param snapshot The snapshot to release.
+     */
+    public synchronized void release(WorldSnapshot snapshot) {
+        snapshot.invalidate();
+        List<Tracked> next = liveEntries();
+        next.removeIf(entry -> entry.snapshot().get() == snapshot);
+        tracked = next.isEmpty() ? NONE : next.toArray(Tracked[]::new);
+    }
+
+    /**
+     * Release a snapshot once a future completes, whether or not it succeeded.
+     * 
+     * @param <T>      The future's type.
+     * @param snapshot The snapshot to release.
+     * @param future   The future to wait on.
+     * @return A future that completes with the same result after the snapshot
+     *         has been released.
+     */
+    public <T> CompletableFuture<T> releaseOnCompletion(WorldSnapshot snapshot, CompletableFuture<T> future) {
+        return future.whenComplete((result, e) -> release(snapshot));
+    }
+
+    /**
+     * Get the number of snapshots that are currently tracking block updates.
+     * @return Live snapshot count.
+     */
+    public int getLiveSnapshots() {
+        int count = 0;
+        for (Tracked entry : tracked) {
+            if (entry.snapshot().get() != null) count++;
+        }
+        return count;
+    }
+
+    /**
+     * Get the total number of overwritten block states being kept by all live
+     * snapshots.
+     * @return Overwritten block count.
+     */
+    public long getTrackedOverwrites() {
+        long count = 0;
+        for (Tracked entry : tracked) {
+            WorldSnapshot snapshot = entry.snapshot().get();
+            if (snapshot != null) count += snapshot.getTrackedOverwrites();
+        }
+        return count;
     }
 
     /**
      * Invalidate and remove all snapshots.
      */
     public synchronized void clear() {
-        snapshots.forEach(snapshot -> snapshot.invalidate());
-        snapshots.clear();
+        for (Tracked entry : tracked) {
+            WorldSnapshot snapshot = entry.snapshot().get();
+            if (snapshot != null) snapshot.invalidate();
+        }
+        tracked = NONE;
     }
 }
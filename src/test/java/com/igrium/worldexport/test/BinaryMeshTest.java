@@ -0,0 +1,86 @@
+package com.igrium.worldexport.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.scaffoldeditor.worldexport.util.BinaryMesh;
+
+import de.javagl.obj.Obj;
+import de.javagl.obj.ObjReader;
+import de.javagl.obj.ObjWriter;
+import de.javagl.obj.Objs;
+import de.javagl.obj.ReadableObj;
+
+public class BinaryMeshTest {
+
+    @Test
+    void testCube() throws IOException {
+        Obj cube = ObjReader.read(new StringReader(TestMeshes.CUBE1));
+        assertEquals(writeObj(cube), writeObj(roundTrip(cube)));
+    }
+
+    @Test
+    void testGroupsAndMaterials() throws IOException {
+        Obj mesh = Objs.create();
+        for (int i = 0; i < 8; i++) {
+            mesh.addVertex(i, i * 2, i * 3);
+            mesh.addTexCoord(i * .125f, 1 - i * .125f);
+        }
+        int[] quad1 = { 0, 1, 2, 3 };
+        int[] quad2 = { 4, 5, 6, 7 };
+
+        mesh.setActiveMaterialGroupName("world");
+        mesh.setActiveGroupNames(Arrays.asList("fLayer0", "face_up"));
+        mesh.addFace(quad1, quad1, null);
+        mesh.setActiveGroupNames(Arrays.asList("fLayer1", "face_up"));
+        mesh.addFace(quad1, quad1, null);
+        mesh.setActiveMaterialGroupName("world_tinted");
+        mesh.setActiveGroupNames(Arrays.asList("fLayer0", "face_none"));
+        mesh.addFace(quad2, quad2, null);
+        mesh.addFace(quad2, null, null);
+
+        Obj read = roundTrip(mesh);
+        assertEquals(4, read.getNumFaces());
+        assertEquals(writeObj(mesh), writeObj(read));
+    }
+
+    @Test
+    void testEmpty() throws IOException {
+        Obj empty = Objs.create();
+        assertEquals(writeObj(empty), writeObj(roundTrip(empty)));
+    }
+
+    @Test
+    void testInvalid() throws IOException {
+        byte[] data = write(ObjReader.read(new StringReader(TestMeshes.CUBE1)));
+        assertThrows(IOException.class,
+                () -> BinaryMesh.read(new ByteArrayInputStream(Arrays.copyOf(data, data.length / 2))));
+
+        data[0] = 'X';
+        assertThrows(IOException.class, () -> BinaryMesh.read(new ByteArrayInputStream(data)));
+    }
+
+    private static byte[] write(ReadableObj mesh) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryMesh.write(mesh, out);
+        return out.toByteArray();
+    }
+
+    private static Obj roundTrip(ReadableObj mesh) throws IOException {
+        return BinaryMesh.read(new ByteArrayInputStream(write(mesh)));
+    }
+
+    private static String writeObj(ReadableObj mesh) throws IOException {
+        StringWriter writer = new StringWriter();
+        ObjWriter.write(mesh, writer);
+        return writer.toString();
+    }
+}
@@ -0,0 +1,61 @@
+package com.igrium.worldexport.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+import org.scaffoldeditor.worldexport.vcap.BlockModelCache;
+
+public class BlockModelCacheTest {
+
+    @Test
+    void testGetPut() {
+        BlockModelCache cache = new BlockModelCache(16);
+        assertNull(cache.get(3, 0b101));
+
+        cache.put(3, 0b101, "stone");
+        assertEquals("stone", cache.get(3, 0b101));
+        assertNull(cache.get(3, 0b100));
+        assertNull(cache.get(4, 0b101));
+
+        assertEquals("stone", cache.put(3, 0b101, "stone1"), "The first entry should win.");
+        assertEquals("stone", cache.get(3, 0b101));
+    }
+
+    @Test
+    void testOutOfRange() {
+        BlockModelCache cache = new BlockModelCache(16);
+        assertEquals("dirt", cache.put(16, 0, "dirt"));
+        assertNull(cache.get(16, 0));
+        assertNull(cache.get(-1, 0));
+    }
+
+    @Test
+    void testConcurrentPut() throws Exception {
+        BlockModelCache cache = new BlockModelCache(256);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                String suffix = String.valueOf(t);
+                futures.add(executor.submit(() -> {
+                    for (int state = 0; state < 256; state++) {
+                        for (int faces = 0; faces < 64; faces++) {
+                            String id = cache.put(state, faces, state + "." + faces + "#" + suffix);
+                            assertEquals(id, cache.get(state, faces));
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) future.get();
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.igrium.worldexport.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+import org.scaffoldeditor.worldexport.vcap.FaceLayerIndex;
+
+public class FaceLayerIndexTest {
+    private static final int STRIDE = 8;
+
+    private static int[] quad(float... positions) {
+        int numVertices = positions.length / 3;
+        int[] data = new int[numVertices * STRIDE];
+        for (int i = 0; i < numVertices; i++) {
+            data[i * STRIDE] = Float.floatToRawIntBits(positions[i * 3]);
+            data[i * STRIDE + 1] = Float.floatToRawIntBits(positions[i * 3 + 1]);
+            data[i * STRIDE + 2] = Float.floatToRawIntBits(positions[i * 3 + 2]);
+            // Fill UVs so they're clearly not part of the key.
+            data[i * STRIDE + 4] = Float.floatToRawIntBits(i * .25f);
+        }
+        return data;
+    }
+
+    private static final int[] TOP = quad(
+            0, 1, 0,
+            0, 1, 1,
+            1, 1, 1,
+            1, 1, 0);
+
+    private static final int[] TOP_REVERSED = quad(
+            1, 1, 0,
+            1, 1, 1,
+            0, 1, 1,
+            0, 1, 0);
+
+    private static final int[] BOTTOM = quad(
+            0, 0, 1,
+            0, 0, 0,
+            1, 0, 0,
+            1, 0, 1);
+
+    // Differs from TOP only in its z values, which the y values used to be overwritten with.
+    private static final int[] TOP_SHIFTED = quad(
+            0, 1, .5f,
+            0, 1, 1,
+            1, 1, 1,
+            1, 1, .5f);
+
+    @Test
+    void testStackedQuads() {
+        FaceLayerIndex index = new FaceLayerIndex();
+        assertEquals(0, index.add(TOP, STRIDE, 4));
+        assertEquals(1, index.add(TOP, STRIDE, 4));
+        assertEquals(2, index.add(TOP, STRIDE, 4));
+        assertEquals(3, index.numLayers());
+    }
+
+    @Test
+    void testVertexOrder() {
+        FaceLayerIndex index = new FaceLayerIndex();
+        assertEquals(0, index.add(TOP, STRIDE, 4));
+        assertEquals(1, index.add(TOP_REVERSED, STRIDE, 4));
+    }
+
+    @Test
+    void testDistinctQuads() {
+        FaceLayerIndex index = new FaceLayerIndex();
+        assertEquals(0, index.add(TOP, STRIDE, 4));
+        assertEquals(0, index.add(BOTTOM, STRIDE, 4));
+        assertEquals(0, index.add(TOP_SHIFTED, STRIDE, 4));
+        assertEquals(1, index.numLayers());
+    }
+
+    @Test
+    void testFillsLowestLayer() {
+        FaceLayerIndex index = new FaceLayerIndex();
+        index.add(TOP, STRIDE, 4);
+        index.add(TOP, STRIDE, 4);
+        assertEquals(0, index.add(BOTTOM, STRIDE, 4));
+        assertEquals(1, index.add(BOTTOM, STRIDE, 4));
+        assertEquals(2, index.numLayers());
+    }
+
+    @Test
+    void testEmpty() {
+        assertEquals(0, new FaceLayerIndex().numLayers());
+    }
+}
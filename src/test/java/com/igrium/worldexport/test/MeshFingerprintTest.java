@@ -0,0 +1,70 @@
+package com.igrium.worldexport.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.scaffoldeditor.worldexport.util.MeshFingerprint;
+
+import de.javagl.obj.Obj;
+import de.javagl.obj.ObjReader;
+import de.javagl.obj.Objs;
+
+public class MeshFingerprintTest {
+
+    private static Obj quad(float offset, String material, String group) {
+        Obj mesh = Objs.create();
+        mesh.addVertex(0 + offset, 1, 0);
+        mesh.addVertex(0 + offset, 1, 1);
+        mesh.addVertex(1 + offset, 1, 1);
+        mesh.addVertex(1 + offset, 1, 0);
+        mesh.addTexCoord(.25f, .5f);
+        mesh.addTexCoord(.25f, .5625f);
+        mesh.addTexCoord(.3125f, .5625f);
+        mesh.addTexCoord(.3125f, .5f);
+
+        int[] indices = { 0, 1, 2, 3 };
+        mesh.setActiveMaterialGroupName(material);
+        mesh.setActiveGroupNames(Arrays.asList(group));
+        mesh.addFace(indices, indices, null);
+        return mesh;
+    }
+
+    @Test
+    void testIdentical() throws IOException {
+        Obj cube1 = ObjReader.read(new StringReader(TestMeshes.CUBE1));
+        Obj cube2 = ObjReader.read(new StringReader(TestMeshes.CUBE1));
+        assertEquals(MeshFingerprint.of(cube1), MeshFingerprint.of(cube2));
+        assertEquals(MeshFingerprint.of(cube1).hashCode(), MeshFingerprint.of(cube2).hashCode());
+    }
+
+    @Test
+    void testRounding() {
+        assertEquals(MeshFingerprint.of(quad(0, "world", "fLayer0")),
+                MeshFingerprint.of(quad(1e-6f, "world", "fLayer0")));
+        assertNotEquals(MeshFingerprint.of(quad(0, "world", "fLayer0")),
+                MeshFingerprint.of(quad(.01f, "world", "fLayer0")));
+    }
+
+    @Test
+    void testMaterials() {
+        assertNotEquals(MeshFingerprint.of(quad(0, "world", "fLayer0")),
+                MeshFingerprint.of(quad(0, "world_tinted", "fLayer0")));
+    }
+
+    @Test
+    void testFaceLayers() {
+        assertNotEquals(MeshFingerprint.of(quad(0, "world", "fLayer0")),
+                MeshFingerprint.of(quad(0, "world", "fLayer1")));
+    }
+
+    @Test
+    void testEmpty() {
+        assertEquals(MeshFingerprint.of(Objs.create()), MeshFingerprint.of(Objs.create()));
+        assertNotEquals(MeshFingerprint.of(Objs.create()), MeshFingerprint.of(quad(0, "world", "fLayer0")));
+    }
+}
@@ -0,0 +1,164 @@
+package com.igrium.worldexport.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.scaffoldeditor.worldexport.vcap.BlockModelEntry;
+import org.scaffoldeditor.worldexport.vcap.ExportContext;
+import org.scaffoldeditor.worldexport.vcap.model.BlockModelProvider;
+import org.scaffoldeditor.worldexport.vcap.model.ModelProvider;
+
+import net.minecraft.Bootstrap;
+import net.minecraft.SharedConstants;
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+
+/**
+ * Runs the model registry of {@link ExportContext} against a synthetic world
+ * with 1, 2, 4 and 8 workers, each adding the blocks of whole sections like
+ * <code>BlockExporter.exportStillAsync</code> does, and compares it against the
+ * same context with every call serialized, as the old synchronized registry
+ * did. Needs the game bootstrapped, so it only runs with
+ * <code>gradle benchmark</code>.
+ */
+public class ModelRegistryBenchmark {
+
+    private static final int SECTION_SIZE = 16 * 16 * 16;
+    private static final int NUM_SECTIONS = 256;
+    private static final int NUM_TEST_SECTIONS = 32;
+    private static final int[] WORKERS = { 1, 2, 4, 8 };
+
+    @BeforeAll
+    static void bootstrap() {
+        SharedConstants.createGameVersion();
+        Bootstrap.initialize();
+    }
+
+    /**
+     * Generate a synthetic world, skewed towards a few common block states like
+     * real terrain. Some blocks differ from others only in their transparency, so
+     * their model IDs collide and have to be made unique.
+     */
+    private static List<BlockModelEntry[]> genWorld(long seed, int numSections) {
+        Random random = new Random(seed);
+        List<BlockState> states = new ArrayList<>();
+        Block.STATE_IDS.forEach(states::add);
+
+        List<BlockModelEntry[]> sections = new ArrayList<>(numSections);
+        for (int s = 0; s < numSections; s++) {
+            BlockModelEntry[] section = new BlockModelEntry[SECTION_SIZE];
+            for (int i = 0; i < SECTION_SIZE; i++) {
+                BlockState state = states.get(random.nextInt(32) * random.nextInt(32) % states.size());
+                byte faces = (byte) (random.nextInt(4) == 0 ? random.nextInt(64) : 0);
+                boolean transparent = random.nextInt(8) == 0;
+                section[i] = new BlockModelEntry(null, state, faces, transparent, false);
+            }
+            sections.add(section);
+        }
+        return sections;
+    }
+
+    /**
+     * Capture every section of the world.
+     * @param addBlock Adds a block to the registry.
+     * @return Sections captured per second.
+     */
+    private static double capture(List<BlockModelEntry[]> world, Function<BlockModelEntry, String> addBlock,
+            int workers) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        try {
+            long start = System.nanoTime();
+            List<Future<Integer>> futures = new ArrayList<>(world.size());
+            for (BlockModelEntry[] section : world) {
+                futures.add(executor.submit(() -> {
+                    int hash = 0;
+                    for (BlockModelEntry entry : section) {
+                        hash += addBlock.apply(entry).length();
+                    }
+                    return hash;
+                }));
+            }
+            for (Future<Integer> future : futures) future.get();
+            return world.size() / ((System.nanoTime() - start) / 1e9);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Wrap a context so only one thread may add a block at a time, like the
+     * synchronized registry it replaced.
+     */
+    private static Function<BlockModelEntry, String> serialized(ExportContext context) {
+        return entry -> {
+            synchronized (context) {
+                return context.addBlock(entry);
+            }
+        };
+    }
+
+    @Test
+    @Tag("benchmark")
+    void testEquivalent() throws Exception {
+        List<BlockModelEntry[]> world = genWorld(1, NUM_TEST_SECTIONS);
+        Set<BlockModelEntry> entries = new HashSet<>();
+        Set<String> ids = new HashSet<>();
+        for (BlockModelEntry[] section : world) {
+            for (BlockModelEntry entry : section) {
+                if (entries.add(entry)) ids.add(entry.getID());
+            }
+        }
+        assertTrue(ids.size() < entries.size(), "The synthetic world should have colliding model IDs.");
+
+        ExportContext expected = new ExportContext();
+        ExportContext actual = new ExportContext();
+        capture(world, serialized(expected), 1);
+        capture(world, actual::addBlock, 8);
+
+        assertEquals(entries.size(), expected.models.size());
+        assertEquals(entries.size(), actual.models.size());
+
+        // Which of two colliding entries gets the plain ID depends on timing, so
+        // only check that every entry has its own model, and keeps it.
+        for (BlockModelEntry entry : entries) {
+            String name = actual.addBlock(entry);
+            ModelProvider model = actual.models.get(name);
+            assertTrue(model instanceof BlockModelProvider provider && provider.getEntry().equals(entry),
+                    name + " should be the model of " + entry.getID());
+        }
+    }
+
+    @Test
+    @Tag("benchmark")
+    void benchmark() throws Exception {
+        List<BlockModelEntry[]> world = genWorld(2, NUM_SECTIONS);
+
+        // Warm up.
+        capture(world, serialized(new ExportContext()), 4);
+        capture(world, new ExportContext()::addBlock, 4);
+
+        for (int workers : WORKERS) {
+            double syncRate = 0;
+            double concurrentRate = 0;
+            for (int round = 0; round < 3; round++) {
+                syncRate = Math.max(syncRate, capture(world, serialized(new ExportContext()), workers));
+                concurrentRate = Math.max(concurrentRate, capture(world, new ExportContext()::addBlock, workers));
+            }
+            System.out.printf("ExportContext.addBlock, %d worker(s): serialized %.0f sections/sec, concurrent %.0f sections/sec%n",
+                    workers, syncRate, concurrentRate);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.igrium.worldexport.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+import org.scaffoldeditor.worldexport.util.NameAllocator;
+
+public class NameAllocatorTest {
+
+    @Test
+    void testNameAllocation() {
+        NameAllocator names = new NameAllocator();
+        ConcurrentMap<String, Object> map = new ConcurrentHashMap<>();
+
+        assertEquals("fluid.0", names.put(map, "fluid.0", 0));
+        assertEquals("fluid.1", names.put(map, "fluid.0", 1));
+        assertEquals("fluid.2", names.put(map, "fluid.0", 2));
+        assertEquals("entity", names.put(map, "entity", 3));
+        assertEquals("entity1", names.put(map, "entity", 4));
+        assertEquals("entity2", names.put(map, "entity", 5));
+
+        map.put("stone5", 6);
+        assertEquals("stone", names.put(map, "stone", 7));
+        assertEquals("stone1", names.put(map, "stone", 8));
+        assertEquals("stone6", names.put(map, "stone5", 9));
+    }
+
+    @Test
+    void testConcurrentNamesUnique() throws Exception {
+        NameAllocator names = new NameAllocator();
+        ConcurrentMap<String, Object> map = new ConcurrentHashMap<>();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<List<String>>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(executor.submit(() -> {
+                    List<String> given = new ArrayList<>();
+                    for (int i = 0; i < 1000; i++) {
+                        given.add(names.put(map, "fluid.0", i));
+                    }
+                    return given;
+                }));
+            }
+            Set<String> all = new HashSet<>();
+            for (Future<List<String>> future : futures) all.addAll(future.get());
+            assertEquals(8000, all.size());
+            assertEquals(8000, map.size());
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.igrium.worldexport.test;
+
+import static com.igrium.worldexport.test.SectionPaletteTest.SECTION_SIZE;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.scaffoldeditor.worldexport.vcap.SectionPalette;
+
+import com.igrium.worldexport.test.SectionPaletteTest.SyntheticSection;
+
+/**
+ * Compares the throughput of {@link SectionPalette} against the list-based
+ * palette building that section export used to do. Only runs with
+ * <code>gradle benchmark</code>; correctness is checked by
+ * {@link SectionPaletteTest}.
+ */
+public class SectionPaletteBenchmark {
+
+    private static final int NUM_SECTIONS = 512;
+    private static final int ROUNDS = 5;
+
+    @Test
+    @Tag("benchmark")
+    void benchmark() {
+        List<SyntheticSection> sections = SectionPaletteTest.genSections(2, NUM_SECTIONS);
+
+        // Warm up both implementations before timing anything.
+        long sink = 0;
+        for (SyntheticSection section : sections) {
+            sink += SectionPaletteTest.legacy(section).blocks()[0] + SectionPaletteTest.hashed(section).blocks()[0];
+        }
+
+        double legacyRate = 0;
+        double hashedRate = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (SyntheticSection section : sections) {
+                sink += SectionPaletteTest.legacy(section).colors()[SECTION_SIZE - 1];
+            }
+            legacyRate = Math.max(legacyRate, sections.size() / ((System.nanoTime() - start) / 1e9));
+
+            start = System.nanoTime();
+            for (SyntheticSection section : sections) {
+                sink += SectionPaletteTest.hashed(section).colors()[SECTION_SIZE - 1];
+            }
+            hashedRate = Math.max(hashedRate, sections.size() / ((System.nanoTime() - start) / 1e9));
+        }
+
+        System.out.printf("Section palettes: legacy %.0f sections/sec, hashed %.0f sections/sec (%.1fx) [%d]%n",
+                legacyRate, hashedRate, hashedRate / legacyRate, sink & 1);
+    }
+}
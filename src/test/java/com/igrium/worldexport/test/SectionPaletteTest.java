@@ -0,0 +1,149 @@
+package com.igrium.worldexport.test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.scaffoldeditor.worldexport.vcap.SectionPalette;
+
+/**
+ * Checks {@link SectionPalette} against the list-based palette building that
+ * section export used to do.
+ */
+public class SectionPaletteTest {
+
+    static final int SECTION_SIZE = 16 * 16 * 16;
+    private static final int NUM_TEST_SECTIONS = 32;
+
+    /**
+     * A synthetic section: the model ID and color of every block.
+     */
+    static record SyntheticSection(String[] ids, int[] colors) {}
+
+    static List<SyntheticSection> genSections(long seed, int numSections) {
+        Random random = new Random(seed);
+        String[] models = new String[48];
+        for (int i = 0; i < models.length; i++) {
+            models[i] = "minecraft_block" + i + "#" + Integer.toHexString(i * 31) + "." + Integer.toHexString(i % 64);
+        }
+        int[] biomeColors = new int[24];
+        for (int i = 0; i < biomeColors.length; i++) {
+            biomeColors[i] = random.nextInt(0xFFFFFF);
+        }
+
+        List<SyntheticSection> sections = new ArrayList<>(numSections);
+        for (int s = 0; s < numSections; s++) {
+            String[] ids = new String[SECTION_SIZE];
+            int[] colors = new int[SECTION_SIZE];
+            for (int i = 0; i < SECTION_SIZE; i++) {
+                // Skew towards a few common blocks like real terrain.
+                int model = Math.min(random.nextInt(8) * random.nextInt(8), models.length - 1);
+                ids[i] = models[model];
+                colors[i] = model % 3 == 0 ? biomeColors[random.nextInt(biomeColors.length)] : -1;
+            }
+            sections.add(new SyntheticSection(ids, colors));
+        }
+        return sections;
+    }
+
+    /**
+     * The result of building a section's palette.
+     */
+    static record Result(String[] palette, byte[] colorPalette, int[] blocks, byte[] colors) {}
+
+    /**
+     * The palette building algorithm used before {@link SectionPalette}.
+     */
+    static Result legacy(SyntheticSection section) {
+        List<String> palette = new ArrayList<>();
+        int[] blocks = new int[SECTION_SIZE];
+
+        List<Byte> colorPalette = new ArrayList<>();
+        byte[] colors = new byte[SECTION_SIZE];
+
+        for (int i = 0; i < SECTION_SIZE; i++) {
+            String id = section.ids()[i];
+            int color = section.colors()[i];
+
+            byte r = (byte)(color >> 16 & 255);
+            byte g = (byte)(color >> 8 & 255);
+            byte b = (byte)(color & 255);
+
+            int index;
+            int colorIndex = -1;
+            synchronized(palette) {
+                index = palette.indexOf(id);
+                if (index < 0) {
+                    index = palette.size();
+                    palette.add(id);
+                }
+
+                for (int c = 0; c < colorPalette.size(); c += 3) {
+                    if (colorPalette.get(c).equals(r) && colorPalette.get(c + 1).equals(g) && colorPalette.get(c + 2).equals(b)) {
+                        colorIndex = c;
+                        break;
+                    }
+                }
+                if (colorIndex < 0) {
+                    colorIndex = colorPalette.size();
+                    colorPalette.add(r);
+                    colorPalette.add(g);
+                    colorPalette.add(b);
+                }
+            }
+
+            blocks[i] = index;
+            colors[i] = (byte) colorIndex;
+        }
+
+        byte[] colorBytes = new byte[colorPalette.size()];
+        for (int i = 0; i < colorBytes.length; i++) {
+            colorBytes[i] = colorPalette.get(i);
+        }
+        return new Result(palette.toArray(String[]::new), colorBytes, blocks, colors);
+    }
+
+    static Result hashed(SyntheticSection section) {
+        SectionPalette palette = new SectionPalette();
+        int[] blocks = new int[SECTION_SIZE];
+        byte[] colors = new byte[SECTION_SIZE];
+
+        for (int i = 0; i < SECTION_SIZE; i++) {
+            blocks[i] = palette.model(section.ids()[i]);
+            colors[i] = (byte) palette.color(section.colors()[i]);
+        }
+
+        String[] ids = new String[palette.numModels()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = palette.getModel(i);
+        }
+        return new Result(ids, palette.getColorPalette(), blocks, colors);
+    }
+
+    @Test
+    void testEquivalent() {
+        for (SyntheticSection section : genSections(1, NUM_TEST_SECTIONS)) {
+            Result expected = legacy(section);
+            Result actual = hashed(section);
+
+            assertArrayEquals(expected.palette(), actual.palette());
+            assertArrayEquals(expected.colorPalette(), actual.colorPalette());
+            assertArrayEquals(expected.blocks(), actual.blocks());
+            assertArrayEquals(expected.colors(), actual.colors());
+        }
+    }
+
+    @Test
+    void testColorPaletteGrowth() {
+        SectionPalette palette = new SectionPalette();
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i * 3, palette.color(i));
+        }
+        assertEquals(100, palette.numColors());
+        assertEquals(3 * 50, palette.color(50 | 0xFF000000), "Alpha should be ignored.");
+    }
+}
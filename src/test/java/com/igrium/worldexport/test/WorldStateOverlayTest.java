@@ -0,0 +1,171 @@
+package com.igrium.worldexport.test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.scaffoldeditor.worldexport.vcap.Frame;
+import org.scaffoldeditor.worldexport.vcap.FrameJournal;
+import org.scaffoldeditor.worldexport.vcap.IFrame;
+import org.scaffoldeditor.worldexport.vcap.WorldStateOverlay;
+
+import net.minecraft.nbt.NbtByteArray;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtElement;
+import net.minecraft.nbt.NbtIntArray;
+import net.minecraft.nbt.NbtList;
+import net.minecraft.nbt.NbtLongArray;
+import net.minecraft.nbt.NbtString;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkSectionPos;
+
+/**
+ * Checks the sections the world state writes for keyframes when a changed
+ * section has been unloaded and can't be captured from the world again.
+ */
+public class WorldStateOverlayTest {
+
+    private static final int SECTION_SIZE = 16 * 16 * 16;
+    private static final byte[] COLOR_PALETTE = { -1, -1, -1, 0x40, -0x80, 0x20 };
+
+    /**
+     * A section of stone with a layer of grass on top.
+     */
+    private static NbtCompound baseSection() {
+        NbtCompound tag = new NbtCompound();
+        tag.putInt("x", 0);
+        tag.putInt("y", 0);
+        tag.putInt("z", 0);
+
+        NbtList palette = new NbtList();
+        palette.add(NbtString.of("stone"));
+        palette.add(NbtString.of("grass_block"));
+
+        int[] blocks = new int[SECTION_SIZE];
+        byte[] colors = new byte[SECTION_SIZE];
+        for (int i = SECTION_SIZE - 16 * 16; i < SECTION_SIZE; i++) {
+            blocks[i] = 1;
+            colors[i] = 3;
+        }
+
+        tag.put("palette", palette);
+        tag.put("blocks", new NbtIntArray(blocks));
+        tag.put("colorPalette", new NbtByteArray(COLOR_PALETTE));
+        tag.put("colors", new NbtByteArray(colors));
+        return tag;
+    }
+
+    private static IFrame baseFrame() {
+        NbtList sections = new NbtList();
+        sections.add(baseSection());
+        NbtCompound data = new NbtCompound();
+        data.putByte("type", Frame.INTRACODED_TYPE);
+        data.putDouble("time", 0);
+        data.put("sections", sections);
+        return new IFrame(data);
+    }
+
+    /**
+     * A predicted frame in its serialized form, as the exporter journals it.
+     */
+    private static Frame predicted(Map<BlockPos, String> updates) {
+        NbtCompound data = new NbtCompound();
+        data.putByte("type", Frame.PREDICTED_TYPE);
+        data.putDouble("time", 1);
+
+        long[] positions = new long[updates.size()];
+        int[] states = new int[updates.size()];
+        NbtList palette = new NbtList();
+        int i = 0;
+        for (Map.Entry<BlockPos, String> entry : updates.entrySet()) {
+            positions[i] = entry.getKey().asLong();
+            states[i] = palette.size();
+            palette.add(NbtString.of(entry.getValue()));
+            i++;
+        }
+        data.put("positions", new NbtLongArray(positions));
+        data.put("states", new NbtIntArray(states));
+        data.put("colors", new NbtIntArray(new int[updates.size()]));
+        data.put("palette", palette);
+
+        return new Frame() {
+            @Override
+            public byte getFrameType() {
+                return PREDICTED_TYPE;
+            }
+
+            @Override
+            public double getTimestamp() {
+                return 1;
+            }
+
+            @Override
+            public NbtCompound getFrameData() {
+                return data;
+            }
+
+            @Override
+            public String modelAt(BlockPos pos) {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    private static String[] models(NbtCompound section) {
+        NbtList palette = section.getList("palette", NbtElement.STRING_TYPE);
+        int[] blocks = section.getIntArray("blocks");
+        String[] models = new String[SECTION_SIZE];
+        for (int i = 0; i < SECTION_SIZE; i++) {
+            models[i] = palette.getString(blocks.length > 0 ? blocks[i] : 0);
+        }
+        return models;
+    }
+
+    @Test
+    void testUnloadedDirtySection() throws IOException {
+        BlockPos placed = new BlockPos(3, 4, 5);
+        BlockPos broken = new BlockPos(7, 15, 2);
+
+        WorldStateOverlay state = new WorldStateOverlay();
+        state.append(baseFrame());
+        try (FrameJournal journal = new FrameJournal()) {
+            state.append(journal.append(predicted(Map.of(placed, "diamond_ore", broken, "air"))));
+
+            NbtCompound section = state.writeSection(ChunkSectionPos.asLong(0, 0, 0), () -> "air");
+            assertEquals(0, section.getInt("x"));
+            assertEquals(0, section.getInt("y"));
+            assertEquals(0, section.getInt("z"));
+
+            String[] expected = models(baseSection());
+            expected[(placed.getY() * 16 + placed.getZ()) * 16 + placed.getX()] = "diamond_ore";
+            expected[(broken.getY() * 16 + broken.getZ()) * 16 + broken.getX()] = "air";
+            assertArrayEquals(expected, models(section), "The section should have every change since the base.");
+
+            // Colors come from the base section.
+            byte[] palette = section.getByteArray("colorPalette");
+            byte[] colors = section.getByteArray("colors");
+            byte[] grass = { 0x40, -0x80, 0x20 };
+            int top = (15 * 16 + 8) * 16 + 8;
+            assertArrayEquals(grass, new byte[] { palette[colors[top]], palette[colors[top] + 1], palette[colors[top] + 2] });
+        }
+    }
+
+    @Test
+    void testSectionMissingFromBase() throws IOException {
+        BlockPos placed = new BlockPos(20, 1, 1);
+
+        WorldStateOverlay state = new WorldStateOverlay();
+        state.append(baseFrame());
+        try (FrameJournal journal = new FrameJournal()) {
+            state.append(journal.append(predicted(Map.of(placed, "dirt"))));
+
+            String[] models = models(state.writeSection(ChunkSectionPos.toLong(placed), () -> "air"));
+            int index = (placed.getY() * 16 + (placed.getZ() & 15)) * 16 + (placed.getX() & 15);
+            assertEquals("dirt", models[index]);
+            assertEquals("air", models[0], "Blocks the state doesn't know should use the fallback.");
+        }
+    }
+}